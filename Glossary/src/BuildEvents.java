@@ -0,0 +1,154 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The JDK Flight Recorder events of a build, recorded alongside the
+ * {@link BuildMetrics} of its stages: one "glossary.Stage" event for every
+ * run of a stage, spanning it, and one "glossary.Item" event for every item
+ * timed one by one. Events cost next to nothing unless a recording enables
+ * them. This class is only loaded once {@link #available} has been called,
+ * so a runtime without Flight Recorder never needs it.
+ *
+ * @author Adewale Adenle
+ *
+ */
+final class BuildEvents {
+
+    /**
+     * A run of a stage.
+     */
+    @Name("glossary.Stage")
+    @Label("Glossary Stage")
+    @Category("Glossary")
+    @StackTrace(false)
+    static final class StageEvent extends Event {
+
+        /**
+         * The name of the stage.
+         */
+        @Label("Stage")
+        String stage;
+
+        /**
+         * Number of items handled during the run.
+         */
+        @Label("Items")
+        long items;
+
+        /**
+         * Number of bytes handled during the run.
+         */
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+    }
+
+    /**
+     * An item of a stage, timed on its own.
+     */
+    @Name("glossary.Item")
+    @Label("Glossary Item")
+    @Category("Glossary")
+    @StackTrace(false)
+    static final class ItemEvent extends Event {
+
+        /**
+         * The name of the stage.
+         */
+        @Label("Stage")
+        String stage;
+
+        /**
+         * Time taken by the item.
+         */
+        @Label("Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long time;
+
+        /**
+         * Number of bytes of the item.
+         */
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+    }
+
+    /**
+     * No argument constructor--private to prevent instantiation.
+     */
+    private BuildEvents() {
+    }
+
+    /**
+     * Reports whether Flight Recorder can record events in this JVM.
+     *
+     * @return Whether events can be recorded.
+     */
+    static boolean available() {
+        return FlightRecorder.isAvailable();
+    }
+
+    /**
+     * Starts the event of a run of a stage.
+     *
+     * @return The event, to pass to {@link #endStage}.
+     */
+    static Object beginStage() {
+        StageEvent event = new StageEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the event of a run of a stage, committing it if it is recorded.
+     *
+     * @param started
+     *            The event returned by {@link #beginStage}.
+     * @param stage
+     *            The name of the stage.
+     * @param items
+     *            Number of items handled during the run.
+     * @param bytes
+     *            Number of bytes handled during the run.
+     */
+    static void endStage(Object started, String stage, long items,
+            long bytes) {
+        StageEvent event = (StageEvent) started;
+        event.end();
+        if (event.shouldCommit()) {
+            event.stage = stage;
+            event.items = items;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    /**
+     * Records an item timed on its own, if items are recorded.
+     *
+     * @param stage
+     *            The name of the stage.
+     * @param nanos
+     *            Time taken by the item, in nanoseconds.
+     * @param bytes
+     *            Number of bytes of the item.
+     */
+    static void item(String stage, long nanos, long bytes) {
+        ItemEvent event = new ItemEvent();
+        if (event.isEnabled()) {
+            event.stage = stage;
+            event.time = nanos;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+}
@@ -0,0 +1,370 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Record of what the last build of a glossary site was generated from: for
+ * each term, a hash of its definition and a hash of the links found in it.
+ * A term page only needs to be regenerated when one of the two hashes
+ * changes, and the index page only when the list of terms changes. The
+ * manifest also records how the index was laid out, since shard pages can
+ * only be reused under the same layout, and the order of the terms, which
+ * their ordinals and page file names follow. It is stored as a text file
+ * next to the pages, one term per line.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public final class BuildManifest {
+
+    /**
+     * Name of the manifest file in the output folder.
+     */
+    public static final String FILE_NAME = "glossary.manifest";
+
+    /**
+     * First line of every manifest file.
+     */
+    private static final String HEADER = "# glossary manifest 4";
+
+    /**
+     * Start of the line recording the index layout.
+     */
+    private static final String INDEX_PREFIX = "# index ";
+
+    /**
+     * Start of the line recording the order of the terms.
+     */
+    private static final String COLLATION_PREFIX = "# collation ";
+
+    /**
+     * FNV-1a 64-bit offset basis.
+     */
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    /**
+     * FNV-1a 64-bit prime.
+     */
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * The terms recorded in the manifest.
+     */
+    private final TermIndex terms;
+
+    /**
+     * Hash of the definition of each term, by ordinal.
+     */
+    private final long[] definitionHashes;
+
+    /**
+     * Hash of the links in the definition of each term, by ordinal.
+     */
+    private final long[] linkHashes;
+
+    /**
+     * The layout of the index, as accepted by {@link IndexSharding#parse}.
+     */
+    private final String indexLayout;
+
+    /**
+     * Creates a manifest. The arrays become owned by the manifest.
+     *
+     * @param terms
+     *            The terms recorded in the manifest.
+     * @param definitionHashes
+     *            Hash of the definition of each term, by ordinal.
+     * @param linkHashes
+     *            Hash of the links in the definition of each term, by ordinal.
+     * @param indexLayout
+     *            The layout of the index, as accepted by
+     *            {@link IndexSharding#parse}.
+     */
+    public BuildManifest(TermIndex terms, long[] definitionHashes,
+            long[] linkHashes, String indexLayout) {
+        this.terms = terms;
+        this.definitionHashes = definitionHashes;
+        this.linkHashes = linkHashes;
+        this.indexLayout = indexLayout;
+    }
+
+    /**
+     * Computes the hashes of the given definition and of its links.
+     *
+     * @param linker
+     *            The linker used to render the definition.
+     * @param definition
+     *            The definition.
+     * @param hashes
+     *            Receives the definition hash at index 0 and the link hash at
+     *            index 1.
+     */
+    public static void hash(TermLinker linker, String definition,
+            long[] hashes) {
+        hashes[0] = hashDefinition(definition);
+        hashes[1] = hashLinks(linker, definition);
+    }
+
+    /**
+     * Computes the hash of the given definition.
+     *
+     * @param definition
+     *            The definition.
+     * @return The definition hash.
+     */
+    public static long hashDefinition(String definition) {
+        return hashText(FNV_OFFSET, definition);
+    }
+
+    /**
+     * Computes the hash of the links in the given definition, linking it.
+     *
+     * @param linker
+     *            The linker used to render the definition.
+     * @param definition
+     *            The definition.
+     * @return The link hash.
+     */
+    public static long hashLinks(TermLinker linker, String definition) {
+        // The linked spans and the pages they link to determine the page,
+        // since the file name of a page can change with the other terms
+        TermRegistry registry = linker.terms().registry();
+        long[] hash = { FNV_OFFSET };
+        linker.forEachLink(definition, (start, end, ordinal) -> {
+            hash[0] = (hash[0] ^ start) * FNV_PRIME;
+            hash[0] = (hash[0] ^ end) * FNV_PRIME;
+            hash[0] = hashText(hash[0], registry.href(ordinal));
+        });
+        return hash[0];
+    }
+
+    /**
+     * Mixes the terms referring to a term into the hash of its links, for
+     * pages that list their referrers.
+     *
+     * @param linkHash
+     *            The hash of the links in the definition of the term.
+     * @param graph
+     *            The reference graph of the glossary.
+     * @param ordinal
+     *            The ordinal of the term.
+     * @return The combined hash.
+     */
+    public static long hashReferrers(long linkHash, ReferenceGraph graph,
+            int ordinal) {
+        // Mark the hash even without referrers, so turning the list on or
+        // off changes every page
+        long hash = (linkHash ^ '\n') * FNV_PRIME;
+        TermRegistry registry = graph.terms().registry();
+        for (int i = 0; i < graph.referrerCount(ordinal); i++) {
+            int referrer = graph.referrer(ordinal, i);
+            hash = hashText(hash, graph.terms().term(referrer));
+            hash = hashText(hash, registry.href(referrer));
+            hash = (hash ^ '\n') * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Mixes the characters of a text into a hash.
+     *
+     * @param hash
+     *            The hash so far.
+     * @param text
+     *            The text.
+     * @return The combined hash.
+     */
+    private static long hashText(long hash, String text) {
+        long mixed = hash;
+        for (int i = 0; i < text.length(); i++) {
+            mixed = (mixed ^ text.charAt(i)) * FNV_PRIME;
+        }
+        return mixed;
+    }
+
+    /**
+     * Reads the manifest stored in the given file, for a build in the
+     * default, case-insensitive order.
+     *
+     * @param file
+     *            The manifest file.
+     * @return The manifest, or null if the file does not exist, was not
+     *         written by this version or records another order.
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public static BuildManifest read(Path file) throws IOException {
+        return read(file, TermCollator.CASE_INSENSITIVE);
+    }
+
+    /**
+     * Reads the manifest stored in the given file, for a build whose terms
+     * are in the order of the given collator. A manifest recording another
+     * order is not used, since the ordinals, the index pages and the file
+     * names of the pages all follow the order.
+     *
+     * @param file
+     *            The manifest file.
+     * @param collator
+     *            The order of the terms of the build.
+     * @return The manifest, or null if the file does not exist, was not
+     *         written by this version or records another order.
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public static BuildManifest read(Path file, TermCollator collator)
+            throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        String[] terms = new String[16];
+        long[] definitionHashes = new long[16];
+        long[] linkHashes = new long[16];
+        int size = 0;
+        String indexLayout;
+        try (BufferedReader in = Files.newBufferedReader(file,
+                StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(in.readLine())) {
+                return null;
+            }
+            String line = in.readLine();
+            if (line == null || !line.startsWith(INDEX_PREFIX)) {
+                return null;
+            }
+            indexLayout = line.substring(INDEX_PREFIX.length());
+            line = in.readLine();
+            if (line == null || !line
+                    .equals(COLLATION_PREFIX + collator.toString())) {
+                return null;
+            }
+            line = in.readLine();
+            while (line != null) {
+                // Each line is "<definition hash> <link hash> <term>"
+                int first = line.indexOf(' ');
+                int second = line.indexOf(' ', first + 1);
+                if (size == terms.length) {
+                    terms = Arrays.copyOf(terms, 2 * size);
+                    definitionHashes = Arrays.copyOf(definitionHashes,
+                            2 * size);
+                    linkHashes = Arrays.copyOf(linkHashes, 2 * size);
+                }
+                definitionHashes[size] = Long
+                        .parseUnsignedLong(line.substring(0, first), 16);
+                linkHashes[size] = Long.parseUnsignedLong(
+                        line.substring(first + 1, second), 16);
+                terms[size] = line.substring(second + 1);
+                size++;
+                line = in.readLine();
+            }
+        }
+
+        // Reorder the hashes by ordinal
+        TermIndex index = new TermIndex(Arrays.copyOf(terms, size),
+                collator);
+        long[] definitionsByOrdinal = new long[size];
+        long[] linksByOrdinal = new long[size];
+        for (int i = 0; i < size; i++) {
+            int ordinal = index.ordinal(terms[i]);
+            definitionsByOrdinal[ordinal] = definitionHashes[i];
+            linksByOrdinal[ordinal] = linkHashes[i];
+        }
+        return new BuildManifest(index, definitionsByOrdinal, linksByOrdinal,
+                indexLayout);
+    }
+
+    /**
+     * Writes the manifest to the given file, replacing it atomically where
+     * the file system allows.
+     *
+     * @param file
+     *            The manifest file.
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    public void write(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temp,
+                StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.newLine();
+            out.write(INDEX_PREFIX + this.indexLayout);
+            out.newLine();
+            out.write(COLLATION_PREFIX + this.terms.collator().toString());
+            out.newLine();
+            for (int i = 0; i < this.terms.size(); i++) {
+                out.write(Long.toHexString(this.definitionHashes[i]));
+                out.write(' ');
+                out.write(Long.toHexString(this.linkHashes[i]));
+                out.write(' ');
+                out.write(this.terms.term(i));
+                out.newLine();
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Returns the terms recorded in the manifest.
+     *
+     * @return The term index.
+     */
+    public TermIndex terms() {
+        return this.terms;
+    }
+
+    /**
+     * Returns the hash recorded for the definition of the term with the
+     * given ordinal.
+     *
+     * @param ordinal
+     *            The ordinal of the term in {@link #terms}.
+     * @return The definition hash.
+     */
+    public long definitionHash(int ordinal) {
+        return this.definitionHashes[ordinal];
+    }
+
+    /**
+     * Returns the layout of the index when the manifest was written.
+     *
+     * @return The index layout, as accepted by {@link IndexSharding#parse}.
+     */
+    public String indexLayout() {
+        return this.indexLayout;
+    }
+
+    /**
+     * Reports whether the manifest records the given term with the given
+     * hashes.
+     *
+     * @param term
+     *            The term.
+     * @param definitionHash
+     *            The hash of its definition.
+     * @param linkHash
+     *            The hash of the links in its definition.
+     * @return Whether the page of the term is up to date.
+     */
+    public boolean matches(String term, long definitionHash, long linkHash) {
+        int ordinal = this.terms.ordinal(term);
+        return ordinal >= 0 && this.definitionHashes[ordinal] == definitionHash
+                && this.linkHashes[ordinal] == linkHash;
+    }
+
+    /**
+     * Reports whether the manifest records exactly the given terms.
+     *
+     * @param other
+     *            The terms to compare with.
+     * @return Whether the list of terms is unchanged.
+     */
+    public boolean hasSameTerms(TermIndex other) {
+        return this.terms.hasSameTerms(other);
+    }
+
+}
@@ -0,0 +1,478 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measurements of one build, stage by stage: wall time, the number of items
+ * and bytes handled, the bytes allocated, and for stages handling items one
+ * at a time, a histogram of the time taken per item. Items can be recorded
+ * from several threads at once. The measurements are reported as JSON and,
+ * where the JVM has Flight Recorder, also recorded as {@link BuildEvents}.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public final class BuildMetrics {
+
+    /**
+     * One stage of a build.
+     */
+    public static final class Stage {
+
+        /**
+         * Number of histogram buckets: bucket i counts the items taking less
+         * than 2^i nanoseconds, and at least 2^(i-1).
+         */
+        private static final int BUCKETS = 64;
+
+        /**
+         * The name of the stage.
+         */
+        private final String name;
+
+        /**
+         * Number of items handled.
+         */
+        private final LongAdder items = new LongAdder();
+
+        /**
+         * Number of bytes handled.
+         */
+        private final LongAdder bytes = new LongAdder();
+
+        /**
+         * Number of bytes allocated, or negative if unknown.
+         */
+        private final LongAdder allocated = new LongAdder();
+
+        /**
+         * Number of items timed one by one, in each latency bucket.
+         */
+        private final AtomicLongArray latencies = new AtomicLongArray(
+                BUCKETS);
+
+        /**
+         * Total time of the items timed one by one, in nanoseconds.
+         */
+        private final LongAdder latencyTotal = new LongAdder();
+
+        /**
+         * Longest time of an item, in nanoseconds.
+         */
+        private final LongAccumulator latencyMax = new LongAccumulator(
+                Math::max, 0);
+
+        /**
+         * Wall time of the stage, in nanoseconds.
+         */
+        private long wall;
+
+        /**
+         * Start of the current run of the stage, from {@link #begin}.
+         */
+        private long startNanos;
+
+        /**
+         * Allocation of the thread running the stage when it began.
+         */
+        private long startAllocated;
+
+        /**
+         * Items handled when the current run began.
+         */
+        private long startItems;
+
+        /**
+         * Bytes handled when the current run began.
+         */
+        private long startBytes;
+
+        /**
+         * The Flight Recorder event of the current run, or null.
+         */
+        private Object event;
+
+        /**
+         * Creates a stage.
+         *
+         * @param name
+         *            The name of the stage.
+         */
+        Stage(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Starts timing the stage. A stage can run several times, its wall
+         * time adding up.
+         */
+        public synchronized void begin() {
+            if (RECORDER) {
+                this.startItems = this.items();
+                this.startBytes = this.bytes();
+                this.event = BuildEvents.beginStage();
+            }
+            this.startAllocated = allocatedBytes();
+            this.startNanos = System.nanoTime();
+        }
+
+        /**
+         * Stops timing the stage, counting what the calling thread allocated
+         * since {@link #begin}.
+         */
+        public synchronized void end() {
+            this.wall += System.nanoTime() - this.startNanos;
+            this.allocated.add(allocatedBytes() - this.startAllocated);
+            if (this.event != null) {
+                BuildEvents.endStage(this.event, this.name,
+                        this.items() - this.startItems,
+                        this.bytes() - this.startBytes);
+                this.event = null;
+            }
+        }
+
+        /**
+         * Counts items handled without timing them one by one.
+         *
+         * @param itemCount
+         *            The number of items.
+         * @param byteCount
+         *            The number of bytes.
+         */
+        public void add(long itemCount, long byteCount) {
+            this.items.add(itemCount);
+            this.bytes.add(byteCount);
+        }
+
+        /**
+         * Counts one item handled by the calling thread since the given
+         * start, as returned by {@link System#nanoTime} and
+         * {@link BuildMetrics#allocatedBytes}.
+         *
+         * @param startNanos
+         *            The time the item was started.
+         * @param startAllocated
+         *            The allocation of the calling thread when the item was
+         *            started.
+         * @param byteCount
+         *            The number of bytes of the item.
+         */
+        public void record(long startNanos, long startAllocated,
+                long byteCount) {
+            long nanos = System.nanoTime() - startNanos;
+            this.items.increment();
+            this.bytes.add(byteCount);
+            this.allocated.add(allocatedBytes() - startAllocated);
+            this.latencies.incrementAndGet(
+                    BUCKETS - Long.numberOfLeadingZeros(Math.max(nanos, 1)));
+            this.latencyTotal.add(nanos);
+            this.latencyMax.accumulate(nanos);
+            if (RECORDER) {
+                BuildEvents.item(this.name, nanos, byteCount);
+            }
+        }
+
+        /**
+         * Returns the name of the stage.
+         *
+         * @return The name.
+         */
+        public String name() {
+            return this.name;
+        }
+
+        /**
+         * Returns the number of items handled.
+         *
+         * @return The number of items.
+         */
+        public long items() {
+            return this.items.sum();
+        }
+
+        /**
+         * Returns the number of bytes handled.
+         *
+         * @return The number of bytes.
+         */
+        public long bytes() {
+            return this.bytes.sum();
+        }
+
+        /**
+         * Returns the wall time of the stage.
+         *
+         * @return The wall time, in nanoseconds.
+         */
+        public synchronized long wallNanos() {
+            return this.wall;
+        }
+
+        /**
+         * Returns the number of items timed one by one.
+         *
+         * @return The number of timed items.
+         */
+        public long timedItems() {
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                count += this.latencies.get(i);
+            }
+            return count;
+        }
+
+        /**
+         * Returns an upper bound of the time taken by the given share of
+         * the items timed one by one, within a factor of two.
+         *
+         * @param quantile
+         *            The share of the items, between 0 and 1.
+         * @return The time, in nanoseconds, or 0 if no item was timed.
+         */
+        public long latency(double quantile) {
+            long count = this.timedItems();
+            if (count == 0) {
+                return 0;
+            }
+
+            // Find the bucket holding the item of that rank
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            int bucket = -1;
+            while (seen < rank && bucket < BUCKETS - 1) {
+                bucket++;
+                seen += this.latencies.get(bucket);
+            }
+            return Math.min(1L << Math.min(bucket, 62), this.maxLatency());
+        }
+
+        /**
+         * Returns the longest time taken by an item.
+         *
+         * @return The time, in nanoseconds.
+         */
+        public long maxLatency() {
+            return this.latencyMax.get();
+        }
+
+        /**
+         * Appends the stage as a JSON object.
+         *
+         * @param json
+         *            The text to append to.
+         */
+        void appendJson(StringBuilder json) {
+            long wallNanos = this.wallNanos();
+            double seconds = wallNanos / 1e9;
+            json.append("    {\"name\": \"").append(this.name)
+                    .append("\", \"wallMillis\": ")
+                    .append(number(wallNanos / 1e6))
+                    .append(", \"items\": ").append(this.items())
+                    .append(", \"bytes\": ").append(this.bytes())
+                    .append(", \"itemsPerSecond\": ")
+                    .append(number(rate(this.items(), seconds)))
+                    .append(", \"bytesPerSecond\": ")
+                    .append(number(rate(this.bytes(), seconds)))
+                    .append(", \"allocatedBytes\": ");
+            if (allocatedBytes() < 0) {
+                json.append("null");
+            } else {
+                json.append(this.allocated.sum());
+            }
+
+            // Timed stages also report their latency distribution
+            long timed = this.timedItems();
+            if (timed > 0) {
+                json.append(",\n      \"latencyMicros\": {\"count\": ")
+                        .append(timed).append(", \"mean\": ")
+                        .append(number(this.latencyTotal.sum() / 1e3 / timed))
+                        .append(", \"p50\": ")
+                        .append(number(this.latency(0.5) / 1e3))
+                        .append(", \"p90\": ")
+                        .append(number(this.latency(0.9) / 1e3))
+                        .append(", \"p99\": ")
+                        .append(number(this.latency(0.99) / 1e3))
+                        .append(", \"max\": ")
+                        .append(number(this.maxLatency() / 1e3))
+                        .append(",\n        \"histogram\": [");
+                boolean first = true;
+                for (int i = 0; i < BUCKETS; i++) {
+                    long count = this.latencies.get(i);
+                    if (count > 0) {
+                        if (!first) {
+                            json.append(", ");
+                        }
+                        json.append("{\"belowNanos\": ")
+                                .append(1L << Math.min(i, 62))
+                                .append(", \"count\": ").append(count)
+                                .append('}');
+                        first = false;
+                    }
+                }
+                json.append("]}");
+            }
+            json.append('}');
+        }
+
+    }
+
+    /**
+     * The thread bean, if it measures allocation per thread, or null.
+     */
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    /**
+     * Whether Flight Recorder events are recorded.
+     */
+    private static final boolean RECORDER = recorder();
+
+    /**
+     * The stages, in the order they were first asked for.
+     */
+    private final List<Stage> stages = new ArrayList<>();
+
+    /**
+     * Returns the thread bean if it measures allocation per thread.
+     *
+     * @return The thread bean, or null.
+     */
+    private static com.sun.management.ThreadMXBean threads() {
+        com.sun.management.ThreadMXBean threads = null;
+        if (ManagementFactory
+                .getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+            threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                    .getThreadMXBean();
+            if (!threads.isThreadAllocatedMemorySupported()
+                    || !threads.isThreadAllocatedMemoryEnabled()) {
+                threads = null;
+            }
+        }
+        return threads;
+    }
+
+    /**
+     * Reports whether this JVM has Flight Recorder, without loading it
+     * into a runtime that leaves it out.
+     *
+     * @return Whether events can be recorded.
+     */
+    private static boolean recorder() {
+        boolean available;
+        try {
+            available = BuildEvents.available();
+        } catch (LinkageError e) {
+            // The runtime has no jdk.jfr module
+            available = false;
+        }
+        return available;
+    }
+
+    /**
+     * Returns the number of bytes the calling thread allocated so far.
+     *
+     * @return The number of bytes, or -1 if the JVM does not measure it.
+     */
+    public static long allocatedBytes() {
+        long allocated = -1;
+        if (THREADS != null) {
+            allocated = THREADS
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return allocated;
+    }
+
+    /**
+     * Returns the stage with the given name, creating it if needed.
+     *
+     * @param name
+     *            The name of the stage.
+     * @return The stage.
+     */
+    public synchronized Stage stage(String name) {
+        for (Stage stage : this.stages) {
+            if (stage.name().equals(name)) {
+                return stage;
+            }
+        }
+        Stage stage = new Stage(name);
+        this.stages.add(stage);
+        return stage;
+    }
+
+    /**
+     * Returns the stages, in the order they were first asked for.
+     *
+     * @return The stages.
+     */
+    public synchronized List<Stage> stages() {
+        return new ArrayList<>(this.stages);
+    }
+
+    /**
+     * Returns the measurements as a JSON document.
+     *
+     * @return The JSON text.
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\n  \"stages\": [\n");
+        List<Stage> all = this.stages();
+        for (int i = 0; i < all.size(); i++) {
+            all.get(i).appendJson(json);
+            if (i < all.size() - 1) {
+                json.append(',');
+            }
+            json.append('\n');
+        }
+        json.append("  ]\n}\n");
+        return json.toString();
+    }
+
+    /**
+     * Writes the measurements to a file as a JSON document.
+     *
+     * @param file
+     *            The file.
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    public void writeJson(Path file) throws IOException {
+        Files.write(file, this.toJson().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns a count per second.
+     *
+     * @param count
+     *            The count.
+     * @param seconds
+     *            The time, in seconds.
+     * @return The rate, or 0 if no time passed.
+     */
+    private static double rate(long count, double seconds) {
+        double rate = 0;
+        if (seconds > 0) {
+            rate = count / seconds;
+        }
+        return rate;
+    }
+
+    /**
+     * Formats a number for JSON, with three decimals.
+     *
+     * @param value
+     *            The number.
+     * @return The formatted number.
+     */
+    private static String number(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+}
@@ -0,0 +1,60 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes each page to its own file in a folder, with a single channel write
+ * per page. Pages may be written concurrently.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public final class FolderSink implements PageSink {
+
+    /**
+     * The folder the pages are written to.
+     */
+    private final Path folder;
+
+    /**
+     * Creates a sink writing to the given folder.
+     *
+     * @param folder
+     *            The folder, which must exist.
+     */
+    public FolderSink(Path folder) {
+        this.folder = folder;
+    }
+
+    /**
+     * Returns the file the page with the given name is written to.
+     *
+     * @param name
+     *            The file name of the page.
+     * @return The page file.
+     */
+    public Path file(String name) {
+        return this.folder.resolve(name);
+    }
+
+    @Override
+    public void write(String name, PageBuffer page) throws IOException {
+        try (FileChannel channel = FileChannel.open(this.file(name),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            page.writeTo(channel);
+        }
+    }
+
+    @Override
+    public boolean sequential() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+        // Every page file is closed as soon as it is written
+    }
+
+}
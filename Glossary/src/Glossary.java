@@ -1,3 +1,9 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
 import components.map.Map;
 import components.map.Map.Pair;
 import components.map.Map1L;
@@ -22,6 +28,272 @@ import components.simplewriter.SimpleWriter1L;
  */
 public final class Glossary {
 
+    /**
+     * Line separator used by the generated HTML pages.
+     */
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    /**
+     * Markup of the index page before the list of terms.
+     */
+    private static final String INDEX_START = "<html>" + LINE_SEPARATOR
+            + "<head>" + LINE_SEPARATOR + "   <title>Sample Glossary</title>"
+            + LINE_SEPARATOR + "</head>" + LINE_SEPARATOR + "<body>"
+            + LINE_SEPARATOR + "   <h2>Sample Glossary</h2>" + LINE_SEPARATOR
+            + "   <hr />" + LINE_SEPARATOR + "   <h3>Index</h3>"
+            + LINE_SEPARATOR + "   <ul>" + LINE_SEPARATOR;
+
+    /**
+     * Markup of an index entry before the term.
+     */
+    private static final String INDEX_ITEM_START = "      <li>";
+
+    /**
+     * Markup of an index entry after the term.
+     */
+    private static final String INDEX_ITEM_END = "</li>" + LINE_SEPARATOR;
+
+    /**
+     * Markup of the index page after the list of terms.
+     */
+    private static final String INDEX_END = "   </ul>" + LINE_SEPARATOR
+            + "</body>" + LINE_SEPARATOR + "</html>" + LINE_SEPARATOR;
+
+    /**
+     * Markup of a navigation entry between the address and the label.
+     */
+    private static final String NAVIGATION_ITEM_MIDDLE = "\">";
+
+    /**
+     * Markup of a navigation entry between the label and the term count.
+     */
+    private static final String NAVIGATION_ITEM_COUNT = "</a> (";
+
+    /**
+     * Markup of a navigation entry after the term count.
+     */
+    private static final String NAVIGATION_ITEM_END = ")</li>"
+            + LINE_SEPARATOR;
+
+    /**
+     * Markup of an index shard page before the label in the title.
+     */
+    private static final String SHARD_START = "<html>" + LINE_SEPARATOR
+            + "<head>" + LINE_SEPARATOR + "   <title>Sample Glossary: ";
+
+    /**
+     * Markup of an index shard page between the title and the heading.
+     */
+    private static final String SHARD_HEADING = "</title>" + LINE_SEPARATOR
+            + "</head>" + LINE_SEPARATOR + "<body>" + LINE_SEPARATOR
+            + "   <h2>Sample Glossary</h2>" + LINE_SEPARATOR + "   <hr />"
+            + LINE_SEPARATOR + "   <h3>Index: ";
+
+    /**
+     * Markup of an index shard page between the heading and the list of
+     * terms.
+     */
+    private static final String SHARD_LIST = "</h3>" + LINE_SEPARATOR
+            + "   <ul>" + LINE_SEPARATOR;
+
+    /**
+     * Markup of an index shard page after the list of terms.
+     */
+    private static final String SHARD_END = "   </ul>" + LINE_SEPARATOR
+            + "   <hr />" + LINE_SEPARATOR
+            + "   <p>Return to <a href=\"index.html\">index</a>.</p>"
+            + LINE_SEPARATOR + "</body>" + LINE_SEPARATOR + "</html>"
+            + LINE_SEPARATOR;
+
+    /**
+     * Markup of a term page before the term in the title.
+     */
+    private static final String TERM_START = "<html>" + LINE_SEPARATOR
+            + "<head>" + LINE_SEPARATOR + "   <title>";
+
+    /**
+     * Markup of a term page between the title and the heading.
+     */
+    private static final String TERM_HEADING = "</title>" + LINE_SEPARATOR
+            + "</head>" + LINE_SEPARATOR + "<body>" + LINE_SEPARATOR
+            + "   <h2><b><i><font color=\"red\">";
+
+    /**
+     * Markup of a term page between the heading and the definition.
+     */
+    private static final String TERM_DEFINITION = "</font></i></b></h2>"
+            + LINE_SEPARATOR + "   <blockquote>" + LINE_SEPARATOR + "      ";
+
+    /**
+     * Markup of a term page after the definition.
+     */
+    private static final String TERM_DEFINITION_END = LINE_SEPARATOR
+            + "   </blockquote>" + LINE_SEPARATOR;
+
+    /**
+     * Markup of the list of terms referring to a term before the first one.
+     */
+    private static final String REFERENCED_BY_START = "   <p>Referenced by: ";
+
+    /**
+     * Markup between two terms referring to a term.
+     */
+    private static final String REFERENCED_BY_SEPARATOR = ", ";
+
+    /**
+     * Markup of the list of terms referring to a term after the last one.
+     */
+    private static final String REFERENCED_BY_END = ".</p>" + LINE_SEPARATOR;
+
+    /**
+     * Markup of a term page after the definition and its referrers.
+     */
+    private static final String TERM_END = "   <hr />" + LINE_SEPARATOR
+            + "   <p>Return to <a href=\"index.html\">index</a>.</p>"
+            + LINE_SEPARATOR + "</body>" + LINE_SEPARATOR + "</html>"
+            + LINE_SEPARATOR;
+
+    /**
+     * Markup of a link before the address.
+     */
+    static final String LINK_START = "<a href=\"";
+
+    /**
+     * Markup of a link between the address and the text.
+     */
+    static final String LINK_MIDDLE = "\">";
+
+    /**
+     * Markup of a link after the text.
+     */
+    static final String LINK_END = "</a>";
+
+    /**
+     * Pre-encoded {@link #INDEX_START}.
+     */
+    private static final byte[] INDEX_START_BYTES = PageBuffer
+            .encode(INDEX_START);
+
+    /**
+     * Pre-encoded {@link #INDEX_ITEM_START}.
+     */
+    private static final byte[] INDEX_ITEM_START_BYTES = PageBuffer
+            .encode(INDEX_ITEM_START);
+
+    /**
+     * Pre-encoded {@link #INDEX_ITEM_END}.
+     */
+    private static final byte[] INDEX_ITEM_END_BYTES = PageBuffer
+            .encode(INDEX_ITEM_END);
+
+    /**
+     * Pre-encoded {@link #INDEX_END}.
+     */
+    private static final byte[] INDEX_END_BYTES = PageBuffer.encode(INDEX_END);
+
+    /**
+     * Pre-encoded {@link #NAVIGATION_ITEM_MIDDLE}.
+     */
+    private static final byte[] NAVIGATION_ITEM_MIDDLE_BYTES = PageBuffer
+            .encode(NAVIGATION_ITEM_MIDDLE);
+
+    /**
+     * Pre-encoded {@link #NAVIGATION_ITEM_COUNT}.
+     */
+    private static final byte[] NAVIGATION_ITEM_COUNT_BYTES = PageBuffer
+            .encode(NAVIGATION_ITEM_COUNT);
+
+    /**
+     * Pre-encoded {@link #NAVIGATION_ITEM_END}.
+     */
+    private static final byte[] NAVIGATION_ITEM_END_BYTES = PageBuffer
+            .encode(NAVIGATION_ITEM_END);
+
+    /**
+     * Pre-encoded {@link #SHARD_START}.
+     */
+    private static final byte[] SHARD_START_BYTES = PageBuffer
+            .encode(SHARD_START);
+
+    /**
+     * Pre-encoded {@link #SHARD_HEADING}.
+     */
+    private static final byte[] SHARD_HEADING_BYTES = PageBuffer
+            .encode(SHARD_HEADING);
+
+    /**
+     * Pre-encoded {@link #SHARD_LIST}.
+     */
+    private static final byte[] SHARD_LIST_BYTES = PageBuffer
+            .encode(SHARD_LIST);
+
+    /**
+     * Pre-encoded {@link #SHARD_END}.
+     */
+    private static final byte[] SHARD_END_BYTES = PageBuffer.encode(SHARD_END);
+
+    /**
+     * Pre-encoded {@link #TERM_START}.
+     */
+    private static final byte[] TERM_START_BYTES = PageBuffer
+            .encode(TERM_START);
+
+    /**
+     * Pre-encoded {@link #TERM_HEADING}.
+     */
+    private static final byte[] TERM_HEADING_BYTES = PageBuffer
+            .encode(TERM_HEADING);
+
+    /**
+     * Pre-encoded {@link #TERM_DEFINITION}.
+     */
+    private static final byte[] TERM_DEFINITION_BYTES = PageBuffer
+            .encode(TERM_DEFINITION);
+
+    /**
+     * Pre-encoded {@link #TERM_DEFINITION_END}.
+     */
+    private static final byte[] TERM_DEFINITION_END_BYTES = PageBuffer
+            .encode(TERM_DEFINITION_END);
+
+    /**
+     * Pre-encoded {@link #REFERENCED_BY_START}.
+     */
+    private static final byte[] REFERENCED_BY_START_BYTES = PageBuffer
+            .encode(REFERENCED_BY_START);
+
+    /**
+     * Pre-encoded {@link #REFERENCED_BY_SEPARATOR}.
+     */
+    private static final byte[] REFERENCED_BY_SEPARATOR_BYTES = PageBuffer
+            .encode(REFERENCED_BY_SEPARATOR);
+
+    /**
+     * Pre-encoded {@link #REFERENCED_BY_END}.
+     */
+    private static final byte[] REFERENCED_BY_END_BYTES = PageBuffer
+            .encode(REFERENCED_BY_END);
+
+    /**
+     * Pre-encoded {@link #TERM_END}.
+     */
+    private static final byte[] TERM_END_BYTES = PageBuffer.encode(TERM_END);
+
+    /**
+     * Pre-encoded {@link #LINK_START}.
+     */
+    static final byte[] LINK_START_BYTES = PageBuffer.encode(LINK_START);
+
+    /**
+     * Pre-encoded {@link #LINK_MIDDLE}.
+     */
+    static final byte[] LINK_MIDDLE_BYTES = PageBuffer.encode(LINK_MIDDLE);
+
+    /**
+     * Pre-encoded {@link #LINK_END}.
+     */
+    static final byte[] LINK_END_BYTES = PageBuffer.encode(LINK_END);
+
     /**
      * No argument constructor--private to prevent instantiation.
      */
@@ -91,9 +363,44 @@ public final class Glossary {
         return m.remove(lowest.key());
     }
 
+    /**
+     * Sorts the given terms in place in ascending order (case-insensitive),
+     * using the same ordering as {@code compareToIgnoreCase}; terms differing
+     * only in case are ordered by {@code compareTo}. The terms are sorted on
+     * collation keys computed once per term, and large arrays are sorted in
+     * parallel.
+     *
+     * @param terms
+     *            The array of terms to sort.
+     */
+    public static void sortTerms(String[] terms) {
+        TermCollator.CASE_INSENSITIVE.sort(terms);
+    }
+
+    /**
+     * Returns the terms of the given map sorted in ascending order
+     * (case-insensitive). The map is not modified.
+     *
+     * @param m
+     *            The map containing the terms and their definitions.
+     * @return An array containing the sorted terms.
+     */
+    public static String[] sortedTerms(Map<String, String> m) {
+        // Copy the keys out of the map without draining it
+        String[] terms = new String[m.size()];
+        int i = 0;
+        for (Pair<String, String> pair : m) {
+            terms[i] = pair.key();
+            i++;
+        }
+
+        sortTerms(terms);
+        return terms;
+    }
+
     /**
      * Builds a sorted queue of terms from the given map. The terms are sorted
-     * in ascending order (case-insensitive).
+     * in ascending order (case-insensitive). The map is not modified.
      *
      * @param m
      *            The map containing the terms and their definitions.
@@ -103,25 +410,149 @@ public final class Glossary {
         // Create a new empty queue to store the sorted terms
         Queue<String> sorted = new Queue1L<>();
 
-        // Create a temporary map to store the pairs during sorting
-        Map<String, String> temp = new Map1L<>();
+        // Enqueue the terms in sorted order
+        for (String term : sortedTerms(m)) {
+            sorted.enqueue(term);
+        }
+
+        return sorted;
+    }
 
-        // Loop through the map until all pairs have been processed
-        while (m.size() > 0) {
-            // Extract the lowest pair from the map
-            Pair<String, String> lowest = extractLowestPair(m);
+    /**
+     * Renders the index HTML page with links to term definition pages.
+     *
+     * @param terms
+     *            The sorted terms.
+     * @param page
+     *            The StringBuilder to append the generated HTML to.
+     */
+    public static void renderIndexHTML(Iterable<String> terms,
+            StringBuilder page) {
+        renderIndexHTML(indexInOrder(terms), page);
+    }
 
-            // Enqueue the term in the sorted queue
-            sorted.enqueue(lowest.key());
+    /**
+     * Renders the index HTML page of a term index, linking to the page of
+     * each term by its registered file name.
+     *
+     * @param terms
+     *            The index of terms in the glossary.
+     * @param page
+     *            The StringBuilder to append the generated HTML to.
+     */
+    public static void renderIndexHTML(TermIndex terms, StringBuilder page) {
+        // Write the HTML header and title
+        page.append(INDEX_START);
 
-            // Add the pair to the temporary map
-            temp.add(lowest.key(), lowest.value());
+        // Loop through the terms and create list items with links to their
+        // definition pages
+        TermRegistry registry = terms.registry();
+        for (int i = 0; i < terms.size(); i++) {
+            page.append(INDEX_ITEM_START).append(LINK_START)
+                    .append(registry.href(i)).append(LINK_MIDDLE)
+                    .append(terms.term(i)).append(LINK_END)
+                    .append(INDEX_ITEM_END);
         }
 
-        // Transfer the pairs back from the temporary map to the original map
-        m.transferFrom(temp);
+        // Close the HTML tags
+        page.append(INDEX_END);
+    }
 
-        return sorted;
+    /**
+     * Renders the index HTML page with links to term definition pages as
+     * UTF-8 bytes, identical to the page rendered into a StringBuilder.
+     *
+     * @param terms
+     *            The sorted terms.
+     * @param page
+     *            The PageBuffer to append the generated HTML to.
+     */
+    public static void renderIndexHTML(Iterable<String> terms,
+            PageBuffer page) {
+        renderIndexHTML(indexInOrder(terms), page);
+    }
+
+    /**
+     * Indexes the given terms in the order they are given, so that their
+     * pages get the same file names however the terms are passed in.
+     *
+     * @param terms
+     *            The sorted terms.
+     * @return The index of the terms.
+     */
+    private static TermIndex indexInOrder(Iterable<String> terms) {
+        List<String> list = new ArrayList<>();
+        for (String term : terms) {
+            list.add(term);
+        }
+        return TermIndex.ofSorted(list.toArray(new String[list.size()]));
+    }
+
+    /**
+     * Renders the index HTML page of a term index as UTF-8 bytes, using the
+     * shared link fragments of its linker.
+     *
+     * @param terms
+     *            The index of terms in the glossary.
+     * @param page
+     *            The PageBuffer to append the generated HTML to.
+     */
+    public static void renderIndexHTML(TermIndex terms, PageBuffer page) {
+        TermLinker linker = terms.linker();
+        page.append(INDEX_START_BYTES);
+        for (int i = 0; i < terms.size(); i++) {
+            page.append(INDEX_ITEM_START_BYTES).append(linker.linkFragment(i))
+                    .append(INDEX_ITEM_END_BYTES);
+        }
+        page.append(INDEX_END_BYTES);
+    }
+
+    /**
+     * Renders the navigation page of a sharded index, linking to each shard
+     * page with its label and number of terms.
+     *
+     * @param shards
+     *            The shards of the index, in order.
+     * @param page
+     *            The PageBuffer to append the generated HTML to.
+     */
+    public static void renderIndexNavigationHTML(IndexSharding.Shard[] shards,
+            PageBuffer page) {
+        page.append(INDEX_START_BYTES);
+        for (IndexSharding.Shard shard : shards) {
+            page.append(INDEX_ITEM_START_BYTES).append(LINK_START_BYTES)
+                    .appendUtf8(shard.name())
+                    .append(NAVIGATION_ITEM_MIDDLE_BYTES)
+                    .appendUtf8(shard.label())
+                    .append(NAVIGATION_ITEM_COUNT_BYTES)
+                    .appendUtf8(Integer.toString(shard.end() - shard.start()))
+                    .append(NAVIGATION_ITEM_END_BYTES);
+        }
+        page.append(INDEX_END_BYTES);
+    }
+
+    /**
+     * Renders one shard page of a sharded index, with links to the
+     * definition pages of its terms and back to the navigation page.
+     *
+     * @param shard
+     *            The shard.
+     * @param terms
+     *            The index of terms in the glossary.
+     * @param page
+     *            The PageBuffer to append the generated HTML to.
+     */
+    public static void renderIndexShardHTML(IndexSharding.Shard shard,
+            TermIndex terms, PageBuffer page) {
+        page.append(SHARD_START_BYTES).appendUtf8(shard.label())
+                .append(SHARD_HEADING_BYTES).appendUtf8(shard.label())
+                .append(SHARD_LIST_BYTES);
+        TermLinker linker = terms.linker();
+        for (int i = shard.start(); i < shard.end(); i++) {
+            page.append(INDEX_ITEM_START_BYTES).append(linker.linkFragment(i))
+                    .append(INDEX_ITEM_END_BYTES);
+        }
+        page.append(SHARD_END_BYTES);
     }
 
     /**
@@ -134,28 +565,9 @@ public final class Glossary {
      */
     public static void createIndexHTML(Queue<String> terms,
             SimpleWriter output) {
-        // Write the HTML header and title
-        output.println("<html>");
-        output.println("<head>");
-        output.println("   <title>Sample Glossary</title>");
-        output.println("</head>");
-        output.println("<body>");
-        output.println("   <h2>Sample Glossary</h2>");
-        output.println("   <hr />");
-        output.println("   <h3>Index</h3>");
-        output.println("   <ul>");
-
-        // Loop through the terms and create list items with links to their
-        // definition pages
-        for (String key : terms) {
-            output.println("      <li><a href=\"" + key + ".html\">" + key
-                    + "</a></li>");
-        }
-
-        // Close the HTML tags
-        output.println("   </ul>");
-        output.println("</body>");
-        output.println("</html>");
+        StringBuilder page = new StringBuilder();
+        renderIndexHTML(terms, page);
+        output.print(page.toString());
     }
 
     /**
@@ -214,6 +626,9 @@ public final class Glossary {
 
     /**
      * Gets the definition text with references to other terms in the glossary.
+     * The terms are indexed on every call, so that links resolve through the
+     * same registry as the pages; to link many definitions, index the terms
+     * once and use {@link #getDefinitionWithReferences(String, TermIndex)}.
      *
      * @param definition
      *            The input definition text.
@@ -223,30 +638,30 @@ public final class Glossary {
      */
     public static String getDefinitionWithReferences(String definition,
             Set<String> terms) {
-        // Create a set of separator characters
-        Set<Character> separators = new Set1L<>();
-        createUniqueChars(".,/!?();<>{}[]@#$%^&*| ", separators);
-
-        // Initialize a StringBuilder to store the formatted definition text
-        StringBuilder formatted = new StringBuilder();
-        int position = 0;
-
-        // Loop through the definition text and add references to other terms
-        while (position < definition.length()) {
-            String word = getNextWordOrSeparator(definition, position,
-                    separators);
-            position += word.length();
-
-            // If the word is a term in the glossary, add a reference link
-            if (terms.contains(word)) {
-                formatted.append(
-                        "<a href=\"" + word + ".html\">" + word + "</a>");
-            } else {
-                formatted.append(word);
-            }
+        String[] names = new String[terms.size()];
+        int i = 0;
+        for (String term : terms) {
+            names[i] = term;
+            i++;
         }
+        return getDefinitionWithReferences(definition, new TermIndex(names));
+    }
 
-        return formatted.toString();
+    /**
+     * Gets the definition text with references to other terms in the glossary,
+     * using the linker of a shared term index. Multi-word terms are linked too,
+     * and the longest term starting at each word boundary wins.
+     *
+     * @param definition
+     *            The input definition text.
+     * @param terms
+     *            The index of terms in the glossary.
+     * @return The definition text with references to other terms as HTML links.
+     */
+    public static String getDefinitionWithReferences(String definition,
+            TermIndex terms) {
+        // Link the definition in one pass over the shared automaton
+        return terms.linker().link(definition);
     }
 
     /**
@@ -262,34 +677,261 @@ public final class Glossary {
      */
     public static void createTermHTML(String term, Map<String, String> glossary,
             SimpleWriter output) {
+        createTermHTML(term, glossary, new TermIndex(glossary), output);
+    }
+
+    /**
+     * Renders the HTML page for a term with its definition and references to
+     * other terms in the glossary.
+     *
+     * @param term
+     *            The term for which the page is being rendered.
+     * @param definition
+     *            The definition of the term.
+     * @param terms
+     *            The index of terms in the glossary.
+     * @param page
+     *            The StringBuilder to append the generated HTML to.
+     */
+    public static void renderTermHTML(String term, String definition,
+            TermIndex terms, StringBuilder page) {
+        renderTermHTML(term, definition, terms, null, page);
+    }
+
+    /**
+     * Renders the HTML page for a term with its definition, references to
+     * other terms in the glossary, and the terms referring to it.
+     *
+     * @param term
+     *            The term for which the page is being rendered.
+     * @param definition
+     *            The definition of the term.
+     * @param terms
+     *            The index of terms in the glossary.
+     * @param graph
+     *            The reference graph of the glossary, or null to leave out
+     *            the terms referring to this one.
+     * @param page
+     *            The StringBuilder to append the generated HTML to.
+     */
+    public static void renderTermHTML(String term, String definition,
+            TermIndex terms, ReferenceGraph graph, StringBuilder page) {
         // Write the HTML header and title
-        output.println("<html>");
-        output.println("<head>");
-        output.println("   <title>" + term + "</title>");
-        output.println("</head>");
-        output.println("<body>");
-        output.println("   <h2><b><i><font color=\"red\">" + term
-                + "</font></i></b></h2>");
-
-        // Create a set of terms from the glossary map
-        Set<String> terms = new Set1L<>();
-        for (Pair<String, String> combo : glossary) {
-            terms.add(combo.key());
-        }
+        page.append(TERM_START).append(term).append(TERM_HEADING).append(term);
 
         // Write the definition with references to other terms in the glossary
-        output.println("   <blockquote>");
-        output.println("      "
-                + getDefinitionWithReferences(glossary.value(term), terms));
-        output.println("   </blockquote>");
+        page.append(TERM_DEFINITION);
+        terms.linker().link(definition, page);
+        page.append(TERM_DEFINITION_END);
 
-        // Add a horizontal line and a link to return to the index
-        output.println("   <hr />");
-        output.println("   <p>Return to <a href=\"index.html\">index</a>.</p>");
+        // List the terms whose definitions refer to this one
+        int ordinal = -1;
+        if (graph != null) {
+            ordinal = terms.ordinal(term);
+        }
+        if (ordinal >= 0 && graph.referrerCount(ordinal) > 0) {
+            TermRegistry registry = terms.registry();
+            page.append(REFERENCED_BY_START);
+            for (int i = 0; i < graph.referrerCount(ordinal); i++) {
+                if (i > 0) {
+                    page.append(REFERENCED_BY_SEPARATOR);
+                }
+                int referrer = graph.referrer(ordinal, i);
+                page.append(LINK_START).append(registry.href(referrer))
+                        .append(LINK_MIDDLE).append(terms.term(referrer))
+                        .append(LINK_END);
+            }
+            page.append(REFERENCED_BY_END);
+        }
 
-        // Close the HTML tags
-        output.println("</body>");
-        output.println("</html>");
+        // Add a horizontal line and a link to return to the index, and close
+        // the HTML tags
+        page.append(TERM_END);
+    }
+
+    /**
+     * Renders the HTML page for a term as UTF-8 bytes, identical to the page
+     * rendered into a StringBuilder.
+     *
+     * @param term
+     *            The term for which the page is being rendered.
+     * @param definition
+     *            The definition of the term.
+     * @param terms
+     *            The index of terms in the glossary.
+     * @param page
+     *            The PageBuffer to append the generated HTML to.
+     */
+    public static void renderTermHTML(String term, String definition,
+            TermIndex terms, PageBuffer page) {
+        renderTermHTML(term, definition, terms, null, page);
+    }
+
+    /**
+     * Renders the HTML page for a term and the terms referring to it as UTF-8
+     * bytes, identical to the page rendered into a StringBuilder.
+     *
+     * @param term
+     *            The term for which the page is being rendered.
+     * @param definition
+     *            The definition of the term.
+     * @param terms
+     *            The index of terms in the glossary.
+     * @param graph
+     *            The reference graph of the glossary, or null to leave out
+     *            the terms referring to this one.
+     * @param page
+     *            The PageBuffer to append the generated HTML to.
+     */
+    public static void renderTermHTML(String term, String definition,
+            TermIndex terms, ReferenceGraph graph, PageBuffer page) {
+        page.append(TERM_START_BYTES).appendUtf8(term)
+                .append(TERM_HEADING_BYTES).appendUtf8(term);
+        page.append(TERM_DEFINITION_BYTES);
+        terms.linker().link(definition, page);
+        page.append(TERM_DEFINITION_END_BYTES);
+        int ordinal = -1;
+        if (graph != null) {
+            ordinal = terms.ordinal(term);
+        }
+        if (ordinal >= 0 && graph.referrerCount(ordinal) > 0) {
+            TermLinker linker = terms.linker();
+            page.append(REFERENCED_BY_START_BYTES);
+            for (int i = 0; i < graph.referrerCount(ordinal); i++) {
+                if (i > 0) {
+                    page.append(REFERENCED_BY_SEPARATOR_BYTES);
+                }
+                page.append(linker.linkFragment(graph.referrer(ordinal, i)));
+            }
+            page.append(REFERENCED_BY_END_BYTES);
+        }
+        page.append(TERM_END_BYTES);
+    }
+
+    /**
+     * Creates an HTML file for a term with its definition and references to
+     * other terms in the glossary, using a term index built once per run.
+     *
+     * @param term
+     *            The term for which the HTML file is being created.
+     * @param glossary
+     *            The map containing the terms and their definitions.
+     * @param terms
+     *            The index of terms in the glossary.
+     * @param output
+     *            The SimpleWriter object to write the generated HTML to.
+     */
+    public static void createTermHTML(String term, Map<String, String> glossary,
+            TermIndex terms, SimpleWriter output) {
+        createTermHTML(term, glossary, terms, null, output);
+    }
+
+    /**
+     * Creates an HTML file for a term with its definition, references to
+     * other terms in the glossary, and the terms referring to it.
+     *
+     * @param term
+     *            The term for which the HTML file is being created.
+     * @param glossary
+     *            The map containing the terms and their definitions.
+     * @param terms
+     *            The index of terms in the glossary.
+     * @param graph
+     *            The reference graph of the glossary, or null to leave out
+     *            the terms referring to this one.
+     * @param output
+     *            The SimpleWriter object to write the generated HTML to.
+     */
+    public static void createTermHTML(String term, Map<String, String> glossary,
+            TermIndex terms, ReferenceGraph graph, SimpleWriter output) {
+        StringBuilder page = new StringBuilder();
+        renderTermHTML(term, glossary.value(term), terms, graph, page);
+        output.print(page.toString());
+    }
+
+    /**
+     * Creates an HTML file for a term with its definition and references to
+     * other terms, reading the glossary from a term dictionary.
+     *
+     * @param term
+     *            The term for which the HTML file is being created.
+     * @param dictionary
+     *            The dictionary containing the terms and their definitions.
+     * @param output
+     *            The SimpleWriter object to write the generated HTML to.
+     */
+    public static void createTermHTML(String term, TermDictionary dictionary,
+            SimpleWriter output) {
+        StringBuilder page = new StringBuilder();
+        renderTermHTML(term, dictionary.value(term), dictionary.terms(), page);
+        output.print(page.toString());
+    }
+
+    /**
+     * Returns the value of a {@code --name=value} command-line option.
+     *
+     * @param args
+     *            the command line arguments
+     * @param name
+     *            The name of the option, without the leading dashes.
+     * @param defaultValue
+     *            The value to return if the option is not given.
+     * @return The value of the option, or {@code defaultValue}.
+     */
+    public static String option(String[] args, String name,
+            String defaultValue) {
+        String prefix = "--" + name + "=";
+        String value = defaultValue;
+        for (String arg : args) {
+            if (arg.startsWith(prefix)) {
+                value = arg.substring(prefix.length());
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Reports whether a {@code --name} command-line flag is given.
+     *
+     * @param args
+     *            the command line arguments
+     * @param name
+     *            The name of the flag, without the leading dashes.
+     * @return Whether the flag is given.
+     */
+    public static boolean flag(String[] args, String name) {
+        String expected = "--" + name;
+        boolean found = false;
+        for (String arg : args) {
+            if (arg.equals(expected)) {
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Opens the given glossary with its terms in the order of the given
+     * collator: through its snapshot when the snapshot is up to date and in
+     * that order, otherwise by scanning the glossary file.
+     *
+     * @param fileName
+     *            The name of the glossary file.
+     * @param collator
+     *            The order of the terms.
+     * @return The opened glossary.
+     * @throws IOException
+     *             if the glossary cannot be read
+     */
+    static GlossarySource openGlossary(String fileName,
+            TermCollator collator) throws IOException {
+        GlossarySource glossary;
+        if (collator.isCaseInsensitive()) {
+            glossary = GlossarySnapshot.openNewest(fileName);
+        } else {
+            glossary = GlossaryFile.open(fileName, collator);
+        }
+        return glossary;
     }
 
     /**
@@ -297,36 +939,176 @@ public final class Glossary {
      *
      * @param args
      *            the command line arguments
+     * @throws IOException
+     *             if the input file cannot be read or a page cannot be
+     *             written
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         // Create SimpleReader and SimpleWriter objects for user input and output
         SimpleReader in = new SimpleReader1L();
         SimpleWriter out = new SimpleWriter1L();
 
-        // Prompt the user for the input file name and output folder
-        out.print("Enter the name of the Input File: ");
-        String inputFileName = in.nextLine();
-        out.print("Enter the name of the Output File: ");
-        String outputFolder = in.nextLine();
-
-        // Read the glossary pairs from the input file
-        SimpleReader inFile = new SimpleReader1L(inputFileName);
-        Map<String, String> glossary = buildDictionary(inFile);
-        Queue<String> orderedTerms = buildSortedQueue(glossary);
-        inFile.close();
-
-        // Generate the index HTML file
-        SimpleWriter indexOut = new SimpleWriter1L(
-                outputFolder + "/index.html");
-        createIndexHTML(orderedTerms, indexOut);
-        indexOut.close();
-
-        // Generate the term definition HTML files
-        for (String key : orderedTerms) {
-            String termFile = outputFolder + "/" + key + ".html";
-            SimpleWriter termOut = new SimpleWriter1L(termFile);
-            createTermHTML(key, glossary, termOut);
-            termOut.close();
+        int workers = Integer.parseInt(option(args, "workers",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        IndexSharding sharding = IndexSharding
+                .parse(option(args, "index", "single"));
+        TermCollator collator = TermCollator
+                .parse(option(args, "collation", "default"));
+
+        // Build every glossary listed in a manifest on one shared pool,
+        // without prompting
+        String manifest = option(args, "batch", null);
+        if (manifest != null) {
+            // Options of a single build are not applied to every build
+            if (option(args, "archive", null) != null
+                    || option(args, "metrics", null) != null
+                    || option(args, "serve", null) != null
+                    || flag(args, "snapshot") || flag(args, "orphans")
+                    || flag(args, "watch")) {
+                throw new IllegalArgumentException("--batch cannot be"
+                        + " combined with --archive, --metrics, --serve,"
+                        + " --snapshot, --orphans or --watch");
+            }
+            boolean referencedBy = flag(args, "referenced-by");
+            boolean search = flag(args, "search");
+            boolean gzip = flag(args, "gzip");
+            try (GlossaryBatch batch = new GlossaryBatch(workers, collator,
+                    folder -> new SiteGenerator(folder, workers, sharding,
+                            referencedBy, null, search, gzip),
+                    flag(args, "incremental"))) {
+                List<GlossaryBatch.Build> builds = GlossaryBatch
+                        .readManifest(Paths.get(manifest));
+                int failures = batch.run(builds, out);
+                out.println((builds.size() - failures) + " of "
+                        + builds.size() + " glossaries built");
+            }
+            in.close();
+            out.close();
+            return;
+        }
+
+        // Take the input file name and output folder from the arguments, or
+        // prompt the user for them
+        String inputFileName = option(args, "input", null);
+        if (inputFileName == null) {
+            out.print("Enter the name of the Input File: ");
+            inputFileName = in.nextLine();
+        }
+
+        // Serve the pages over HTTP, rendered on demand, until the user
+        // presses Enter
+        String port = option(args, "serve", null);
+        if (port != null) {
+            long cacheBytes = Long.parseLong(option(args, "cache", "64"))
+                    << 20;
+            try (GlossarySource glossary = openGlossary(inputFileName,
+                    collator);
+                    GlossaryServer server = new GlossaryServer(
+                            glossary.terms(), glossary::definition, sharding,
+                            flag(args, "referenced-by"), cacheBytes,
+                            Integer.parseInt(port), workers)) {
+                server.start();
+                out.println("Serving on http://localhost:" + server.port()
+                        + "/ ; press Enter to stop");
+                in.nextLine();
+            }
+            in.close();
+            out.close();
+            return;
+        }
+
+        String outputFolder = option(args, "output", null);
+        if (outputFolder == null) {
+            out.print("Enter the name of the Output File: ");
+            outputFolder = in.nextLine();
+        }
+        String metricsFile = option(args, "metrics", null);
+        BuildMetrics metrics = null;
+        if (metricsFile != null) {
+            metrics = new BuildMetrics();
+        }
+        SiteGenerator generator = new SiteGenerator(outputFolder, workers,
+                sharding, flag(args, "referenced-by"), metrics,
+                flag(args, "search"), flag(args, "gzip"));
+
+        // Keep the site up to date as the glossary file is saved, until the
+        // program is stopped
+        if (flag(args, "watch")) {
+            try (GlossaryWatcher watcher = new GlossaryWatcher(inputFileName,
+                    generator, out, collator)) {
+                out.println("Watching " + inputFileName);
+                watcher.run();
+            }
+            in.close();
+            out.close();
+            return;
+        }
+
+        // Open the snapshot if it is up to date, otherwise scan the glossary
+        // file, keeping only the terms in memory
+        BuildMetrics.Stage scanning = null;
+        if (metrics != null) {
+            scanning = metrics.stage("scan");
+            scanning.begin();
+        }
+        try (GlossarySource glossary = openGlossary(inputFileName,
+                collator)) {
+            if (metrics != null) {
+                scanning.add(glossary.terms().size(),
+                        Files.size(Paths.get(inputFileName)));
+                scanning.end();
+
+                // Compile the linker up front so it is measured on its own
+                BuildMetrics.Stage compiling = metrics.stage("linker");
+                compiling.begin();
+                glossary.terms().linker();
+                compiling.add(glossary.terms().size(), 0);
+                compiling.end();
+            }
+            // Snapshots keep the default order, which lookups rely on
+            if (flag(args, "snapshot") && collator.isCaseInsensitive()
+                    && glossary instanceof GlossaryFile) {
+                GlossarySnapshot.write(
+                        GlossarySnapshot.snapshotFile(inputFileName),
+                        glossary.terms(), glossary::definition);
+            }
+
+            // Generate the index and term definition HTML files
+            String archive = option(args, "archive", null);
+            if (archive != null) {
+                // Stream every page into one archive in the output folder
+                PageSink sink = new TarArchiveSink(
+                        Paths.get(outputFolder, archive));
+                if (flag(args, "gzip")) {
+                    sink = new GzipSink(sink);
+                }
+                try {
+                    generator.generate(glossary.terms(),
+                            glossary::definition, sink);
+                } finally {
+                    sink.close();
+                }
+            } else if (flag(args, "incremental")) {
+                generator.update(glossary.terms(), glossary::definition);
+            } else {
+                generator.generate(glossary.terms(), glossary::definition);
+            }
+
+            // Report the terms no other definition refers to
+            if (flag(args, "orphans")) {
+                ReferenceGraph graph = ReferenceGraph.build(glossary.terms(),
+                        glossary::definition);
+                int[] orphans = graph.orphans();
+                out.println(graph.edgeCount() + " references, at most "
+                        + graph.maxReferrerCount() + " to one term, "
+                        + orphans.length + " orphan terms:");
+                for (int orphan : orphans) {
+                    out.println(glossary.terms().term(orphan));
+                }
+            }
+        }
+        if (metrics != null) {
+            metrics.writeJson(Paths.get(metricsFile));
         }
 
         // Close the SimpleReader and SimpleWriter objects
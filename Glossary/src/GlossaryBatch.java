@@ -0,0 +1,241 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import components.simplewriter.SimpleWriter;
+
+/**
+ * Builds several glossary sites in one run, from a manifest listing the
+ * input file and output folder of each. Every build runs as a task of one
+ * shared work-stealing {@link ForkJoinPool}, and so do the parallel parts of
+ * each build (scanning, sorting, hashing, rendering and writing), so all the
+ * builds share the same threads: a thread that runs out of work steals it
+ * from whichever build has some, and a huge glossary cannot hold the pool to
+ * itself while the small ones wait, since their tasks are queued alongside
+ * its own. The batch can be closed once its builds are done.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public final class GlossaryBatch implements AutoCloseable {
+
+    /**
+     * One glossary of a batch.
+     */
+    public static final class Build {
+
+        /**
+         * The name of the glossary file.
+         */
+        private final String input;
+
+        /**
+         * The folder the site is written to.
+         */
+        private final String output;
+
+        /**
+         * Creates a build.
+         *
+         * @param input
+         *            The name of the glossary file.
+         * @param output
+         *            The folder the site is written to.
+         */
+        public Build(String input, String output) {
+            this.input = input;
+            this.output = output;
+        }
+
+        /**
+         * Returns the name of the glossary file.
+         *
+         * @return The name of the file.
+         */
+        public String input() {
+            return this.input;
+        }
+
+        /**
+         * Returns the folder the site is written to.
+         *
+         * @return The name of the folder.
+         */
+        public String output() {
+            return this.output;
+        }
+
+    }
+
+    /**
+     * The pool shared by every build.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * The order of the terms.
+     */
+    private final TermCollator collator;
+
+    /**
+     * Creates the generator of a build, given its output folder.
+     */
+    private final Function<String, SiteGenerator> generators;
+
+    /**
+     * Whether builds update their sites instead of generating them anew.
+     */
+    private final boolean incremental;
+
+    /**
+     * Creates a batch.
+     *
+     * @param workers
+     *            The number of threads of the shared pool; at least 1.
+     * @param collator
+     *            The order of the terms.
+     * @param generators
+     *            Creates the generator of a build, given its output folder.
+     * @param incremental
+     *            Whether builds update their sites instead of generating them
+     *            anew.
+     */
+    public GlossaryBatch(int workers, TermCollator collator,
+            Function<String, SiteGenerator> generators, boolean incremental) {
+        this.pool = new ForkJoinPool(workers);
+        this.collator = collator;
+        this.generators = generators;
+        this.incremental = incremental;
+    }
+
+    /**
+     * Reads a manifest: one build per line, the glossary file then the output
+     * folder, separated by a tab or, if there is no tab, by spaces. Blank
+     * lines and lines starting with '#' are skipped.
+     *
+     * @param manifest
+     *            The manifest file.
+     * @return The builds, in the order listed.
+     * @throws IOException
+     *             if the manifest cannot be read
+     * @throws IllegalArgumentException
+     *             if a line does not list exactly a file and a folder
+     */
+    public static List<Build> readManifest(Path manifest) throws IOException {
+        List<Build> builds = new ArrayList<>();
+        int number = 0;
+        for (String line : Files.readAllLines(manifest,
+                StandardCharsets.UTF_8)) {
+            number++;
+            String trimmed = line.trim();
+            if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                String[] fields;
+                if (trimmed.indexOf('\t') >= 0) {
+                    fields = trimmed.split("\t+");
+                } else {
+                    fields = trimmed.split(" +");
+                }
+                if (fields.length != 2) {
+                    throw new IllegalArgumentException(manifest + ":"
+                            + number + ": expected a file and a folder");
+                }
+                builds.add(new Build(fields[0].trim(), fields[1].trim()));
+            }
+        }
+        return builds;
+    }
+
+    /**
+     * Builds one glossary site.
+     *
+     * @param build
+     *            The build.
+     * @return The number of terms in the glossary.
+     * @throws IOException
+     *             if the glossary cannot be read
+     */
+    private int build(Build build) throws IOException {
+        try (GlossarySource glossary = Glossary.openGlossary(build.input(),
+                this.collator)) {
+            // Unlike a single build, a batch creates its output folders
+            Files.createDirectories(Paths.get(build.output()));
+            SiteGenerator generator = this.generators.apply(build.output());
+            if (this.incremental) {
+                generator.update(glossary.terms(), glossary::definition);
+            } else {
+                generator.generate(glossary.terms(), glossary::definition);
+            }
+            return glossary.terms().size();
+        }
+    }
+
+    /**
+     * Runs every build on the shared pool and reports each one to the log,
+     * in the order listed, as it finishes. A build that fails is reported
+     * and does not stop the others.
+     *
+     * @param builds
+     *            The builds.
+     * @param log
+     *            Where the builds are reported.
+     * @return The number of builds that failed.
+     */
+    public int run(List<Build> builds, SimpleWriter log) {
+        // Queue every build at once, so they all share the pool
+        List<ForkJoinTask<Integer>> tasks = new ArrayList<>();
+        long start = System.nanoTime();
+        for (Build build : builds) {
+            tasks.add(this.pool.submit(() -> {
+                try {
+                    return this.build(build);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+
+        int failures = 0;
+        for (int i = 0; i < builds.size(); i++) {
+            try {
+                int terms = tasks.get(i).get();
+                log.println("Built " + builds.get(i).output() + ": " + terms
+                        + " terms, after " + TimeUnit.NANOSECONDS
+                                .toMillis(System.nanoTime() - start)
+                        + " ms");
+            } catch (ExecutionException e) {
+                // Report the I/O error itself rather than its wrapper
+                Throwable cause = e.getCause();
+                if (cause instanceof UncheckedIOException) {
+                    cause = cause.getCause();
+                }
+                failures++;
+                log.println("Failed " + builds.get(i).input() + ": " + cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failures += builds.size() - i;
+                log.println("Interrupted");
+                return failures;
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Shuts the shared pool down, letting running builds finish.
+     */
+    @Override
+    public void close() {
+        this.pool.shutdown();
+    }
+
+}
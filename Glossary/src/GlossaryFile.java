@@ -0,0 +1,712 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * A glossary source file read in a single streaming pass. The file holds
+ * entries separated by blank lines; each entry is a term on one line followed
+ * by its definition on one or more lines, which are joined without a
+ * separator, as in {@link Glossary#buildDictionary}. Only the terms and the
+ * position of each definition in the file are kept in memory; definitions are
+ * decoded from the file on demand, straight out of a memory mapping when the
+ * file is small enough to be mapped. Peak heap is therefore bounded by the
+ * term index, not by the total size of the definitions. A file that may be
+ * rewritten while it is in use is better {@link #read read} into the heap
+ * instead.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public final class GlossaryFile implements GlossarySource {
+
+    /**
+     * Receives the entries of a glossary file as they are scanned.
+     */
+    public interface RecordHandler {
+
+        /**
+         * Handles one entry.
+         *
+         * @param term
+         *            The term.
+         * @param offset
+         *            The position in the file of the first byte of the
+         *            definition.
+         * @param length
+         *            The number of bytes the definition spans in the file,
+         *            including the line breaks between its lines.
+         */
+        void record(String term, long offset, int length);
+
+    }
+
+    /**
+     * Entries collected in file order while scanning.
+     */
+    private static final class Entries implements RecordHandler {
+
+        /**
+         * The terms.
+         */
+        private String[] terms = new String[16];
+
+        /**
+         * Position of each definition.
+         */
+        private long[] offsets = new long[16];
+
+        /**
+         * Length of each definition.
+         */
+        private int[] lengths = new int[16];
+
+        /**
+         * Number of entries collected.
+         */
+        private int size = 0;
+
+        @Override
+        public void record(String term, long offset, int length) {
+            if (this.size == this.terms.length) {
+                this.terms = Arrays.copyOf(this.terms, 2 * this.size);
+                this.offsets = Arrays.copyOf(this.offsets, 2 * this.size);
+                this.lengths = Arrays.copyOf(this.lengths, 2 * this.size);
+            }
+            this.terms[this.size] = term;
+            this.offsets[this.size] = offset;
+            this.lengths[this.size] = length;
+            this.size++;
+        }
+
+    }
+
+    /**
+     * The state of a scan between two bytes: the entry being read and the
+     * line it is on. Entries are reported to the handler as soon as they are
+     * complete.
+     */
+    private static final class Scanner {
+
+        /**
+         * The handler receiving the entries.
+         */
+        private RecordHandler handler;
+
+        /**
+         * The bytes of the term line read so far.
+         */
+        private final ByteArrayOutputStream termBytes =
+                new ByteArrayOutputStream();
+
+        /**
+         * The term of the entry being read, or null between entries.
+         */
+        private String term = null;
+
+        /**
+         * Position of the first definition line, or -1 if not reached yet.
+         */
+        private long definitionStart = -1;
+
+        /**
+         * Position just after the text of the last non-blank definition
+         * line.
+         */
+        private long definitionEnd = -1;
+
+        /**
+         * Position of the start of the current line.
+         */
+        private long lineStart;
+
+        /**
+         * Whether the last byte read was a carriage return.
+         */
+        private boolean carriageReturn = false;
+
+        /**
+         * Creates a scanner between two entries, at the start of a line.
+         *
+         * @param handler
+         *            The handler receiving the entries.
+         * @param start
+         *            The position of the first byte to scan.
+         */
+        Scanner(RecordHandler handler, long start) {
+            this.handler = handler;
+            this.lineStart = start;
+        }
+
+        /**
+         * Reads one byte. Blank lines before a term are skipped.
+         *
+         * @param b
+         *            The byte.
+         * @param current
+         *            The position of the byte.
+         */
+        void accept(byte b, long current) {
+            if (b != '\n') {
+                if (this.term == null && b != '\r') {
+                    this.termBytes.write(b);
+                }
+                this.carriageReturn = b == '\r';
+                return;
+            }
+
+            // A line ended; work out where its text stops
+            long lineEnd = current;
+            if (this.carriageReturn) {
+                lineEnd--;
+            }
+            this.carriageReturn = false;
+            boolean blank = lineEnd == this.lineStart;
+            if (this.term == null) {
+                if (!blank) {
+                    this.term = new String(this.termBytes.toByteArray(),
+                            StandardCharsets.UTF_8);
+                }
+                this.termBytes.reset();
+            } else if (this.definitionStart < 0) {
+                // The first definition line is taken even if blank
+                this.definitionStart = this.lineStart;
+                this.definitionEnd = lineEnd;
+            } else if (!blank) {
+                this.definitionEnd = lineEnd;
+            } else {
+                this.handler.record(this.term, this.definitionStart,
+                        (int) (this.definitionEnd - this.definitionStart));
+                this.term = null;
+                this.definitionStart = -1;
+            }
+            this.lineStart = current + 1;
+        }
+
+        /**
+         * Reports whether the scanner is between two entries, so the rest of
+         * the input can be scanned without it.
+         *
+         * @return Whether no entry has been started.
+         */
+        boolean idle() {
+            return this.term == null && this.termBytes.size() == 0;
+        }
+
+        /**
+         * Ends the scan at the end of the input, which is taken as the end
+         * of its last line, and reports an entry cut off by it.
+         *
+         * @param end
+         *            The position of the end of the input.
+         */
+        void finish(long end) {
+            this.accept((byte) '\n', end);
+            if (this.term != null) {
+                if (this.definitionStart < 0) {
+                    this.handler.record(this.term, 0, 0);
+                } else {
+                    this.handler.record(this.term, this.definitionStart,
+                            (int) (this.definitionEnd - this.definitionStart));
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Size of the buffer used to scan the file.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Smallest file scanned in parallel chunks.
+     */
+    private static final long PARALLEL_SIZE = 1L << 23;
+
+    /**
+     * Smallest chunk of a file scanned by one task.
+     */
+    private static final long CHUNK_SIZE = 1L << 22;
+
+    /**
+     * Largest part of a chunk mapped at once.
+     */
+    private static final long MAPPING_SIZE = 1L << 30;
+
+    /**
+     * The open file, or null if the file was read into the heap.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The whole file, mapped or read into the heap, or null if the file is
+     * too large to map.
+     */
+    private final ByteBuffer contents;
+
+    /**
+     * The index of the terms in the file.
+     */
+    private final TermIndex terms;
+
+    /**
+     * Position of the definition of each term, by ordinal.
+     */
+    private final long[] offsets;
+
+    /**
+     * Length in bytes of the definition of each term, by ordinal.
+     */
+    private final int[] lengths;
+
+    /**
+     * Creates a glossary file over its contents and scanned entries.
+     *
+     * @param channel
+     *            The open file, or null if the file was read into the heap.
+     * @param contents
+     *            The whole file, or null if it is read through the channel.
+     * @param entries
+     *            The entries of the file, in file order.
+     * @param collator
+     *            The order of the terms.
+     * @param known
+     *            An index to reuse if it holds exactly the terms of the file,
+     *            or null.
+     * @throws IllegalArgumentException
+     *             if the file defines a term twice
+     */
+    private GlossaryFile(FileChannel channel, ByteBuffer contents,
+            Entries entries, TermCollator collator, TermIndex known) {
+        this.channel = channel;
+        this.contents = contents;
+
+        // Index the terms, unless the known index already holds them all,
+        // and reorder the definitions by ordinal
+        boolean same = known != null && known.size() == entries.size;
+        for (int i = 0; same && i < entries.size; i++) {
+            same = known.contains(entries.terms[i]);
+        }
+        if (same) {
+            this.terms = known;
+        } else {
+            this.terms = new TermIndex(
+                    Arrays.copyOf(entries.terms, entries.size), collator);
+        }
+        this.offsets = new long[entries.size];
+        this.lengths = new int[entries.size];
+        Arrays.fill(this.lengths, -1);
+        for (int i = 0; i < entries.size; i++) {
+            int ordinal = this.terms.ordinal(entries.terms[i]);
+            if (this.lengths[ordinal] >= 0) {
+                throw new IllegalArgumentException(
+                        "Duplicate term: " + entries.terms[i]);
+            }
+            this.offsets[ordinal] = entries.offsets[i];
+            this.lengths[ordinal] = entries.lengths[i];
+        }
+    }
+
+    /**
+     * Opens the given glossary file and scans its entries. A large file is
+     * scanned in parallel chunks, with the same result.
+     *
+     * @param fileName
+     *            The name of the glossary file.
+     * @return The opened glossary file.
+     * @throws IOException
+     *             if the file cannot be read
+     * @throws IllegalArgumentException
+     *             if the file defines a term twice
+     */
+    public static GlossaryFile open(String fileName) throws IOException {
+        return open(fileName, TermCollator.CASE_INSENSITIVE);
+    }
+
+    /**
+     * Opens the given glossary file and scans its entries, ordering the terms
+     * with the given collator. A large file is scanned in parallel chunks,
+     * with the same result.
+     *
+     * @param fileName
+     *            The name of the glossary file.
+     * @param collator
+     *            The order of the terms.
+     * @return The opened glossary file.
+     * @throws IOException
+     *             if the file cannot be read
+     * @throws IllegalArgumentException
+     *             if the file defines a term twice
+     */
+    public static GlossaryFile open(String fileName, TermCollator collator)
+            throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.READ);
+        try {
+            // Collect the entries in file order
+            Entries entries = new Entries();
+            if (channel.size() >= PARALLEL_SIZE) {
+                int chunks = 4 * ForkJoinPool.getCommonPoolParallelism();
+                scanParallel(channel, Math.max(CHUNK_SIZE,
+                        channel.size() / chunks), entries);
+            } else {
+                scan(channel, entries);
+            }
+
+            // Map the whole file if it fits in one mapping
+            MappedByteBuffer mapping = null;
+            if (channel.size() <= Integer.MAX_VALUE) {
+                mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                        channel.size());
+            }
+            return new GlossaryFile(channel, mapping, entries, collator,
+                    null);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the given glossary file into the heap and scans its entries,
+     * ordering the terms with the given collator. Unlike {@link #open}, the
+     * file is neither mapped nor kept open: the definitions are decoded from
+     * a copy taken in one read, so an editor truncating and rewriting the
+     * file while it is in use cannot change or cut short what was read.
+     *
+     * @param fileName
+     *            The name of the glossary file.
+     * @param collator
+     *            The order of the terms.
+     * @return The glossary file.
+     * @throws IOException
+     *             if the file cannot be read
+     * @throws IllegalArgumentException
+     *             if the file defines a term twice
+     */
+    public static GlossaryFile read(String fileName, TermCollator collator)
+            throws IOException {
+        return read(fileName, collator, null);
+    }
+
+    /**
+     * Reads the given glossary file into the heap and scans its entries, as
+     * {@link #read(String, TermCollator)} does, ordering the terms like the
+     * given index. If the file holds exactly the terms of that index, the
+     * index itself is returned by {@link #terms}, along with its compiled
+     * linker, and the terms are not sorted again.
+     *
+     * @param fileName
+     *            The name of the glossary file.
+     * @param known
+     *            The index of the terms last read from the file.
+     * @return The glossary file.
+     * @throws IOException
+     *             if the file cannot be read
+     * @throws IllegalArgumentException
+     *             if the file defines a term twice
+     */
+    public static GlossaryFile read(String fileName, TermIndex known)
+            throws IOException {
+        return read(fileName, known.collator(), known);
+    }
+
+    /**
+     * Reads the given glossary file into the heap and scans its entries.
+     *
+     * @param fileName
+     *            The name of the glossary file.
+     * @param collator
+     *            The order of the terms.
+     * @param known
+     *            An index to reuse if it holds exactly the terms of the file,
+     *            or null.
+     * @return The glossary file.
+     * @throws IOException
+     *             if the file cannot be read
+     * @throws IllegalArgumentException
+     *             if the file defines a term twice
+     */
+    private static GlossaryFile read(String fileName, TermCollator collator,
+            TermIndex known) throws IOException {
+        byte[] contents = Files.readAllBytes(Paths.get(fileName));
+        Entries entries = new Entries();
+        scan(Channels.newChannel(new ByteArrayInputStream(contents)),
+                entries);
+        return new GlossaryFile(null, ByteBuffer.wrap(contents), entries,
+                collator, known);
+    }
+
+    /**
+     * Scans a glossary from the given channel, reporting each entry to the
+     * handler as soon as it is complete. Blank lines before a term are
+     * skipped. Only the current term is held in memory. Offsets are counted
+     * from the position the scan starts at.
+     *
+     * @param channel
+     *            The channel to read, from its current position.
+     * @param handler
+     *            The handler receiving the entries.
+     * @throws IOException
+     *             if the channel cannot be read
+     */
+    public static void scan(ReadableByteChannel channel,
+            RecordHandler handler) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        Scanner scanner = new Scanner(handler, 0);
+        long position = 0;
+        while (channel.read(buffer) >= 0) {
+            buffer.flip();
+            for (int i = 0; i < buffer.limit(); i++) {
+                scanner.accept(buffer.get(i), position);
+                position++;
+            }
+            buffer.clear();
+        }
+        scanner.finish(position);
+    }
+
+    /**
+     * Scans a whole glossary file in chunks on the common fork-join pool,
+     * reporting the entries to the handler in file order, exactly as
+     * {@link #scan} does. The file is split just after blank lines, which
+     * almost always end an entry; each chunk is scanned as if it started
+     * between entries. Where a split turns out to fall inside an entry, the
+     * following chunk is scanned again, in order, from the real state.
+     *
+     * @param channel
+     *            The file to read.
+     * @param chunkSize
+     *            The approximate size of a chunk.
+     * @param handler
+     *            The handler receiving the entries.
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    static void scanParallel(FileChannel channel, long chunkSize,
+            RecordHandler handler) throws IOException {
+        // Split after the first blank line past every multiple of the size
+        long size = channel.size();
+        long[] bounds = new long[16];
+        int chunks = 0;
+        long split = nextSplit(channel, chunkSize, size);
+        while (split > 0) {
+            if (chunks + 2 >= bounds.length) {
+                bounds = Arrays.copyOf(bounds, 2 * bounds.length);
+            }
+            chunks++;
+            bounds[chunks] = split;
+            split = nextSplit(channel,
+                    Math.max(split + 1, (chunks + 1) * chunkSize), size);
+        }
+        chunks++;
+        bounds[chunks] = size;
+
+        // Scan every chunk at once, each into its own entries
+        long[] starts = bounds;
+        Scanner[] scanners = new Scanner[chunks];
+        try {
+            IntStream.range(0, chunks).parallel().forEach(k -> {
+                scanners[k] = new Scanner(new Entries(), starts[k]);
+                try {
+                    scanRange(channel, starts[k], starts[k + 1], scanners[k]);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        // Hand over the entries in order, rescanning after a wrong guess
+        Scanner carry = null;
+        for (int k = 0; k < chunks; k++) {
+            if (carry == null) {
+                Entries entries = (Entries) scanners[k].handler;
+                for (int i = 0; i < entries.size; i++) {
+                    handler.record(entries.terms[i], entries.offsets[i],
+                            entries.lengths[i]);
+                }
+                if (!scanners[k].idle()) {
+                    carry = scanners[k];
+                    carry.handler = handler;
+                }
+            } else {
+                scanRange(channel, bounds[k], bounds[k + 1], carry);
+                if (carry.idle()) {
+                    carry = null;
+                }
+            }
+        }
+        if (carry == null) {
+            carry = new Scanner(handler, size);
+        }
+        carry.finish(size);
+    }
+
+    /**
+     * Finds the first split point at or after the given position: a position
+     * just after a blank line.
+     *
+     * @param channel
+     *            The file to read.
+     * @param from
+     *            The position to search from.
+     * @param size
+     *            The size of the file.
+     * @return The split point, or -1 if there is none before the end.
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private static long nextSplit(FileChannel channel, long from, long size)
+            throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(BUFFER_SIZE);
+        long position = Math.max(0, from - 3);
+        byte last = 0;
+        byte beforeLast = 0;
+        byte third = 0;
+        while (position < size) {
+            window.clear();
+            int read = channel.read(window, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                third = beforeLast;
+                beforeLast = last;
+                last = window.get(i);
+                position++;
+                if (position >= from && position < size && last == '\n'
+                        && (beforeLast == '\n'
+                                || beforeLast == '\r' && third == '\n')) {
+                    return position;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Feeds a range of the file to a scanner, mapping it part by part.
+     *
+     * @param channel
+     *            The file to read.
+     * @param start
+     *            The position of the first byte of the range.
+     * @param end
+     *            The position just after the range.
+     * @param scanner
+     *            The scanner.
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private static void scanRange(FileChannel channel, long start, long end,
+            Scanner scanner) throws IOException {
+        for (long part = start; part < end; part += MAPPING_SIZE) {
+            int length = (int) Math.min(MAPPING_SIZE, end - part);
+            MappedByteBuffer mapping = channel
+                    .map(FileChannel.MapMode.READ_ONLY, part, length);
+            for (int i = 0; i < length; i++) {
+                scanner.accept(mapping.get(i), part + i);
+            }
+        }
+    }
+
+    @Override
+    public TermIndex terms() {
+        return this.terms;
+    }
+
+    /**
+     * Returns the definition of the term with the given ordinal, decoded from
+     * the file with its line breaks removed.
+     *
+     * @param ordinal
+     *            The ordinal of the term.
+     * @return The definition.
+     */
+    @Override
+    public String definition(int ordinal) {
+        ByteBuffer slice;
+        if (this.contents != null) {
+            // Decode straight out of the contents without copying
+            slice = this.contents.duplicate();
+            int start = (int) this.offsets[ordinal];
+            slice.limit(start + this.lengths[ordinal]);
+            slice.position(start);
+        } else {
+            slice = ByteBuffer.allocate(this.lengths[ordinal]);
+            try {
+                while (slice.hasRemaining()) {
+                    if (this.channel.read(slice,
+                            this.offsets[ordinal] + slice.position()) < 0) {
+                        throw new IOException("Unexpected end of file");
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            slice.flip();
+        }
+        return joinLines(StandardCharsets.UTF_8.decode(slice).toString());
+    }
+
+    /**
+     * Returns the definition of the given term.
+     *
+     * @param term
+     *            The term.
+     * @return The definition.
+     * @throws IllegalArgumentException
+     *             if the term is not in the file
+     */
+    public String definition(String term) {
+        int ordinal = this.terms.ordinal(term);
+        if (ordinal < 0) {
+            throw new IllegalArgumentException("Unknown term: " + term);
+        }
+        return this.definition(ordinal);
+    }
+
+    /**
+     * Removes the line breaks from the given text, joining its lines.
+     *
+     * @param text
+     *            The text.
+     * @return The text without line breaks.
+     */
+    private static String joinLines(String text) {
+        if (text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        StringBuilder joined = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c != '\n' && c != '\r') {
+                joined.append(c);
+            }
+        }
+        return joined.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.channel != null) {
+            this.channel.close();
+        }
+    }
+
+}
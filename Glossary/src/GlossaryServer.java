@@ -0,0 +1,292 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntFunction;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves the pages of a glossary site over HTTP, rendering each page when it
+ * is first asked for instead of writing every page up front. Rendered pages
+ * are kept in a {@link PageCache} bounded by size, and served with an entity
+ * tag so that clients revalidating an unchanged page get an empty
+ * "304 Not Modified" answer. The pages are the same as those written by
+ * {@link SiteGenerator} with the same options, at the same addresses, which
+ * are matched exactly. Each request is handled on a virtual thread of its
+ * own where the JDK has them, and on a fixed pool of threads otherwise.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public final class GlossaryServer implements AutoCloseable {
+
+    /**
+     * Content type of every page.
+     */
+    private static final String CONTENT_TYPE = "text/html; charset=UTF-8";
+
+    /**
+     * The index of terms in the glossary.
+     */
+    private final TermIndex terms;
+
+    /**
+     * The definition of each term, by ordinal.
+     */
+    private final IntFunction<String> definitions;
+
+    /**
+     * The reference graph, or null if term pages leave out their referrers.
+     */
+    private final ReferenceGraph graph;
+
+    /**
+     * The shards of the index; empty for a single index page.
+     */
+    private final IndexSharding.Shard[] shards;
+
+    /**
+     * The shards, by page name.
+     */
+    private final HashMap<String, IndexSharding.Shard> shardsByName;
+
+    /**
+     * The rendered pages.
+     */
+    private final PageCache cache;
+
+    /**
+     * The HTTP server.
+     */
+    private final HttpServer server;
+
+    /**
+     * The threads handling requests.
+     */
+    private final ExecutorService pool;
+
+    /**
+     * Creates a server for the given glossary and binds it, without
+     * starting it. With referrers on term pages, the reference graph is
+     * built here, which links every definition once.
+     *
+     * @param terms
+     *            The index of terms in the glossary.
+     * @param definitions
+     *            The definition of each term, by ordinal; called from several
+     *            threads at once.
+     * @param sharding
+     *            How the index is split into pages.
+     * @param referencedBy
+     *            Whether term pages list the terms referring to them.
+     * @param cacheBytes
+     *            Largest total number of page bytes kept in the cache.
+     * @param port
+     *            The port to listen on, or 0 for any free port.
+     * @param workers
+     *            The number of threads handling requests when the JDK has no
+     *            virtual threads.
+     * @throws IOException
+     *             if the server cannot be bound
+     */
+    public GlossaryServer(TermIndex terms, IntFunction<String> definitions,
+            IndexSharding sharding, boolean referencedBy, long cacheBytes,
+            int port, int workers) throws IOException {
+        this.terms = terms;
+        this.definitions = definitions;
+        ReferenceGraph graph = null;
+        if (referencedBy) {
+            graph = ReferenceGraph.build(terms, definitions);
+        }
+        this.graph = graph;
+        this.shards = sharding.split(terms);
+        this.shardsByName = new HashMap<>();
+        for (IndexSharding.Shard shard : this.shards) {
+            this.shardsByName.put(shard.name(), shard);
+        }
+        this.cache = new PageCache(cacheBytes);
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.pool = executor(workers);
+        this.server.setExecutor(this.pool);
+        this.server.createContext("/", this::handle);
+    }
+
+    /**
+     * Returns an executor starting a virtual thread for every task where the
+     * JDK has virtual threads, from Java 21 on, and a fixed pool of threads
+     * otherwise. The method is looked up at run time so that the server still
+     * compiles for and runs on older JDKs.
+     *
+     * @param workers
+     *            The number of threads of the fixed pool.
+     * @return The executor.
+     */
+    private static ExecutorService executor(int workers) {
+        ExecutorService executor;
+        try {
+            executor = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // No virtual threads, or only as a disabled preview feature
+            executor = Executors.newFixedThreadPool(workers);
+        }
+        return executor;
+    }
+
+    /**
+     * Reports whether an If-None-Match request header matches the given
+     * entity tag: whether one of its comma-separated tags is the same tag,
+     * strong or weak, or is "*".
+     *
+     * @param values
+     *            The values of the header, or null if there is none.
+     * @param etag
+     *            The strong entity tag of the page.
+     * @return Whether the page matches.
+     */
+    static boolean matches(List<String> values, String etag) {
+        if (values == null) {
+            return false;
+        }
+        for (String value : values) {
+            for (String tag : value.split(",")) {
+                String candidate = tag.trim();
+                if (candidate.startsWith("W/")) {
+                    candidate = candidate.substring(2);
+                }
+                if (candidate.equals("*") || candidate.equals(etag)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Starts answering requests, on the threads of the server.
+     */
+    public void start() {
+        this.server.start();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return The port.
+     */
+    public int port() {
+        return this.server.getAddress().getPort();
+    }
+
+    /**
+     * Returns the cache of rendered pages.
+     *
+     * @return The cache.
+     */
+    public PageCache cache() {
+        return this.cache;
+    }
+
+    /**
+     * Renders the page with the given name.
+     *
+     * @param name
+     *            The file name of the page, such as "index.html", in the
+     *            same case as in the site.
+     * @return The bytes of the page, or null if there is no such page.
+     */
+    public byte[] render(String name) {
+        PageBuffer page = new PageBuffer();
+        IndexSharding.Shard shard = this.shardsByName.get(name);
+        if (name.equals("index.html")) {
+            if (this.shards.length == 0) {
+                Glossary.renderIndexHTML(this.terms, page);
+            } else {
+                Glossary.renderIndexNavigationHTML(this.shards, page);
+            }
+        } else if (shard != null) {
+            Glossary.renderIndexShardHTML(shard, this.terms, page);
+        } else {
+            // The registry finds names ignoring case; only the exact name
+            // of a page serves it, as in the written site
+            TermRegistry registry = this.terms.registry();
+            int ordinal = registry.ordinal(name);
+            if (ordinal < 0 || !registry.fileName(ordinal).equals(name)) {
+                return null;
+            }
+            Glossary.renderTermHTML(this.terms.term(ordinal),
+                    this.definitions.apply(ordinal), this.terms, this.graph,
+                    page);
+        }
+        return page.toByteArray();
+    }
+
+    /**
+     * Answers one request.
+     *
+     * @param exchange
+     *            The request and its response.
+     * @throws IOException
+     *             if the response cannot be sent
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            Headers headers = exchange.getResponseHeaders();
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                headers.set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            // Find the page, from the cache or freshly rendered
+            String name = exchange.getRequestURI().getPath().substring(1);
+            if (name.isEmpty()) {
+                name = "index.html";
+            }
+            PageCache.Page page = this.cache.get(name, this::render);
+            if (page == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            // Answer a revalidation of the same page without its body
+            headers.set("ETag", page.etag());
+            headers.set("Cache-Control", "no-cache");
+            if (matches(exchange.getRequestHeaders().get("If-None-Match"),
+                    page.etag())) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            headers.set("Content-Type", CONTENT_TYPE);
+            if (method.equals("HEAD")) {
+                headers.set("Content-Length",
+                        Integer.toString(page.bytes().length));
+                exchange.sendResponseHeaders(200, -1);
+            } else {
+                exchange.sendResponseHeaders(200, page.bytes().length);
+                try (OutputStream body = exchange.getResponseBody()) {
+                    body.write(page.bytes());
+                }
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Stops the server, letting requests being answered finish.
+     */
+    @Override
+    public void close() {
+        this.server.stop(0);
+        this.pool.shutdown();
+    }
+
+}
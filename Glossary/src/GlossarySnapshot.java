@@ -0,0 +1,434 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * A glossary stored in a compact binary snapshot, memory-mapped when opened
+ * so that nothing is parsed at startup. The snapshot holds the terms in
+ * sorted order and the definitions with their line breaks already removed,
+ * both as UTF-8, behind an offset table:
+ *
+ * <pre>
+ * magic "GLOSNAP1"           8 bytes
+ * term count n               int
+ * term offsets               n + 1 ints
+ * definition offsets         n + 1 ints
+ * term bytes, in order
+ * definition bytes, in order
+ * </pre>
+ *
+ * Offsets are positions in the file, and entry i spans offsets i and i + 1.
+ * A term can be looked up by binary search over the mapped terms without
+ * decoding the others. A snapshot is written next to its text source and is
+ * only used while it is newer than the source; it is limited to 2 GiB.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public final class GlossarySnapshot implements GlossarySource {
+
+    /**
+     * Suffix added to the name of the text source to name its snapshot.
+     */
+    public static final String SUFFIX = ".snapshot";
+
+    /**
+     * First bytes of every snapshot.
+     */
+    private static final byte[] MAGIC = "GLOSNAP1"
+            .getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Size of the magic and the term count.
+     */
+    private static final int HEADER_SIZE = MAGIC.length + Integer.BYTES;
+
+    /**
+     * Size of the buffer used to write a snapshot.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The open snapshot file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Mapping of the whole snapshot.
+     */
+    private final MappedByteBuffer mapping;
+
+    /**
+     * Number of terms in the snapshot.
+     */
+    private final int size;
+
+    /**
+     * Position of the definition offsets.
+     */
+    private final int definitionTable;
+
+    /**
+     * Index of the terms, decoded on first use.
+     */
+    private TermIndex terms;
+
+    /**
+     * Creates a snapshot over an open and mapped file.
+     *
+     * @param channel
+     *            The open snapshot file.
+     * @param mapping
+     *            Mapping of the whole file.
+     * @param size
+     *            Number of terms in the snapshot.
+     */
+    private GlossarySnapshot(FileChannel channel, MappedByteBuffer mapping,
+            int size) {
+        this.channel = channel;
+        this.mapping = mapping;
+        this.size = size;
+        this.definitionTable = HEADER_SIZE + Integer.BYTES * (size + 1);
+    }
+
+    /**
+     * Returns the snapshot file of the given glossary source file.
+     *
+     * @param sourceFileName
+     *            The name of the glossary source file.
+     * @return The snapshot file.
+     */
+    public static Path snapshotFile(String sourceFileName) {
+        return Paths.get(sourceFileName + SUFFIX);
+    }
+
+    /**
+     * Opens the given glossary through its snapshot when the snapshot is
+     * newer than the source and valid, and from the source otherwise.
+     *
+     * @param sourceFileName
+     *            The name of the glossary source file.
+     * @return The opened glossary.
+     * @throws IOException
+     *             if the source cannot be read
+     * @throws IllegalArgumentException
+     *             if the source defines a term twice
+     */
+    public static GlossarySource openNewest(String sourceFileName)
+            throws IOException {
+        Path snapshot = snapshotFile(sourceFileName);
+        if (Files.exists(snapshot) && Files.getLastModifiedTime(snapshot)
+                .compareTo(Files.getLastModifiedTime(
+                        Paths.get(sourceFileName))) > 0) {
+            try {
+                return open(snapshot);
+            } catch (IOException e) {
+                // A damaged snapshot is ignored; the source is still there
+            }
+        }
+        return GlossaryFile.open(sourceFileName);
+    }
+
+    /**
+     * Opens and maps the given snapshot.
+     *
+     * @param file
+     *            The snapshot file.
+     * @return The opened snapshot.
+     * @throws IOException
+     *             if the file cannot be read or is not a valid snapshot
+     */
+    public static GlossarySnapshot open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long length = channel.size();
+            if (length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+                throw new IOException("Not a glossary snapshot: " + file);
+            }
+            MappedByteBuffer mapping = channel
+                    .map(FileChannel.MapMode.READ_ONLY, 0, length);
+            byte[] magic = new byte[MAGIC.length];
+            mapping.get(magic);
+            int size = mapping.getInt(MAGIC.length);
+
+            // Check the tables fit before trusting any offset
+            long tablesEnd = HEADER_SIZE + 2L * Integer.BYTES * (size + 1L);
+            if (!Arrays.equals(magic, MAGIC) || size < 0
+                    || tablesEnd > length) {
+                throw new IOException("Not a glossary snapshot: " + file);
+            }
+            GlossarySnapshot snapshot = new GlossarySnapshot(channel, mapping,
+                    size);
+
+            // Check every offset once, so that no read can later fall
+            // outside the file: terms then definitions, in order, filling
+            // the file after the tables
+            if (!snapshot.isOrdered(HEADER_SIZE, tablesEnd,
+                    snapshot.definitionStart(0))
+                    || !snapshot.isOrdered(snapshot.definitionTable,
+                            snapshot.termStart(size), length)) {
+                throw new IOException("Not a glossary snapshot: " + file);
+            }
+            return snapshot;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes a snapshot of the given glossary, replacing the file atomically
+     * where the file system allows.
+     *
+     * @param file
+     *            The snapshot file.
+     * @param terms
+     *            The index of terms in the glossary.
+     * @param definitions
+     *            The definition of each term, by ordinal.
+     * @throws IOException
+     *             if the file cannot be written, or the glossary does not fit
+     *             in a snapshot
+     */
+    public static void write(Path file, TermIndex terms,
+            IntFunction<String> definitions) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        int size = terms.size();
+        long position = HEADER_SIZE + 2L * Integer.BYTES * (size + 1L);
+        int[] termStarts = new int[size + 1];
+        int[] definitionStarts = new int[size + 1];
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            // Stream the terms and definitions after room for the tables
+            channel.position(position);
+            OutputStream out = new BufferedOutputStream(
+                    Channels.newOutputStream(channel), BUFFER_SIZE);
+            for (int i = 0; i < size; i++) {
+                termStarts[i] = checkedOffset(position);
+                byte[] bytes = terms.term(i).getBytes(StandardCharsets.UTF_8);
+                out.write(bytes);
+                position += bytes.length;
+            }
+            termStarts[size] = checkedOffset(position);
+            for (int i = 0; i < size; i++) {
+                definitionStarts[i] = checkedOffset(position);
+                byte[] bytes = definitions.apply(i)
+                        .getBytes(StandardCharsets.UTF_8);
+                out.write(bytes);
+                position += bytes.length;
+            }
+            definitionStarts[size] = checkedOffset(position);
+            out.flush();
+
+            // Fill in the header and the tables
+            ByteBuffer tables = ByteBuffer.allocate(termStarts[0]);
+            tables.put(MAGIC).putInt(size);
+            tables.asIntBuffer().put(termStarts).put(definitionStarts);
+            tables.clear();
+            while (tables.hasRemaining()) {
+                channel.write(tables, tables.position());
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Checks that a position in a snapshot being written fits in an offset.
+     *
+     * @param position
+     *            The position.
+     * @return The position as an offset.
+     * @throws IOException
+     *             if the position is too large
+     */
+    private static int checkedOffset(long position) throws IOException {
+        if (position > Integer.MAX_VALUE) {
+            throw new IOException("Glossary too large for a snapshot");
+        }
+        return (int) position;
+    }
+
+    /**
+     * Reports whether an offset table starts and ends at the given positions
+     * and never decreases in between.
+     *
+     * @param table
+     *            The position of the table in the file.
+     * @param first
+     *            The expected first offset.
+     * @param last
+     *            The expected last offset.
+     * @return Whether the table is ordered and spans first to last.
+     */
+    private boolean isOrdered(int table, long first, long last) {
+        int previous = this.mapping.getInt(table);
+        boolean ordered = previous == first;
+        for (int i = 1; ordered && i <= this.size; i++) {
+            int offset = this.mapping.getInt(table + Integer.BYTES * i);
+            ordered = offset >= previous;
+            previous = offset;
+        }
+        return ordered && previous == last;
+    }
+
+    /**
+     * Returns the position of the bytes of the given term.
+     *
+     * @param ordinal
+     *            The ordinal of the term, or the number of terms for the end
+     *            of the last one.
+     * @return The position.
+     */
+    private int termStart(int ordinal) {
+        return this.mapping.getInt(HEADER_SIZE + Integer.BYTES * ordinal);
+    }
+
+    /**
+     * Returns the position of the bytes of the given definition.
+     *
+     * @param ordinal
+     *            The ordinal of the term, or the number of terms for the end
+     *            of the last definition.
+     * @return The position.
+     */
+    private int definitionStart(int ordinal) {
+        return this.mapping
+                .getInt(this.definitionTable + Integer.BYTES * ordinal);
+    }
+
+    /**
+     * Decodes the given span of the mapping as UTF-8.
+     *
+     * @param start
+     *            The position of the first byte.
+     * @param end
+     *            The position just after the last byte.
+     * @return The decoded text.
+     */
+    private String decode(int start, int end) {
+        ByteBuffer slice = this.mapping.duplicate();
+        slice.limit(end);
+        slice.position(start);
+        return StandardCharsets.UTF_8.decode(slice).toString();
+    }
+
+    /**
+     * Returns the number of terms in the snapshot.
+     *
+     * @return The number of terms.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the term with the given ordinal, decoding only that term.
+     *
+     * @param ordinal
+     *            The ordinal of the term.
+     * @return The term.
+     */
+    public String term(int ordinal) {
+        return this.decode(this.termStart(ordinal),
+                this.termStart(ordinal + 1));
+    }
+
+    /**
+     * Finds the ordinal of the given term by binary search over the mapped
+     * terms, decoding only the terms it compares with.
+     *
+     * @param term
+     *            The term.
+     * @return The ordinal of the term, or -1 if it is not in the snapshot.
+     */
+    public int find(String term) {
+        int low = 0;
+        int high = this.size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = String.CASE_INSENSITIVE_ORDER
+                    .compare(this.term(middle), term);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                // Terms differing only in case sit next to each other
+                int first = middle;
+                while (first > 0 && this.term(first - 1)
+                        .equalsIgnoreCase(term)) {
+                    first--;
+                }
+                for (int i = first; i < this.size
+                        && this.term(i).equalsIgnoreCase(term); i++) {
+                    if (this.term(i).equals(term)) {
+                        return i;
+                    }
+                }
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the terms in the snapshot, decoding every term on
+     * first use. The terms are stored sorted, so they are not sorted again.
+     *
+     * @return The term index.
+     */
+    @Override
+    public synchronized TermIndex terms() {
+        if (this.terms == null) {
+            String[] decoded = new String[this.size];
+            for (int i = 0; i < this.size; i++) {
+                decoded[i] = this.term(i);
+            }
+            this.terms = TermIndex.ofSorted(decoded);
+        }
+        return this.terms;
+    }
+
+    @Override
+    public String definition(int ordinal) {
+        return this.decode(this.definitionStart(ordinal),
+                this.definitionStart(ordinal + 1));
+    }
+
+    /**
+     * Returns the definition of the given term, found without decoding the
+     * whole glossary.
+     *
+     * @param term
+     *            The term.
+     * @return The definition.
+     * @throws IllegalArgumentException
+     *             if the term is not in the snapshot
+     */
+    public String definition(String term) {
+        int ordinal = this.find(term);
+        if (ordinal < 0) {
+            throw new IllegalArgumentException("Unknown term: " + term);
+        }
+        return this.definition(ordinal);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+}
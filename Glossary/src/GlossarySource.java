@@ -0,0 +1,38 @@
+import java.io.IOException;
+
+/**
+ * A glossary opened for generation: its sorted terms, and the definition of
+ * each term by ordinal, read on demand.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public interface GlossarySource extends AutoCloseable {
+
+    /**
+     * Returns the index of the terms in the glossary.
+     *
+     * @return The term index.
+     */
+    TermIndex terms();
+
+    /**
+     * Returns the definition of the term with the given ordinal. Safe to call
+     * from several threads at once.
+     *
+     * @param ordinal
+     *            The ordinal of the term.
+     * @return The definition.
+     */
+    String definition(int ordinal);
+
+    /**
+     * Releases the glossary.
+     *
+     * @throws IOException
+     *             if the glossary cannot be closed
+     */
+    @Override
+    void close() throws IOException;
+
+}
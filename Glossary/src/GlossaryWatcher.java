@@ -0,0 +1,236 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+import components.simplewriter.SimpleWriter;
+
+/**
+ * Keeps a glossary site up to date while its source file is edited. The
+ * source is watched with a {@link WatchService}; every time it is saved, it
+ * is read into the heap, rather than mapped, since editors often truncate and
+ * rewrite the file in place, and the site is brought up to date
+ * incrementally. Between saves the watcher keeps the term index, with its
+ * compiled linker, and the generator keeps the hashes of the last update in
+ * memory; as long as no term is added or removed, the index is reused without
+ * sorting the terms again, and only the definitions that changed are linked
+ * and rendered again.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public final class GlossaryWatcher implements AutoCloseable {
+
+    /**
+     * Time to wait for further events after a change, so that the several
+     * events of a single save lead to a single update.
+     */
+    private static final long SETTLE_MILLIS = 50;
+
+    /**
+     * The glossary source file.
+     */
+    private final Path source;
+
+    /**
+     * The generator keeping the site up to date.
+     */
+    private final SiteGenerator generator;
+
+    /**
+     * Where progress and errors are reported.
+     */
+    private final SimpleWriter log;
+
+    /**
+     * The service watching the folder of the source.
+     */
+    private final WatchService service;
+
+    /**
+     * The order of the terms.
+     */
+    private final TermCollator collator;
+
+    /**
+     * The term index of the last successful update, or null before the
+     * first one.
+     */
+    private TermIndex terms;
+
+    /**
+     * Creates a watcher for the given source file.
+     *
+     * @param sourceFileName
+     *            The name of the glossary source file.
+     * @param generator
+     *            The generator keeping the site up to date.
+     * @param log
+     *            Where progress and errors are reported.
+     * @throws IOException
+     *             if the folder of the source cannot be watched
+     */
+    public GlossaryWatcher(String sourceFileName, SiteGenerator generator,
+            SimpleWriter log) throws IOException {
+        this(sourceFileName, generator, log, TermCollator.CASE_INSENSITIVE);
+    }
+
+    /**
+     * Creates a watcher for the given source file, ordering the terms with
+     * the given collator.
+     *
+     * @param sourceFileName
+     *            The name of the glossary source file.
+     * @param generator
+     *            The generator keeping the site up to date.
+     * @param log
+     *            Where progress and errors are reported.
+     * @param collator
+     *            The order of the terms.
+     * @throws IOException
+     *             if the folder of the source cannot be watched
+     */
+    public GlossaryWatcher(String sourceFileName, SiteGenerator generator,
+            SimpleWriter log, TermCollator collator) throws IOException {
+        this.source = Paths.get(sourceFileName).toAbsolutePath();
+        this.generator = generator;
+        this.log = log;
+        this.collator = collator;
+        this.service = FileSystems.getDefault().newWatchService();
+        try {
+            this.source.getParent().register(this.service,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            this.service.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the source into the heap and brings the site up to date.
+     *
+     * @return The number of term pages written.
+     * @throws IOException
+     *             if the source cannot be read
+     * @throws IllegalArgumentException
+     *             if the source defines a term twice
+     */
+    public int rebuild() throws IOException {
+        try (GlossaryFile glossary = this.read()) {
+            int written = this.generator.update(glossary.terms(),
+                    glossary::definition);
+            this.terms = glossary.terms();
+            return written;
+        }
+    }
+
+    /**
+     * Reads the source into the heap, keeping the warm index, and its
+     * linker, if the terms are the same.
+     *
+     * @return The source.
+     * @throws IOException
+     *             if the source cannot be read
+     * @throws IllegalArgumentException
+     *             if the source defines a term twice
+     */
+    private GlossaryFile read() throws IOException {
+        GlossaryFile glossary;
+        if (this.terms != null) {
+            glossary = GlossaryFile.read(this.source.toString(), this.terms);
+        } else {
+            glossary = GlossaryFile.read(this.source.toString(),
+                    this.collator);
+        }
+        return glossary;
+    }
+
+    /**
+     * Updates the site, then again after every save of the source, until
+     * the watcher is closed or the thread is interrupted. A save that cannot
+     * be read is reported and skipped, and the site is left as it was.
+     */
+    public void run() {
+        this.rebuildAndReport();
+        try {
+            boolean watching = true;
+            while (watching) {
+                WatchKey key = this.service.take();
+                boolean changed = this.concernsSource(key);
+
+                // Let the rest of the save arrive before updating
+                key = this.service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                while (key != null) {
+                    changed = this.concernsSource(key) || changed;
+                    key = this.service.poll(SETTLE_MILLIS,
+                            TimeUnit.MILLISECONDS);
+                }
+                if (changed) {
+                    this.rebuildAndReport();
+                }
+                watching = !Thread.currentThread().isInterrupted();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Closed from another thread; stop watching
+        }
+    }
+
+    /**
+     * Consumes the events of a watch key and reports whether any of them
+     * concerns the source file.
+     *
+     * @param key
+     *            The signalled key.
+     * @return Whether the source changed.
+     */
+    private boolean concernsSource(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                    || this.source.getFileName().equals(event.context())) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    /**
+     * Rebuilds the site and reports how long it took, or why it failed.
+     */
+    private void rebuildAndReport() {
+        long start = System.nanoTime();
+        try {
+            int written = this.rebuild();
+            long millis = TimeUnit.NANOSECONDS
+                    .toMillis(System.nanoTime() - start);
+            this.log.println("Updated " + written + " of "
+                    + this.terms.size() + " pages in " + millis + " ms");
+        } catch (IOException | UncheckedIOException
+                | IllegalArgumentException e) {
+            this.log.println("Update failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops watching; a running {@link #run} returns.
+     *
+     * @throws IOException
+     *             if the watch service cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.service.close();
+    }
+
+}
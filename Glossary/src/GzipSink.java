@@ -0,0 +1,99 @@
+import java.io.IOException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Writes every page to another sink along with a gzip-compressed copy named
+ * after it with ".gz" appended, so a server or CDN can send the compressed
+ * page as is. Pages are compressed as they are written, by whichever thread
+ * writes them, so with a sink written by several threads the compression
+ * runs in parallel with rendering. Each thread borrows a deflater and a
+ * buffer from a shared pool, so no compressor is created per page.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public final class GzipSink implements PageSink {
+
+    /**
+     * Suffix of the name of a compressed copy.
+     */
+    public static final String SUFFIX = ".gz";
+
+    /**
+     * A deflater and the buffer it compresses into.
+     */
+    private static final class Compressor {
+
+        /**
+         * The deflater, writing raw deflate data.
+         */
+        private final Deflater deflater = new Deflater(
+                Deflater.BEST_COMPRESSION, true);
+
+        /**
+         * The buffer holding the compressed page.
+         */
+        private final PageBuffer buffer = new PageBuffer();
+
+    }
+
+    /**
+     * The sink receiving the pages and their compressed copies.
+     */
+    private final PageSink sink;
+
+    /**
+     * The compressors not in use.
+     */
+    private final ConcurrentLinkedQueue<Compressor> idle =
+            new ConcurrentLinkedQueue<>();
+
+    /**
+     * Creates a sink writing pages and their compressed copies to another.
+     *
+     * @param sink
+     *            The sink receiving the pages; closed with this one.
+     */
+    public GzipSink(PageSink sink) {
+        this.sink = sink;
+    }
+
+    @Override
+    public void write(String name, PageBuffer page) throws IOException {
+        this.sink.write(name, page);
+        Compressor compressor = this.idle.poll();
+        if (compressor == null) {
+            compressor = new Compressor();
+        }
+        try {
+            compressor.buffer.clear();
+            compressor.buffer.appendGzip(page, compressor.deflater);
+            this.sink.write(name + SUFFIX, compressor.buffer);
+        } finally {
+            this.idle.add(compressor);
+        }
+    }
+
+    @Override
+    public boolean sequential() {
+        return this.sink.sequential();
+    }
+
+    /**
+     * Releases the compressors and closes the underlying sink.
+     *
+     * @throws IOException
+     *             if the underlying sink cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        Compressor compressor = this.idle.poll();
+        while (compressor != null) {
+            compressor.deflater.end();
+            compressor = this.idle.poll();
+        }
+        this.sink.close();
+    }
+
+}
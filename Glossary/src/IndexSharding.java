@@ -0,0 +1,262 @@
+import java.util.Arrays;
+
+/**
+ * How the index of a glossary site is split into pages. By default the whole
+ * index is one page. Sharded, the index page becomes a small navigation page
+ * linking to one shard page per leading character, or per fixed number of
+ * terms. Each shard covers a contiguous range of the sorted terms, so shards
+ * can be rendered in parallel and one shard can be regenerated without
+ * touching the others.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public final class IndexSharding {
+
+    /**
+     * A range of sorted terms listed on one index page.
+     */
+    public static final class Shard {
+
+        /**
+         * The file name of the shard page.
+         */
+        private final String name;
+
+        /**
+         * The label of the shard on the navigation page.
+         */
+        private final String label;
+
+        /**
+         * The ordinal of the first term of the shard.
+         */
+        private final int start;
+
+        /**
+         * The ordinal just after the last term of the shard.
+         */
+        private final int end;
+
+        /**
+         * Creates a shard.
+         *
+         * @param name
+         *            The file name of the shard page.
+         * @param label
+         *            The label of the shard on the navigation page.
+         * @param start
+         *            The ordinal of the first term of the shard.
+         * @param end
+         *            The ordinal just after the last term of the shard.
+         */
+        Shard(String name, String label, int start, int end) {
+            this.name = name;
+            this.label = label;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Returns the file name of the shard page.
+         *
+         * @return The file name.
+         */
+        public String name() {
+            return this.name;
+        }
+
+        /**
+         * Returns the label of the shard on the navigation page.
+         *
+         * @return The label.
+         */
+        public String label() {
+            return this.label;
+        }
+
+        /**
+         * Returns the ordinal of the first term of the shard.
+         *
+         * @return The first ordinal.
+         */
+        public int start() {
+            return this.start;
+        }
+
+        /**
+         * Returns the ordinal just after the last term of the shard.
+         *
+         * @return The end ordinal.
+         */
+        public int end() {
+            return this.end;
+        }
+
+    }
+
+    /**
+     * The whole index on one page.
+     */
+    public static final IndexSharding NONE = new IndexSharding(-1);
+
+    /**
+     * One shard per leading character, ignoring case.
+     */
+    public static final IndexSharding BY_LETTER = new IndexSharding(0);
+
+    /**
+     * Number of terms per shard, 0 to shard by leading character, or
+     * negative not to shard.
+     */
+    private final int pageSize;
+
+    /**
+     * Creates a sharding.
+     *
+     * @param pageSize
+     *            Number of terms per shard, 0 to shard by leading character,
+     *            or negative not to shard.
+     */
+    private IndexSharding(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Returns the sharding with the given number of terms per shard.
+     *
+     * @param pageSize
+     *            The number of terms per shard; at least 1.
+     * @return The sharding.
+     */
+    public static IndexSharding byPageSize(int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException(
+                    "page size must be at least 1: " + pageSize);
+        }
+        return new IndexSharding(pageSize);
+    }
+
+    /**
+     * Returns the sharding described by a command-line value: "single",
+     * "letter", or a number of terms per shard.
+     *
+     * @param value
+     *            The value.
+     * @return The sharding.
+     * @throws IllegalArgumentException
+     *             if the value is not understood
+     */
+    public static IndexSharding parse(String value) {
+        IndexSharding sharding;
+        if (value.equals("single")) {
+            sharding = NONE;
+        } else if (value.equals("letter")) {
+            sharding = BY_LETTER;
+        } else {
+            try {
+                sharding = byPageSize(Integer.parseInt(value));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(
+                        "Unknown index sharding: " + value, e);
+            }
+        }
+        return sharding;
+    }
+
+    /**
+     * Returns the description of this sharding accepted by {@link #parse}.
+     *
+     * @return The description.
+     */
+    @Override
+    public String toString() {
+        String description;
+        if (this.pageSize < 0) {
+            description = "single";
+        } else if (this.pageSize == 0) {
+            description = "letter";
+        } else {
+            description = Integer.toString(this.pageSize);
+        }
+        return description;
+    }
+
+    /**
+     * Splits the given terms into shards, in order. Without sharding, or
+     * without terms, there are no shards and the index is a single page.
+     *
+     * @param terms
+     *            The index of terms in the glossary.
+     * @return The shards.
+     */
+    public Shard[] split(TermIndex terms) {
+        if (this.pageSize < 0 || terms.size() == 0) {
+            return new Shard[0];
+        }
+        Shard[] shards = new Shard[16];
+        int count = 0;
+        int start = 0;
+        while (start < terms.size()) {
+            // Find the end of the shard and name it
+            int end;
+            String name;
+            String label;
+            if (this.pageSize > 0) {
+                end = Math.min(start + this.pageSize, terms.size());
+                name = "index-" + (count + 1) + ".html";
+                label = terms.term(start) + " - " + terms.term(end - 1);
+            } else {
+                char key = key(terms.term(start));
+                end = start + 1;
+                while (end < terms.size() && terms.collator()
+                        .sameInitial(terms.term(start), terms.term(end))) {
+                    end++;
+                }
+                name = "index-" + keyName(key) + ".html";
+                label = String.valueOf(Character.toUpperCase(key));
+            }
+            if (count == shards.length) {
+                shards = Arrays.copyOf(shards, 2 * count);
+            }
+            shards[count] = new Shard(name, label, start, end);
+            count++;
+            start = end;
+        }
+        return Arrays.copyOf(shards, count);
+    }
+
+    /**
+     * Returns the leading character of a term, folded the way
+     * {@link String#CASE_INSENSITIVE_ORDER} compares it. Shards group the
+     * terms with the same initial according to the order of the index, and
+     * take their key from their first term.
+     *
+     * @param term
+     *            The term.
+     * @return The key of the term.
+     */
+    private static char key(String term) {
+        if (term.isEmpty()) {
+            return 0;
+        }
+        return Character
+                .toLowerCase(Character.toUpperCase(term.charAt(0)));
+    }
+
+    /**
+     * Returns the part of a shard file name identifying the given key: the
+     * key itself for ASCII letters and digits, its code otherwise.
+     *
+     * @param key
+     *            The key.
+     * @return The name of the key.
+     */
+    private static String keyName(char key) {
+        if (key < 0x80 && Character.isLetterOrDigit(key)) {
+            return String.valueOf(key);
+        }
+        return String.format("u%04x", (int) key);
+    }
+
+}
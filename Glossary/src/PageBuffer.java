@@ -0,0 +1,256 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A reusable buffer holding one page as UTF-8 bytes. Fixed markup is appended
+ * as pre-encoded fragments and text is encoded straight into the buffer, so
+ * rendering a page allocates no intermediate strings, and the finished page
+ * reaches its file in a single channel write. Buffers are meant to be pooled:
+ * {@link #clear()} keeps the storage for the next page unless it has grown
+ * unusually large.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public final class PageBuffer {
+
+    /**
+     * Initial capacity of a buffer.
+     */
+    private static final int INITIAL_CAPACITY = 4096;
+
+    /**
+     * Largest capacity a buffer keeps when cleared.
+     */
+    private static final int RETAINED_CAPACITY = 1 << 20;
+
+    /**
+     * Header of a gzip member with no file name and no time stamp.
+     */
+    private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b,
+            Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+    /**
+     * The bytes of the page.
+     */
+    private byte[] bytes = new byte[INITIAL_CAPACITY];
+
+    /**
+     * The number of bytes in the page.
+     */
+    private int length = 0;
+
+    /**
+     * Encodes the given text as UTF-8, for use as a pre-encoded fragment.
+     *
+     * @param text
+     *            The text.
+     * @return The encoded text.
+     */
+    public static byte[] encode(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Makes room for the given number of additional bytes.
+     *
+     * @param extra
+     *            The number of bytes about to be appended.
+     */
+    private void ensureCapacity(int extra) {
+        if (this.length + extra > this.bytes.length) {
+            this.bytes = Arrays.copyOf(this.bytes,
+                    Math.max(this.length + extra, 2 * this.bytes.length));
+        }
+    }
+
+    /**
+     * Appends a pre-encoded fragment.
+     *
+     * @param fragment
+     *            The encoded fragment.
+     * @return This buffer.
+     */
+    public PageBuffer append(byte[] fragment) {
+        this.ensureCapacity(fragment.length);
+        System.arraycopy(fragment, 0, this.bytes, this.length,
+                fragment.length);
+        this.length += fragment.length;
+        return this;
+    }
+
+    /**
+     * Appends the given text, encoded as UTF-8.
+     *
+     * @param text
+     *            The text.
+     * @return This buffer.
+     */
+    public PageBuffer appendUtf8(CharSequence text) {
+        return this.appendUtf8(text, 0, text.length());
+    }
+
+    /**
+     * Appends part of the given text, encoded as UTF-8. Unpaired surrogates
+     * are encoded as '?', as {@link String#getBytes} does.
+     *
+     * @param text
+     *            The text.
+     * @param start
+     *            The position of the first character to append.
+     * @param end
+     *            The position just after the last character to append.
+     * @return This buffer.
+     */
+    public PageBuffer appendUtf8(CharSequence text, int start, int end) {
+        // At most three bytes per char; a surrogate pair gives four for two
+        this.ensureCapacity(3 * (end - start));
+        byte[] out = this.bytes;
+        int n = this.length;
+        int i = start;
+        while (i < end) {
+            char c = text.charAt(i);
+            i++;
+            if (c < 0x80) {
+                out[n] = (byte) c;
+                n++;
+            } else if (c < 0x800) {
+                out[n] = (byte) (0xC0 | (c >> 6));
+                out[n + 1] = (byte) (0x80 | (c & 0x3F));
+                n += 2;
+            } else if (Character.isHighSurrogate(c) && i < end
+                    && Character.isLowSurrogate(text.charAt(i))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(i));
+                i++;
+                out[n] = (byte) (0xF0 | (codePoint >> 18));
+                out[n + 1] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                out[n + 2] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                out[n + 3] = (byte) (0x80 | (codePoint & 0x3F));
+                n += 4;
+            } else if (Character.isSurrogate(c)) {
+                out[n] = '?';
+                n++;
+            } else {
+                out[n] = (byte) (0xE0 | (c >> 12));
+                out[n + 1] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                out[n + 2] = (byte) (0x80 | (c & 0x3F));
+                n += 3;
+            }
+        }
+        this.length = n;
+        return this;
+    }
+
+    /**
+     * Appends another page compressed in the gzip format, deflating it
+     * straight into this buffer. There is no file name or time stamp, so the
+     * same page always compresses to the same bytes.
+     *
+     * @param page
+     *            The page to compress.
+     * @param deflater
+     *            The deflater to compress with, writing raw deflate data;
+     *            reset before use.
+     * @return This buffer.
+     */
+    public PageBuffer appendGzip(PageBuffer page, Deflater deflater) {
+        deflater.reset();
+        deflater.setInput(page.bytes, 0, page.length);
+        deflater.finish();
+        this.append(GZIP_HEADER);
+        this.ensureCapacity(page.length / 2 + 64);
+        while (!deflater.finished()) {
+            if (this.length == this.bytes.length) {
+                this.ensureCapacity(1);
+            }
+            this.length += deflater.deflate(this.bytes, this.length,
+                    this.bytes.length - this.length);
+        }
+
+        // The trailer holds the checksum and length, little-endian
+        CRC32 checksum = new CRC32();
+        checksum.update(page.bytes, 0, page.length);
+        this.appendIntLittleEndian((int) checksum.getValue());
+        this.appendIntLittleEndian(page.length);
+        return this;
+    }
+
+    /**
+     * Appends an int as four little-endian bytes.
+     *
+     * @param value
+     *            The int.
+     */
+    private void appendIntLittleEndian(int value) {
+        this.ensureCapacity(4);
+        for (int i = 0; i < 4; i++) {
+            this.bytes[this.length] = (byte) (value >>> (8 * i));
+            this.length++;
+        }
+    }
+
+    /**
+     * Returns the number of bytes in the page.
+     *
+     * @return The length of the page.
+     */
+    public int length() {
+        return this.length;
+    }
+
+    /**
+     * Returns a copy of the bytes of the page.
+     *
+     * @return The bytes of the page.
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(this.bytes, this.length);
+    }
+
+    /**
+     * Returns a read-only view of the bytes of the page, valid until the
+     * buffer is next modified.
+     *
+     * @return The bytes of the page.
+     */
+    public ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(this.bytes, 0, this.length).asReadOnlyBuffer();
+    }
+
+    /**
+     * Writes the whole page to the given channel.
+     *
+     * @param channel
+     *            The channel.
+     * @throws IOException
+     *             if the channel cannot be written
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        ByteBuffer page = this.asByteBuffer();
+        while (page.hasRemaining()) {
+            channel.write(page);
+        }
+    }
+
+    /**
+     * Empties the buffer for the next page, releasing its storage if it grew
+     * unusually large.
+     */
+    public void clear() {
+        this.length = 0;
+        if (this.bytes.length > RETAINED_CAPACITY) {
+            this.bytes = new byte[INITIAL_CAPACITY];
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new String(this.bytes, 0, this.length, StandardCharsets.UTF_8);
+    }
+
+}
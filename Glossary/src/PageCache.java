@@ -0,0 +1,193 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * A cache of rendered pages bounded by the total size of their bytes. When a
+ * new page does not fit, the least recently used pages are evicted until it
+ * does; a page larger than the whole cache is returned without being kept.
+ * Each page carries an entity tag derived from its bytes, so clients can
+ * revalidate it cheaply. The cache can be shared between threads.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public final class PageCache {
+
+    /**
+     * A rendered page and its entity tag.
+     */
+    public static final class Page {
+
+        /**
+         * The bytes of the page.
+         */
+        private final byte[] bytes;
+
+        /**
+         * The entity tag of the page.
+         */
+        private final String etag;
+
+        /**
+         * Creates a page, tagging it with a checksum of its bytes.
+         *
+         * @param bytes
+         *            The bytes of the page; owned by the page from now on.
+         */
+        public Page(byte[] bytes) {
+            this.bytes = bytes;
+            CRC32 checksum = new CRC32();
+            checksum.update(bytes, 0, bytes.length);
+            this.etag = "\"" + Integer.toHexString(bytes.length) + "-"
+                    + Long.toHexString(checksum.getValue()) + "\"";
+        }
+
+        /**
+         * Returns the bytes of the page, which must not be modified.
+         *
+         * @return The bytes.
+         */
+        public byte[] bytes() {
+            return this.bytes;
+        }
+
+        /**
+         * Returns the entity tag of the page, quoted as in an HTTP header.
+         *
+         * @return The entity tag.
+         */
+        public String etag() {
+            return this.etag;
+        }
+
+    }
+
+    /**
+     * Largest total number of page bytes kept.
+     */
+    private final long capacity;
+
+    /**
+     * The pages kept, from least to most recently used.
+     */
+    private final LinkedHashMap<String, Page> pages = new LinkedHashMap<>(16,
+            0.75f, true);
+
+    /**
+     * Total number of bytes of the pages kept.
+     */
+    private long size;
+
+    /**
+     * Number of lookups that found their page.
+     */
+    private long hits;
+
+    /**
+     * Number of lookups that had to render their page.
+     */
+    private long misses;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param capacity
+     *            Largest total number of page bytes kept.
+     */
+    public PageCache(long capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the page with the given name, rendering and keeping it if it is
+     * not in the cache. Rendering happens outside the lock, so two threads
+     * missing the same page at once may both render it.
+     *
+     * @param name
+     *            The name of the page.
+     * @param renderer
+     *            Renders the page with the given name, or returns null if
+     *            there is no such page.
+     * @return The page, or null if there is no such page.
+     */
+    public Page get(String name, Function<String, byte[]> renderer) {
+        synchronized (this) {
+            Page page = this.pages.get(name);
+            if (page != null) {
+                this.hits++;
+                return page;
+            }
+            this.misses++;
+        }
+        byte[] bytes = renderer.apply(name);
+        if (bytes == null) {
+            return null;
+        }
+        Page page = new Page(bytes);
+        this.put(name, page);
+        return page;
+    }
+
+    /**
+     * Keeps a page, evicting the least recently used pages to make room.
+     *
+     * @param name
+     *            The name of the page.
+     * @param page
+     *            The page.
+     */
+    private synchronized void put(String name, Page page) {
+        if (page.bytes().length > this.capacity) {
+            return;
+        }
+        Page replaced = this.pages.put(name, page);
+        if (replaced != null) {
+            this.size -= replaced.bytes().length;
+        }
+        this.size += page.bytes().length;
+        Iterator<Page> eldest = this.pages.values().iterator();
+        while (this.size > this.capacity) {
+            this.size -= eldest.next().bytes().length;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Returns the number of pages kept.
+     *
+     * @return The number of pages.
+     */
+    public synchronized int count() {
+        return this.pages.size();
+    }
+
+    /**
+     * Returns the total number of bytes of the pages kept.
+     *
+     * @return The size of the cache.
+     */
+    public synchronized long size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the number of lookups that found their page.
+     *
+     * @return The number of hits.
+     */
+    public synchronized long hits() {
+        return this.hits;
+    }
+
+    /**
+     * Returns the number of lookups that had to render their page.
+     *
+     * @return The number of misses.
+     */
+    public synchronized long misses() {
+        return this.misses;
+    }
+
+}
@@ -0,0 +1,34 @@
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Destination of the pages of a generated site.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public interface PageSink extends Closeable {
+
+    /**
+     * Writes one page.
+     *
+     * @param name
+     *            The file name of the page, e.g. "index.html".
+     * @param page
+     *            The encoded page.
+     * @throws IOException
+     *             if the page cannot be written
+     */
+    void write(String name, PageBuffer page) throws IOException;
+
+    /**
+     * Reports whether pages must be written one at a time. Pages are then
+     * written in a fixed order, so the output is the same whatever the
+     * number of workers; otherwise they may be written concurrently, in any
+     * order.
+     *
+     * @return Whether the sink is sequential.
+     */
+    boolean sequential();
+
+}
@@ -0,0 +1,254 @@
+import java.util.Arrays;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * The graph of references between the terms of a glossary: term A refers to
+ * term B when the definition of A links to B. It is built by linking every
+ * definition once, and stored in compressed sparse row form, as two pairs of
+ * int arrays keyed by ordinal: one for the terms each term refers to, one for
+ * the terms referring to it. Both lists are sorted by ordinal, hold each term
+ * once, and leave out a term referring to itself. The graph is immutable and
+ * can be shared freely between threads.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public final class ReferenceGraph {
+
+    /**
+     * The terms of the glossary.
+     */
+    private final TermIndex terms;
+
+    /**
+     * Start in {@link #references} of the references of each term, plus the
+     * total at the end.
+     */
+    private final int[] referenceStart;
+
+    /**
+     * Ordinals of the terms each term refers to, term after term.
+     */
+    private final int[] references;
+
+    /**
+     * Start in {@link #referrers} of the referrers of each term, plus the
+     * total at the end.
+     */
+    private final int[] referrerStart;
+
+    /**
+     * Ordinals of the terms referring to each term, term after term.
+     */
+    private final int[] referrers;
+
+    /**
+     * Creates a graph from its forward rows and fills in the reverse rows.
+     *
+     * @param terms
+     *            The terms of the glossary.
+     * @param referenceStart
+     *            Start of the references of each term, plus the total.
+     * @param references
+     *            Ordinals of the terms each term refers to.
+     */
+    private ReferenceGraph(TermIndex terms, int[] referenceStart,
+            int[] references) {
+        this.terms = terms;
+        this.referenceStart = referenceStart;
+        this.references = references;
+
+        // Count the referrers of each term, then place them; walking the
+        // sources in order keeps every row sorted
+        int size = terms.size();
+        this.referrerStart = new int[size + 1];
+        for (int target : references) {
+            this.referrerStart[target + 1]++;
+        }
+        for (int i = 0; i < size; i++) {
+            this.referrerStart[i + 1] += this.referrerStart[i];
+        }
+        this.referrers = new int[references.length];
+        int[] fill = Arrays.copyOf(this.referrerStart, size);
+        for (int source = 0; source < size; source++) {
+            for (int k = referenceStart[source]; k < referenceStart[source
+                    + 1]; k++) {
+                int target = references[k];
+                this.referrers[fill[target]] = source;
+                fill[target]++;
+            }
+        }
+    }
+
+    /**
+     * Builds the reference graph of a glossary, linking the definitions in
+     * parallel.
+     *
+     * @param terms
+     *            The index of terms in the glossary.
+     * @param definitions
+     *            The definition of each term, by ordinal; called from several
+     *            threads at once.
+     * @return The reference graph.
+     */
+    public static ReferenceGraph build(TermIndex terms,
+            IntFunction<String> definitions) {
+        TermLinker linker = terms.linker();
+        int size = terms.size();
+        int[][] rows = new int[size][];
+        IntStream.range(0, size).parallel().forEach(source -> {
+            rows[source] = references(linker, source,
+                    definitions.apply(source));
+        });
+
+        // Concatenate the rows
+        int[] referenceStart = new int[size + 1];
+        for (int i = 0; i < size; i++) {
+            referenceStart[i + 1] = referenceStart[i] + rows[i].length;
+        }
+        int[] references = new int[referenceStart[size]];
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(rows[i], 0, references, referenceStart[i],
+                    rows[i].length);
+        }
+        return new ReferenceGraph(terms, referenceStart, references);
+    }
+
+    /**
+     * Returns the distinct terms a definition links to, sorted by ordinal,
+     * leaving out its own term.
+     *
+     * @param linker
+     *            The linker of the glossary.
+     * @param source
+     *            The ordinal of the term being defined.
+     * @param definition
+     *            The definition.
+     * @return The ordinals of the terms referred to.
+     */
+    private static int[] references(TermLinker linker, int source,
+            String definition) {
+        int[][] found = { new int[4] };
+        int[] count = { 0 };
+        linker.forEachLink(definition, (start, end, ordinal) -> {
+            if (ordinal != source) {
+                if (count[0] == found[0].length) {
+                    found[0] = Arrays.copyOf(found[0], 2 * count[0]);
+                }
+                found[0][count[0]] = ordinal;
+                count[0]++;
+            }
+        });
+
+        // Sort and drop repeated references
+        int[] row = found[0];
+        Arrays.sort(row, 0, count[0]);
+        int distinct = 0;
+        for (int i = 0; i < count[0]; i++) {
+            if (distinct == 0 || row[distinct - 1] != row[i]) {
+                row[distinct] = row[i];
+                distinct++;
+            }
+        }
+        return Arrays.copyOf(row, distinct);
+    }
+
+    /**
+     * Returns the terms of the glossary.
+     *
+     * @return The term index.
+     */
+    public TermIndex terms() {
+        return this.terms;
+    }
+
+    /**
+     * Returns the total number of references between distinct terms.
+     *
+     * @return The number of edges in the graph.
+     */
+    public int edgeCount() {
+        return this.references.length;
+    }
+
+    /**
+     * Returns the number of terms the given term refers to.
+     *
+     * @param ordinal
+     *            The ordinal of the term.
+     * @return The out-degree of the term.
+     */
+    public int referenceCount(int ordinal) {
+        return this.referenceStart[ordinal + 1] - this.referenceStart[ordinal];
+    }
+
+    /**
+     * Returns one of the terms the given term refers to.
+     *
+     * @param ordinal
+     *            The ordinal of the term.
+     * @param index
+     *            The position of the reference, below
+     *            {@link #referenceCount}.
+     * @return The ordinal of the term referred to.
+     */
+    public int reference(int ordinal, int index) {
+        return this.references[this.referenceStart[ordinal] + index];
+    }
+
+    /**
+     * Returns the number of terms referring to the given term.
+     *
+     * @param ordinal
+     *            The ordinal of the term.
+     * @return The in-degree of the term.
+     */
+    public int referrerCount(int ordinal) {
+        return this.referrerStart[ordinal + 1] - this.referrerStart[ordinal];
+    }
+
+    /**
+     * Returns one of the terms referring to the given term.
+     *
+     * @param ordinal
+     *            The ordinal of the term.
+     * @param index
+     *            The position of the referrer, below {@link #referrerCount}.
+     * @return The ordinal of the referring term.
+     */
+    public int referrer(int ordinal, int index) {
+        return this.referrers[this.referrerStart[ordinal] + index];
+    }
+
+    /**
+     * Returns the terms no other term refers to, sorted by ordinal.
+     *
+     * @return The ordinals of the orphan terms.
+     */
+    public int[] orphans() {
+        int[] orphans = new int[this.terms.size()];
+        int count = 0;
+        for (int i = 0; i < this.terms.size(); i++) {
+            if (this.referrerCount(i) == 0) {
+                orphans[count] = i;
+                count++;
+            }
+        }
+        return Arrays.copyOf(orphans, count);
+    }
+
+    /**
+     * Returns the largest number of terms referring to a single term.
+     *
+     * @return The largest in-degree, or 0 for an empty glossary.
+     */
+    public int maxReferrerCount() {
+        int max = 0;
+        for (int i = 0; i < this.terms.size(); i++) {
+            max = Math.max(max, this.referrerCount(i));
+        }
+        return max;
+    }
+
+}
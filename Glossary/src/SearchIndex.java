@@ -0,0 +1,520 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.IntStream;
+
+/**
+ * A search index of a glossary, written next to its pages as small JSON files
+ * together with a static search page. The terms are listed in order of their
+ * lower-case form, with the file names of their pages, in shards of a fixed
+ * number of terms; the words of the definitions, split by the same
+ * {@link Tokenizer} as the linker, form an inverted index from each lower-case
+ * word to the terms whose definitions use it, in sorted shards of bounded size.
+ * A small table gives the first key of every shard, so the search page finds a
+ * term prefix or a word with two binary searches and at most one shard
+ * download, never loading the whole index. Definitions are added while the
+ * pages are rendered, from several threads at once, so building the index takes
+ * no pass of its own.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public final class SearchIndex {
+
+    /**
+     * The terms whose definitions use one word, in rank order.
+     */
+    private static final class Postings {
+
+        /**
+         * The ranks of the terms.
+         */
+        private int[] ranks = new int[4];
+
+        /**
+         * The number of ranks.
+         */
+        private int size;
+
+        /**
+         * Adds the rank of a term, larger than every rank added so far.
+         *
+         * @param rank
+         *            The rank of the term.
+         */
+        void add(int rank) {
+            if (this.size == this.ranks.length) {
+                this.ranks = Arrays.copyOf(this.ranks, 2 * this.size);
+            }
+            this.ranks[this.size] = rank;
+            this.size++;
+        }
+
+    }
+
+    /**
+     * File name of the search page.
+     */
+    public static final String PAGE_NAME = "search.html";
+
+    /**
+     * File name of the table of shards.
+     */
+    public static final String TABLE_NAME = "search.json";
+
+    /**
+     * File name of a shard of terms, before its number.
+     */
+    private static final String TERMS_PREFIX = "search-terms-";
+
+    /**
+     * File name of a shard of words, before its number.
+     */
+    private static final String WORDS_PREFIX = "search-words-";
+
+    /**
+     * Number of terms in each shard of terms.
+     */
+    private static final int TERMS_PER_SHARD = 1024;
+
+    /**
+     * Largest number of words and postings in a shard of words, unless a
+     * single word has more.
+     */
+    private static final int ENTRIES_PER_SHARD = 4096;
+
+    /**
+     * Line separator used by the search page.
+     */
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    /**
+     * The search page. It loads the table of shards, then only the shards
+     * holding the keys it looks up.
+     */
+    private static final String PAGE = "<html>" + LINE_SEPARATOR + "<head>"
+            + LINE_SEPARATOR + "   <title>Search</title>" + LINE_SEPARATOR
+            + "</head>" + LINE_SEPARATOR + "<body>" + LINE_SEPARATOR
+            + "   <h2>Search</h2>" + LINE_SEPARATOR + "   <hr />"
+            + LINE_SEPARATOR
+            + "   <input id=\"query\" type=\"search\" autofocus />"
+            + LINE_SEPARATOR + "   <h3>Terms</h3>" + LINE_SEPARATOR
+            + "   <ul id=\"terms\"></ul>" + LINE_SEPARATOR
+            + "   <h3>Definitions</h3>" + LINE_SEPARATOR
+            + "   <ul id=\"definitions\"></ul>" + LINE_SEPARATOR
+            + "   <hr />" + LINE_SEPARATOR
+            + "   <p>Return to <a href=\"index.html\">index</a>.</p>"
+            + LINE_SEPARATOR + "   <script>" + LINE_SEPARATOR
+            + "var SEPARATORS = " + json(Tokenizer.SEPARATORS) + ";"
+            + LINE_SEPARATOR + "var LIMIT = 50;" + LINE_SEPARATOR
+            + "var files = {};" + LINE_SEPARATOR + "var latest = 0;"
+            + LINE_SEPARATOR + "function load(name) {" + LINE_SEPARATOR
+            + "  if (!files[name]) {" + LINE_SEPARATOR
+            + "    files[name] = fetch(name).then(function (r) {"
+            + LINE_SEPARATOR + "      return r.json();" + LINE_SEPARATOR
+            + "    });" + LINE_SEPARATOR + "  }" + LINE_SEPARATOR
+            + "  return files[name];" + LINE_SEPARATOR + "}" + LINE_SEPARATOR
+            + "function lower(s) { return s.toLowerCase(); }" + LINE_SEPARATOR
+            + "function same(s) { return s; }" + LINE_SEPARATOR
+            + "function shardOf(firsts, key, strict) {" + LINE_SEPARATOR
+            + "  var low = 0, high = firsts.length - 1;" + LINE_SEPARATOR
+            + "  while (low < high) {" + LINE_SEPARATOR
+            + "    var mid = (low + high + 1) >> 1;" + LINE_SEPARATOR
+            + "    if (firsts[mid] < key || !strict && firsts[mid] === key) {"
+            + LINE_SEPARATOR + "      low = mid;" + LINE_SEPARATOR
+            + "    } else {" + LINE_SEPARATOR + "      high = mid - 1;"
+            + LINE_SEPARATOR + "    }" + LINE_SEPARATOR + "  }"
+            + LINE_SEPARATOR + "  return low;" + LINE_SEPARATOR + "}"
+            + LINE_SEPARATOR + "function lowerBound(list, key, fold) {"
+            + LINE_SEPARATOR + "  var low = 0, high = list.length;"
+            + LINE_SEPARATOR + "  while (low < high) {" + LINE_SEPARATOR
+            + "    var mid = (low + high) >> 1;" + LINE_SEPARATOR
+            + "    if (fold(list[mid]) < key) {" + LINE_SEPARATOR
+            + "      low = mid + 1;" + LINE_SEPARATOR + "    } else {"
+            + LINE_SEPARATOR + "      high = mid;" + LINE_SEPARATOR + "    }"
+            + LINE_SEPARATOR + "  }" + LINE_SEPARATOR + "  return low;"
+            + LINE_SEPARATOR + "}" + LINE_SEPARATOR
+            + "function words(query) {" + LINE_SEPARATOR
+            + "  var found = [], word = '';" + LINE_SEPARATOR
+            + "  for (var i = 0; i <= query.length; i++) {" + LINE_SEPARATOR
+            + "    if (i === query.length"
+            + " || SEPARATORS.indexOf(query.charAt(i)) >= 0) {"
+            + LINE_SEPARATOR + "      if (word) {" + LINE_SEPARATOR
+            + "        found.push(word.toLowerCase());" + LINE_SEPARATOR
+            + "      }" + LINE_SEPARATOR + "      word = '';" + LINE_SEPARATOR
+            + "    } else {" + LINE_SEPARATOR
+            + "      word += query.charAt(i);" + LINE_SEPARATOR + "    }"
+            + LINE_SEPARATOR + "  }" + LINE_SEPARATOR + "  return found;"
+            + LINE_SEPARATOR + "}" + LINE_SEPARATOR
+            + "function termsStarting(table, key, shard, found) {"
+            + LINE_SEPARATOR + "  if (!table.termFirsts.length) {"
+            + LINE_SEPARATOR + "    return Promise.resolve(found);"
+            + LINE_SEPARATOR + "  }" + LINE_SEPARATOR
+            + "  return load('" + TERMS_PREFIX + "' + shard + '.json')"
+            + ".then(function (data) {" + LINE_SEPARATOR
+            + "    var terms = data.terms;" + LINE_SEPARATOR
+            + "    var i = lowerBound(terms, key, lower);" + LINE_SEPARATOR
+            + "    while (i < terms.length && found.length < LIMIT"
+            + LINE_SEPARATOR
+            + "        && lower(terms[i]).indexOf(key) === 0) {"
+            + LINE_SEPARATOR
+            + "      found.push({ term: terms[i], page: data.pages[i] });"
+            + LINE_SEPARATOR
+            + "      i++;" + LINE_SEPARATOR + "    }" + LINE_SEPARATOR
+            + "    if (i === terms.length && found.length < LIMIT"
+            + LINE_SEPARATOR
+            + "        && shard + 1 < table.termFirsts.length) {"
+            + LINE_SEPARATOR
+            + "      return termsStarting(table, key, shard + 1, found);"
+            + LINE_SEPARATOR + "    }" + LINE_SEPARATOR
+            + "    return found;" + LINE_SEPARATOR + "  });" + LINE_SEPARATOR
+            + "}" + LINE_SEPARATOR + "function postings(table, word) {"
+            + LINE_SEPARATOR + "  if (!table.wordFirsts.length) {"
+            + LINE_SEPARATOR + "    return Promise.resolve([]);"
+            + LINE_SEPARATOR + "  }" + LINE_SEPARATOR
+            + "  var shard = shardOf(table.wordFirsts, word, false);"
+            + LINE_SEPARATOR + "  return load('" + WORDS_PREFIX
+            + "' + shard + '.json').then(function (data) {" + LINE_SEPARATOR
+            + "    var i = lowerBound(data.words, word, same);"
+            + LINE_SEPARATOR + "    var ranks = [], rank = 0;"
+            + LINE_SEPARATOR
+            + "    if (i < data.words.length && data.words[i] === word) {"
+            + LINE_SEPARATOR
+            + "      for (var j = 0; j < data.postings[i].length; j++) {"
+            + LINE_SEPARATOR + "        rank += data.postings[i][j];"
+            + LINE_SEPARATOR + "        ranks.push(rank);" + LINE_SEPARATOR
+            + "      }" + LINE_SEPARATOR + "    }" + LINE_SEPARATOR
+            + "    return ranks;" + LINE_SEPARATOR + "  });" + LINE_SEPARATOR
+            + "}" + LINE_SEPARATOR + "function intersect(a, b) {"
+            + LINE_SEPARATOR + "  var both = [], i = 0, j = 0;"
+            + LINE_SEPARATOR + "  while (i < a.length && j < b.length) {"
+            + LINE_SEPARATOR + "    if (a[i] < b[j]) {" + LINE_SEPARATOR
+            + "      i++;" + LINE_SEPARATOR + "    } else if (a[i] > b[j]) {"
+            + LINE_SEPARATOR + "      j++;" + LINE_SEPARATOR
+            + "    } else {" + LINE_SEPARATOR + "      both.push(a[i]);"
+            + LINE_SEPARATOR + "      i++;" + LINE_SEPARATOR + "      j++;"
+            + LINE_SEPARATOR + "    }" + LINE_SEPARATOR + "  }"
+            + LINE_SEPARATOR + "  return both;" + LINE_SEPARATOR + "}"
+            + LINE_SEPARATOR + "function termsAt(table, ranks) {"
+            + LINE_SEPARATOR
+            + "  return Promise.all(ranks.map(function (rank) {"
+            + LINE_SEPARATOR + "    var shard = Math.floor(rank"
+            + " / table.termsPerShard);" + LINE_SEPARATOR + "    return load('"
+            + TERMS_PREFIX + "' + shard + '.json')"
+            + ".then(function (data) {" + LINE_SEPARATOR
+            + "      var i = rank % table.termsPerShard;" + LINE_SEPARATOR
+            + "      return { term: data.terms[i], page: data.pages[i] };"
+            + LINE_SEPARATOR + "    });" + LINE_SEPARATOR + "  }));"
+            + LINE_SEPARATOR + "}" + LINE_SEPARATOR
+            + "function show(id, entries) {" + LINE_SEPARATOR
+            + "  var list = document.getElementById(id);" + LINE_SEPARATOR
+            + "  list.innerHTML = '';" + LINE_SEPARATOR
+            + "  entries.forEach(function (entry) {" + LINE_SEPARATOR
+            + "    var item = document.createElement('li');" + LINE_SEPARATOR
+            + "    var link = document.createElement('a');" + LINE_SEPARATOR
+            + "    link.href = entry.page;" + LINE_SEPARATOR
+            + "    link.textContent = entry.term;"
+            + LINE_SEPARATOR + "    item.appendChild(link);" + LINE_SEPARATOR
+            + "    list.appendChild(item);" + LINE_SEPARATOR + "  });"
+            + LINE_SEPARATOR + "}" + LINE_SEPARATOR
+            + "function search(query) {" + LINE_SEPARATOR
+            + "  var ticket = ++latest;" + LINE_SEPARATOR
+            + "  load('" + TABLE_NAME + "').then(function (table) {"
+            + LINE_SEPARATOR + "    var key = query.trim().toLowerCase();"
+            + LINE_SEPARATOR + "    var wanted = words(query);"
+            + LINE_SEPARATOR + "    var byName = Promise.resolve([]);"
+            + LINE_SEPARATOR + "    var byWord = Promise.resolve([]);"
+            + LINE_SEPARATOR + "    if (key) {" + LINE_SEPARATOR
+            + "      byName = termsStarting(table, key,"
+            + " shardOf(table.termFirsts, key, true), []);" + LINE_SEPARATOR
+            + "    }" + LINE_SEPARATOR + "    if (wanted.length) {"
+            + LINE_SEPARATOR + "      byWord = Promise.all(wanted.map("
+            + "function (word) {" + LINE_SEPARATOR
+            + "        return postings(table, word);" + LINE_SEPARATOR
+            + "      })).then(function (lists) {" + LINE_SEPARATOR
+            + "        return termsAt(table,"
+            + " lists.reduce(intersect).slice(0, LIMIT));" + LINE_SEPARATOR
+            + "      });" + LINE_SEPARATOR + "    }" + LINE_SEPARATOR
+            + "    return Promise.all([byName, byWord]);" + LINE_SEPARATOR
+            + "  }).then(function (results) {" + LINE_SEPARATOR
+            + "    if (ticket === latest) {" + LINE_SEPARATOR
+            + "      show('terms', results[0]);" + LINE_SEPARATOR
+            + "      show('definitions', results[1]);" + LINE_SEPARATOR
+            + "    }" + LINE_SEPARATOR + "  });" + LINE_SEPARATOR + "}"
+            + LINE_SEPARATOR + "document.getElementById('query')"
+            + ".addEventListener('input', function (event) {"
+            + LINE_SEPARATOR + "  search(event.target.value);"
+            + LINE_SEPARATOR + "});" + LINE_SEPARATOR + "   </script>"
+            + LINE_SEPARATOR + "</body>" + LINE_SEPARATOR + "</html>"
+            + LINE_SEPARATOR;
+
+    /**
+     * Pre-encoded {@link #PAGE}.
+     */
+    private static final byte[] PAGE_BYTES = PageBuffer.encode(PAGE);
+
+    /**
+     * The index of terms in the glossary.
+     */
+    private final TermIndex terms;
+
+    /**
+     * The tokenizer splitting definitions into words.
+     */
+    private final Tokenizer tokenizer = Tokenizer.DEFAULT;
+
+    /**
+     * The distinct lower-case words of each definition, by ordinal, or null
+     * for a definition not added.
+     */
+    private final String[][] words;
+
+    /**
+     * Creates an empty search index for the given terms.
+     *
+     * @param terms
+     *            The index of terms in the glossary.
+     */
+    public SearchIndex(TermIndex terms) {
+        this.terms = terms;
+        this.words = new String[terms.size()][];
+    }
+
+    /**
+     * Returns the form of a term or word the search page compares, which is
+     * the same as JavaScript's {@code toLowerCase}.
+     *
+     * @param text
+     *            The term or word.
+     * @return The lower-case text.
+     */
+    static String fold(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Reports whether a file of the given name is a shard of a search index.
+     *
+     * @param name
+     *            The file name.
+     * @return Whether the file is a shard.
+     */
+    public static boolean isShard(String name) {
+        return (name.startsWith(TERMS_PREFIX) || name.startsWith(WORDS_PREFIX))
+                && name.endsWith(".json");
+    }
+
+    /**
+     * Adds the words of a definition to the index. Definitions of different
+     * terms can be added from several threads at once.
+     *
+     * @param ordinal
+     *            The ordinal of the term.
+     * @param definition
+     *            The definition of the term.
+     */
+    public void add(int ordinal, String definition) {
+        HashSet<String> found = new HashSet<>();
+        this.tokenizer.forEachToken(definition, (start, end, separator) -> {
+            if (!separator) {
+                found.add(fold(definition.substring(start, end)));
+            }
+        });
+        this.words[ordinal] = found.toArray(new String[found.size()]);
+    }
+
+    /**
+     * Writes the search page, the table of shards and every shard to the
+     * given sink, once every definition has been added.
+     *
+     * @param sink
+     *            The sink receiving the files.
+     * @return The names of the files written.
+     * @throws IOException
+     *             if a file cannot be written
+     */
+    public List<String> write(PageSink sink) throws IOException {
+        int count = this.terms.size();
+        List<String> names = new ArrayList<>();
+        PageBuffer file = new PageBuffer();
+
+        // Rank the terms by their lower-case form, as the page compares them
+        String[] folded = new String[count];
+        IntStream.range(0, count).parallel()
+                .forEach(i -> folded[i] = fold(this.terms.term(i)));
+        Integer[] byRank = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            byRank[i] = i;
+        }
+        Arrays.parallelSort(byRank, (a, b) -> {
+            int order = folded[a].compareTo(folded[b]);
+            if (order == 0) {
+                order = this.terms.term(a).compareTo(this.terms.term(b));
+            }
+            return order;
+        });
+
+        // Write the terms in shards of a fixed size, with their pages
+        TermRegistry registry = this.terms.registry();
+        List<String> termFirsts = new ArrayList<>();
+        for (int start = 0; start < count; start += TERMS_PER_SHARD) {
+            int end = Math.min(count, start + TERMS_PER_SHARD);
+            termFirsts.add(folded[byRank[start]]);
+            file.clear();
+            file.appendUtf8("{\"terms\":[");
+            for (int rank = start; rank < end; rank++) {
+                if (rank > start) {
+                    file.appendUtf8(",");
+                }
+                appendJson(this.terms.term(byRank[rank]), file);
+            }
+            file.appendUtf8("],\"pages\":[");
+            for (int rank = start; rank < end; rank++) {
+                if (rank > start) {
+                    file.appendUtf8(",");
+                }
+                appendJson(registry.href(byRank[rank]), file);
+            }
+            file.appendUtf8("]}");
+            String name = TERMS_PREFIX + (termFirsts.size() - 1) + ".json";
+            sink.write(name, file);
+            names.add(name);
+        }
+
+        // Invert the definitions, visiting terms by rank so postings sort
+        HashMap<String, Postings> postings = new HashMap<>();
+        for (int rank = 0; rank < count; rank++) {
+            String[] used = this.words[byRank[rank]];
+            if (used != null) {
+                for (String word : used) {
+                    postings.computeIfAbsent(word, w -> new Postings())
+                            .add(rank);
+                }
+            }
+        }
+        String[] sorted = postings.keySet()
+                .toArray(new String[postings.size()]);
+        Arrays.sort(sorted);
+
+        // Write the words in shards of bounded size, postings as gaps
+        List<String> wordFirsts = new ArrayList<>();
+        int start = 0;
+        while (start < sorted.length) {
+            int end = start;
+            int entries = 0;
+            while (end < sorted.length && (end == start || entries + 1
+                    + postings.get(sorted[end]).size <= ENTRIES_PER_SHARD)) {
+                entries += 1 + postings.get(sorted[end]).size;
+                end++;
+            }
+            wordFirsts.add(sorted[start]);
+            file.clear();
+            file.appendUtf8("{\"words\":[");
+            for (int i = start; i < end; i++) {
+                if (i > start) {
+                    file.appendUtf8(",");
+                }
+                appendJson(sorted[i], file);
+            }
+            file.appendUtf8("],\"postings\":[");
+            for (int i = start; i < end; i++) {
+                if (i > start) {
+                    file.appendUtf8(",");
+                }
+                Postings list = postings.get(sorted[i]);
+                file.appendUtf8("[");
+                int previous = 0;
+                for (int j = 0; j < list.size; j++) {
+                    if (j > 0) {
+                        file.appendUtf8(",");
+                    }
+                    file.appendUtf8(Integer.toString(list.ranks[j] - previous));
+                    previous = list.ranks[j];
+                }
+                file.appendUtf8("]");
+            }
+            file.appendUtf8("]}");
+            String name = WORDS_PREFIX + (wordFirsts.size() - 1) + ".json";
+            sink.write(name, file);
+            names.add(name);
+            start = end;
+        }
+
+        // Write the table of shards, then the page reading it
+        file.clear();
+        file.appendUtf8("{\"terms\":").appendUtf8(Integer.toString(count))
+                .appendUtf8(",\"termsPerShard\":")
+                .appendUtf8(Integer.toString(TERMS_PER_SHARD))
+                .appendUtf8(",\"termFirsts\":");
+        appendJson(termFirsts, file);
+        file.appendUtf8(",\"wordFirsts\":");
+        appendJson(wordFirsts, file);
+        file.appendUtf8("}");
+        sink.write(TABLE_NAME, file);
+        names.add(TABLE_NAME);
+        file.clear();
+        file.append(PAGE_BYTES);
+        sink.write(PAGE_NAME, file);
+        names.add(PAGE_NAME);
+        return names;
+    }
+
+    /**
+     * Appends a list of strings as a JSON array.
+     *
+     * @param values
+     *            The strings.
+     * @param file
+     *            The buffer to append to.
+     */
+    private static void appendJson(List<String> values, PageBuffer file) {
+        file.appendUtf8("[");
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                file.appendUtf8(",");
+            }
+            appendJson(values.get(i), file);
+        }
+        file.appendUtf8("]");
+    }
+
+    /**
+     * Appends a string as a JSON string.
+     *
+     * @param value
+     *            The string.
+     * @param file
+     *            The buffer to append to.
+     */
+    private static void appendJson(String value, PageBuffer file) {
+        file.appendUtf8(json(value));
+    }
+
+    /**
+     * Returns a string as a JSON string, quoted and escaped.
+     *
+     * @param value
+     *            The string.
+     * @return The JSON string.
+     */
+    private static String json(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2);
+        quoted.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+}
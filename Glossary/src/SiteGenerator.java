@@ -0,0 +1,1178 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+import components.map.Map;
+
+/**
+ * Generates the glossary web site: the index page and one page per term.
+ * Term pages are rendered by a pool of worker threads and handed through a
+ * bounded queue to a second pool that writes them to disk, so rendering and
+ * file I/O overlap. Pages are rendered as UTF-8 straight into buffers taken
+ * from a fixed pool and written with a single channel write, so at most a few
+ * pages per worker are held in memory and the buffers are reused from page
+ * to page. Pages go to a {@link PageSink}: by default one file per page in
+ * the output folder, or for instance a single archive, which is written by
+ * one thread in a fixed order. The index can be sharded, in which case the
+ * shard pages are rendered in parallel along with the term pages. Term pages
+ * can also list the terms referring to them, from a {@link ReferenceGraph}
+ * built once per generation, and the site can come with a {@link SearchIndex}
+ * built from the definitions as the pages are rendered. Pages can also be
+ * written with gzip-compressed copies, compressed by the writing threads.
+ * The pages are identical to those written by
+ * {@link Glossary#createIndexHTML} and {@link Glossary#createTermHTML},
+ * whatever the number of workers.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public final class SiteGenerator {
+
+    /**
+     * Number of rendered pages the queue holds per worker.
+     */
+    private static final int PAGES_PER_WORKER = 4;
+
+    /**
+     * Page buffer of each fork/join thread rendering pages in its pool.
+     */
+    private static final ThreadLocal<PageBuffer> POOLED_BUFFERS = ThreadLocal
+            .withInitial(PageBuffer::new);
+
+    /**
+     * Marker telling a writer that no more pages will arrive.
+     */
+    private static final Page DONE = new Page(null, -1, null);
+
+    /**
+     * Renders the pages of one generation, by position.
+     */
+    private interface PageRenderer {
+
+        /**
+         * Renders one page.
+         *
+         * @param position
+         *            The position of the page.
+         * @param page
+         *            The empty buffer to render the page into.
+         * @return The file name of the page.
+         */
+        String render(int position, PageBuffer page);
+
+    }
+
+    /**
+     * A rendered page waiting to be written.
+     */
+    private static final class Page {
+
+        /**
+         * The file name of the page, or null if it failed to render.
+         */
+        private final String name;
+
+        /**
+         * The position of the page in the order pages are rendered in.
+         */
+        private final int sequence;
+
+        /**
+         * The buffer holding the encoded page.
+         */
+        private final PageBuffer buffer;
+
+        /**
+         * Creates a page.
+         *
+         * @param name
+         *            The file name of the page, or null if it failed to
+         *            render.
+         * @param sequence
+         *            The position of the page in the order pages are rendered
+         *            in.
+         * @param buffer
+         *            The buffer holding the encoded page.
+         */
+        Page(String name, int sequence, PageBuffer buffer) {
+            this.name = name;
+            this.sequence = sequence;
+            this.buffer = buffer;
+        }
+
+    }
+
+    /**
+     * The folder the pages are written to.
+     */
+    private final Path outputFolder;
+
+    /**
+     * Sink writing one file per page to the output folder.
+     */
+    private final FolderSink folder;
+
+    /**
+     * Number of rendering threads, and of writing threads.
+     */
+    private final int workers;
+
+    /**
+     * How the index is split into pages.
+     */
+    private final IndexSharding sharding;
+
+    /**
+     * Whether term pages list the terms referring to them.
+     */
+    private final boolean referencedBy;
+
+    /**
+     * Where the stages of each generation are measured, or null.
+     */
+    private final BuildMetrics metrics;
+
+    /**
+     * Whether the site comes with a search index and page.
+     */
+    private final boolean search;
+
+    /**
+     * Whether every page written to the output folder comes with a
+     * gzip-compressed copy.
+     */
+    private final boolean gzip;
+
+    /**
+     * Manifest written by the last update, kept so the next update need not
+     * read it back; null if unknown.
+     */
+    private BuildManifest manifest;
+
+    /**
+     * Hash of the links in each definition at the last update, before the
+     * referrers were mixed in, by ordinal in the terms of {@link #manifest};
+     * null if unknown.
+     */
+    private long[] links;
+
+    /**
+     * Reference graph of the last update, or null if unknown or not needed.
+     */
+    private ReferenceGraph referenceGraph;
+
+    /**
+     * Creates a generator writing to the given folder, with the whole index
+     * on one page.
+     *
+     * @param outputFolder
+     *            The folder to write the pages to.
+     * @param workers
+     *            The number of rendering threads (and of writing threads); at
+     *            least 1.
+     */
+    public SiteGenerator(String outputFolder, int workers) {
+        this(outputFolder, workers, IndexSharding.NONE);
+    }
+
+    /**
+     * Creates a generator writing to the given folder.
+     *
+     * @param outputFolder
+     *            The folder to write the pages to.
+     * @param workers
+     *            The number of rendering threads (and of writing threads); at
+     *            least 1.
+     * @param sharding
+     *            How the index is split into pages.
+     */
+    public SiteGenerator(String outputFolder, int workers,
+            IndexSharding sharding) {
+        this(outputFolder, workers, sharding, false);
+    }
+
+    /**
+     * Creates a generator writing to the given folder.
+     *
+     * @param outputFolder
+     *            The folder to write the pages to.
+     * @param workers
+     *            The number of rendering threads (and of writing threads); at
+     *            least 1.
+     * @param sharding
+     *            How the index is split into pages.
+     * @param referencedBy
+     *            Whether term pages list the terms referring to them.
+     */
+    public SiteGenerator(String outputFolder, int workers,
+            IndexSharding sharding, boolean referencedBy) {
+        this(outputFolder, workers, sharding, referencedBy, null);
+    }
+
+    /**
+     * Creates a generator writing to the given folder and measuring its
+     * stages: "graph", "hash", "render" and "write". Rendering and writing
+     * are timed page by page.
+     *
+     * @param outputFolder
+     *            The folder to write the pages to.
+     * @param workers
+     *            The number of rendering threads (and of writing threads); at
+     *            least 1.
+     * @param sharding
+     *            How the index is split into pages.
+     * @param referencedBy
+     *            Whether term pages list the terms referring to them.
+     * @param metrics
+     *            Where the stages are measured, or null not to measure them.
+     */
+    public SiteGenerator(String outputFolder, int workers,
+            IndexSharding sharding, boolean referencedBy,
+            BuildMetrics metrics) {
+        this(outputFolder, workers, sharding, referencedBy, metrics, false);
+    }
+
+    /**
+     * Creates a generator writing to the given folder and measuring its
+     * stages, optionally with a search index and page, written in the
+     * "search" stage.
+     *
+     * @param outputFolder
+     *            The folder to write the pages to.
+     * @param workers
+     *            The number of rendering threads (and of writing threads); at
+     *            least 1.
+     * @param sharding
+     *            How the index is split into pages.
+     * @param referencedBy
+     *            Whether term pages list the terms referring to them.
+     * @param metrics
+     *            Where the stages are measured, or null not to measure them.
+     * @param search
+     *            Whether the site comes with a search index and page.
+     */
+    public SiteGenerator(String outputFolder, int workers,
+            IndexSharding sharding, boolean referencedBy,
+            BuildMetrics metrics, boolean search) {
+        this(outputFolder, workers, sharding, referencedBy, metrics, search,
+                false);
+    }
+
+    /**
+     * Creates a generator writing to the given folder and measuring its
+     * stages, optionally with a search index and page, and optionally
+     * writing a gzip-compressed copy of every page next to it. Pages are
+     * compressed by the writing threads, as they are written.
+     *
+     * @param outputFolder
+     *            The folder to write the pages to.
+     * @param workers
+     *            The number of rendering threads (and of writing threads); at
+     *            least 1.
+     * @param sharding
+     *            How the index is split into pages.
+     * @param referencedBy
+     *            Whether term pages list the terms referring to them.
+     * @param metrics
+     *            Where the stages are measured, or null not to measure them.
+     * @param search
+     *            Whether the site comes with a search index and page.
+     * @param gzip
+     *            Whether pages written to the folder come with a compressed
+     *            copy, named after them with ".gz" appended.
+     */
+    public SiteGenerator(String outputFolder, int workers,
+            IndexSharding sharding, boolean referencedBy,
+            BuildMetrics metrics, boolean search, boolean gzip) {
+        if (workers < 1) {
+            throw new IllegalArgumentException(
+                    "workers must be at least 1: " + workers);
+        }
+        this.outputFolder = Paths.get(outputFolder);
+        this.folder = new FolderSink(this.outputFolder);
+        this.workers = workers;
+        this.sharding = sharding;
+        this.referencedBy = referencedBy;
+        this.metrics = metrics;
+        this.search = search;
+        this.gzip = gzip;
+    }
+
+    /**
+     * Generates the index page and the page of every term in the glossary.
+     *
+     * @param glossary
+     *            The map containing the terms and their definitions.
+     * @param terms
+     *            The index of terms in the glossary.
+     */
+    public void generate(Map<String, String> glossary, TermIndex terms) {
+        // Copy the definitions into one arena so the workers never touch
+        // the map
+        TermDictionary dictionary = TermDictionary.build(terms,
+                i -> glossary.value(terms.term(i)));
+        this.generate(terms, dictionary::definition);
+    }
+
+    /**
+     * Generates the index page and the page of every term in the index.
+     *
+     * @param terms
+     *            The index of terms in the glossary.
+     * @param definitions
+     *            The definition of each term, by ordinal; called from several
+     *            threads at once.
+     */
+    public void generate(TermIndex terms, IntFunction<String> definitions) {
+        try (PageSink sink = this.folderSink()) {
+            this.generate(terms, definitions, sink);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Generates the index page and the page of every term in the index into
+     * the given sink, index first. The sink is left open.
+     *
+     * @param terms
+     *            The index of terms in the glossary.
+     * @param definitions
+     *            The definition of each term, by ordinal; called from several
+     *            threads at once.
+     * @param sink
+     *            The sink receiving the pages.
+     */
+    public void generate(TermIndex terms, IntFunction<String> definitions,
+            PageSink sink) {
+        this.manifest = null;
+        this.links = null;
+        this.referenceGraph = null;
+        IndexSharding.Shard[] shards = this.sharding.split(terms);
+        this.writeIndex(terms, shards, sink);
+        int[] ordinals = new int[terms.size()];
+        for (int i = 0; i < ordinals.length; i++) {
+            ordinals[i] = i;
+        }
+        SearchIndex index = null;
+        if (this.search) {
+            index = new SearchIndex(terms);
+        }
+        this.writePages(terms, definitions, this.graph(terms, definitions),
+                shards, ordinals, index, sink);
+        if (index != null) {
+            this.writeSearch(index, sink);
+        }
+    }
+
+    /**
+     * Brings a previously generated site up to date. Using the manifest left
+     * by the last update, only the pages whose definition or links changed
+     * are regenerated, the index is regenerated only if the list of terms
+     * changed, and the pages of removed terms are deleted. With a sharded
+     * index, only the shards whose terms changed are regenerated, and the
+     * navigation page only if the shards themselves changed. Without a
+     * manifest, or if the index layout changed, every page is generated. The
+     * manifest of the last update is kept in memory, so repeated updates by
+     * the same generator do not read it back; as long as the terms stay the
+     * same, the link hashes and reference graph are kept too, and only the
+     * definitions whose hash changed are linked again.
+     *
+     * @param terms
+     *            The index of terms in the glossary.
+     * @param definitions
+     *            The definition of each term, by ordinal; called from several
+     *            threads at once.
+     * @return The number of term pages written.
+     */
+    public int update(TermIndex terms, IntFunction<String> definitions) {
+        Path manifestFile = this.outputFolder.resolve(BuildManifest.FILE_NAME);
+        BuildManifest previous = this.manifest;
+        if (previous == null) {
+            try {
+                previous = BuildManifest.read(manifestFile,
+                        terms.collator());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        // With the same terms as the last update, the links of an unchanged
+        // definition are unchanged too
+        BuildManifest warm = null;
+        long[] warmLinks = this.links;
+        if (previous == this.manifest && warmLinks != null
+                && previous.hasSameTerms(terms)) {
+            warm = previous;
+        }
+
+        // Hash every definition, and the links of those that changed, in
+        // parallel
+        BuildMetrics.Stage hashing = this.stage("hash");
+        if (hashing != null) {
+            hashing.begin();
+        }
+        long[] definitionHashes = new long[terms.size()];
+        long[] linkHashes = new long[terms.size()];
+        TermLinker linker = terms.linker();
+        SearchIndex index = null;
+        if (this.search) {
+            index = new SearchIndex(terms);
+        }
+        SearchIndex searchIndex = index;
+        BuildManifest known = warm;
+        boolean[] changed = new boolean[terms.size()];
+        IntStream.range(0, terms.size()).parallel().forEach(i -> {
+            // The search index takes its words from the same pass
+            String definition = definitions.apply(i);
+            definitionHashes[i] = BuildManifest.hashDefinition(definition);
+            if (known != null
+                    && known.definitionHash(i) == definitionHashes[i]) {
+                linkHashes[i] = warmLinks[i];
+            } else {
+                linkHashes[i] = BuildManifest.hashLinks(linker, definition);
+                changed[i] = true;
+            }
+            if (searchIndex != null) {
+                searchIndex.add(i, definition);
+            }
+        });
+        if (hashing != null) {
+            hashing.add(terms.size(), 0);
+            hashing.end();
+        }
+        boolean anyChanged = warm == null;
+        for (int i = 0; !anyChanged && i < changed.length; i++) {
+            anyChanged = changed[i];
+        }
+        long[] plainLinkHashes = linkHashes.clone();
+
+        // A page listing its referrers also changes when they do; the graph
+        // is only built again if some definition changed
+        ReferenceGraph graph = this.referenceGraph;
+        if (anyChanged || graph == null) {
+            graph = this.graph(terms, definitions);
+        }
+        if (graph != null) {
+            for (int i = 0; i < terms.size(); i++) {
+                linkHashes[i] = BuildManifest.hashReferrers(linkHashes[i],
+                        graph, i);
+            }
+        }
+
+        // Delete the pages under file names no term has any more, such as
+        // those of removed terms, before checking which pages exist: with
+        // case variants, a page can move to a name differing only in case
+        TermRegistry registry = terms.registry();
+        if (previous != null) {
+            TermRegistry old = previous.terms().registry();
+            for (int i = 0; i < old.size(); i++) {
+                String name = old.fileName(i);
+                int ordinal = registry.ordinal(name);
+                if (ordinal < 0 || !registry.fileName(ordinal).equals(name)) {
+                    try {
+                        this.delete(name);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }
+        }
+
+        // Pick the pages that are missing or out of date
+        int[] stale = new int[terms.size()];
+        int staleCount = 0;
+        for (int i = 0; i < terms.size(); i++) {
+            if (previous == null
+                    || !previous.matches(terms.term(i), definitionHashes[i],
+                            linkHashes[i])
+                    || !this.isWritten(registry.fileName(i))) {
+                stale[staleCount] = i;
+                staleCount++;
+            }
+        }
+
+        // Pick the index shards whose terms changed
+        IndexSharding.Shard[] shards = this.sharding.split(terms);
+        IndexSharding.Shard[] previousShards = new IndexSharding.Shard[0];
+        boolean sameLayout = previous != null
+                && previous.indexLayout().equals(this.sharding.toString());
+        if (previous != null) {
+            previousShards = IndexSharding.parse(previous.indexLayout())
+                    .split(previous.terms());
+        }
+        HashMap<String, IndexSharding.Shard> previousByName = new HashMap<>();
+        for (IndexSharding.Shard shard : previousShards) {
+            previousByName.put(shard.name(), shard);
+        }
+        IndexSharding.Shard[] staleShards = new IndexSharding.Shard[shards
+                .length];
+        int staleShardCount = 0;
+        boolean sameNavigation = sameLayout
+                && shards.length == previousShards.length;
+        for (int i = 0; i < shards.length; i++) {
+            IndexSharding.Shard old = previousByName.remove(shards[i].name());
+            boolean sameShard = sameLayout && old != null
+                    && sameTerms(terms, shards[i], previous.terms(), old);
+            sameNavigation = sameNavigation && sameShard
+                    && old.label().equals(shards[i].label());
+            if (!sameShard || !this.isWritten(shards[i].name())) {
+                staleShards[staleShardCount] = shards[i];
+                staleShardCount++;
+            }
+        }
+
+        // Drop the old manifest first, so an interrupted update is redone
+        this.manifest = null;
+        this.links = null;
+        this.referenceGraph = null;
+        try {
+            Files.deleteIfExists(manifestFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (shards.length == 0) {
+            sameNavigation = sameLayout && previous.hasSameTerms(terms);
+        }
+        try (PageSink sink = this.folderSink()) {
+            if (!sameNavigation || !this.isWritten("index.html")) {
+                this.writeIndex(terms, shards, sink);
+            }
+            this.writePages(terms, definitions, graph,
+                    Arrays.copyOf(staleShards, staleShardCount),
+                    Arrays.copyOf(stale, staleCount), null, sink);
+
+            // Rewrite the search index if any page changed, dropping old
+            // shards
+            if (index != null && (staleCount > 0 || previous == null
+                    || !previous.hasSameTerms(terms)
+                    || !this.isWritten(SearchIndex.TABLE_NAME))) {
+                List<String> written = this.writeSearch(index, sink);
+                try (DirectoryStream<Path> files = Files
+                        .newDirectoryStream(this.outputFolder)) {
+                    for (Path file : files) {
+                        String name = file.getFileName().toString();
+                        if (name.endsWith(GzipSink.SUFFIX)) {
+                            name = name.substring(0,
+                                    name.length() - GzipSink.SUFFIX.length());
+                        }
+                        if (SearchIndex.isShard(name)
+                                && !written.contains(name)) {
+                            Files.delete(file);
+                        }
+                    }
+                }
+            }
+
+            // Delete the pages of shards that no longer exist
+            for (String name : previousByName.keySet()) {
+                this.delete(name);
+            }
+            BuildManifest next = new BuildManifest(terms, definitionHashes,
+                    linkHashes, this.sharding.toString());
+            next.write(manifestFile);
+            this.manifest = next;
+            this.links = plainLinkHashes;
+            this.referenceGraph = graph;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return staleCount;
+    }
+
+    /**
+     * Returns a sink writing to the output folder, along with compressed
+     * copies if pages are compressed.
+     *
+     * @return The sink, to be closed once the pages are written.
+     */
+    private PageSink folderSink() {
+        PageSink sink = this.folder;
+        if (this.gzip) {
+            sink = new GzipSink(sink);
+        }
+        return sink;
+    }
+
+    /**
+     * Reports whether a page is in the output folder, along with its
+     * compressed copy if pages are compressed.
+     *
+     * @param name
+     *            The file name of the page.
+     * @return Whether the page is there.
+     */
+    private boolean isWritten(String name) {
+        return Files.exists(this.folder.file(name)) && (!this.gzip
+                || Files.exists(this.folder.file(name + GzipSink.SUFFIX)));
+    }
+
+    /**
+     * Deletes a page from the output folder, along with any compressed copy.
+     *
+     * @param name
+     *            The file name of the page.
+     * @throws IOException
+     *             if the page cannot be deleted
+     */
+    private void delete(String name) throws IOException {
+        Files.deleteIfExists(this.folder.file(name));
+        Files.deleteIfExists(this.folder.file(name + GzipSink.SUFFIX));
+    }
+
+    /**
+     * Returns the stage with the given name, if stages are measured.
+     *
+     * @param name
+     *            The name of the stage.
+     * @return The stage, or null if stages are not measured.
+     */
+    private BuildMetrics.Stage stage(String name) {
+        BuildMetrics.Stage stage = null;
+        if (this.metrics != null) {
+            stage = this.metrics.stage(name);
+        }
+        return stage;
+    }
+
+    /**
+     * Builds the reference graph of the glossary if term pages list their
+     * referrers.
+     *
+     * @param terms
+     *            The index of terms in the glossary.
+     * @param definitions
+     *            The definition of each term, by ordinal.
+     * @return The reference graph, or null if it is not needed.
+     */
+    private ReferenceGraph graph(TermIndex terms,
+            IntFunction<String> definitions) {
+        ReferenceGraph graph = null;
+        if (this.referencedBy) {
+            BuildMetrics.Stage building = this.stage("graph");
+            if (building != null) {
+                building.begin();
+            }
+            graph = ReferenceGraph.build(terms, definitions);
+            if (building != null) {
+                building.add(terms.size(), 0);
+                building.end();
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Writes a search index to the given sink, on the calling thread.
+     *
+     * @param index
+     *            The search index, with every definition added.
+     * @param sink
+     *            The sink receiving the files.
+     * @return The names of the files written.
+     */
+    private List<String> writeSearch(SearchIndex index, PageSink sink) {
+        BuildMetrics.Stage searching = this.stage("search");
+        if (searching != null) {
+            searching.begin();
+        }
+        List<String> written;
+        try {
+            written = index.write(sink);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (searching != null) {
+            searching.add(written.size(), 0);
+            searching.end();
+        }
+        return written;
+    }
+
+    /**
+     * Reports whether two shards list the same terms.
+     *
+     * @param terms
+     *            The terms of the first shard.
+     * @param shard
+     *            The first shard.
+     * @param otherTerms
+     *            The terms of the second shard.
+     * @param other
+     *            The second shard.
+     * @return Whether the shards list the same terms.
+     */
+    private static boolean sameTerms(TermIndex terms, IndexSharding.Shard shard,
+            TermIndex otherTerms, IndexSharding.Shard other) {
+        if (shard.end() - shard.start() != other.end() - other.start()) {
+            return false;
+        }
+        for (int i = 0; i < shard.end() - shard.start(); i++) {
+            if (!terms.term(shard.start() + i)
+                    .equals(otherTerms.term(other.start() + i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the index page, or the navigation page of a sharded index, on
+     * the calling thread.
+     *
+     * @param terms
+     *            The index of terms in the glossary.
+     * @param shards
+     *            The shards of the index; empty for a single index page.
+     * @param sink
+     *            The sink receiving the page.
+     */
+    private void writeIndex(TermIndex terms, IndexSharding.Shard[] shards,
+            PageSink sink) {
+        BuildMetrics.Stage rendering = this.stage("render");
+        BuildMetrics.Stage writing = this.stage("write");
+        long start = System.nanoTime();
+        long allocated = BuildMetrics.allocatedBytes();
+        PageBuffer index = new PageBuffer();
+        if (shards.length == 0) {
+            Glossary.renderIndexHTML(terms, index);
+        } else {
+            Glossary.renderIndexNavigationHTML(shards, index);
+        }
+        if (rendering != null) {
+            rendering.record(start, allocated, index.length());
+            start = System.nanoTime();
+            allocated = BuildMetrics.allocatedBytes();
+        }
+        try {
+            sink.write("index.html", index);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (writing != null) {
+            writing.record(start, allocated, index.length());
+        }
+    }
+
+    /**
+     * Renders and writes the given index shards and term pages concurrently,
+     * shards first. A sequential sink gets a single writer, which writes the
+     * pages in that order whatever order they are rendered in. Called from a
+     * fork/join pool, such as the one shared by a {@link GlossaryBatch}, the
+     * pages of a sink that is not sequential are rendered and written by the
+     * threads of that pool instead of threads of their own.
+     *
+     * @param terms
+     *            The index of terms in the glossary.
+     * @param definitions
+     *            The definition of each term, by ordinal.
+     * @param graph
+     *            The reference graph listing the referrers of each term, or
+     *            null to leave them out.
+     * @param shards
+     *            The index shards whose pages are written.
+     * @param ordinals
+     *            The ordinals of the terms whose pages are written.
+     * @param index
+     *            The search index taking the words of each definition
+     *            rendered, or null.
+     * @param sink
+     *            The sink receiving the pages.
+     */
+    private void writePages(TermIndex terms, IntFunction<String> definitions,
+            ReferenceGraph graph, IndexSharding.Shard[] shards,
+            int[] ordinals, SearchIndex index, PageSink sink) {
+        PageRenderer renderer = (position, page) -> {
+            if (position < shards.length) {
+                Glossary.renderIndexShardHTML(shards[position], terms, page);
+                return shards[position].name();
+            }
+            int ordinal = ordinals[position - shards.length];
+            String term = terms.term(ordinal);
+            String definition = definitions.apply(ordinal);
+            Glossary.renderTermHTML(term, definition, terms, graph, page);
+            if (index != null) {
+                index.add(ordinal, definition);
+            }
+            return terms.registry().fileName(ordinal);
+        };
+        int count = shards.length + ordinals.length;
+        if (ForkJoinTask.inForkJoinPool() && !sink.sequential()) {
+            this.writeInPool(renderer, count, sink);
+            return;
+        }
+
+        // Enough buffers for a full queue plus one per renderer
+        int capacity = this.workers * PAGES_PER_WORKER;
+        int bufferCount = capacity + this.workers;
+        BlockingQueue<Page> queue = new ArrayBlockingQueue<>(capacity);
+        BlockingQueue<PageBuffer> buffers = new ArrayBlockingQueue<>(
+                bufferCount);
+        while (buffers.remainingCapacity() > 0) {
+            buffers.add(new PageBuffer());
+        }
+        AtomicInteger next = new AtomicInteger();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        int writerCount = this.workers;
+        if (sink.sequential()) {
+            writerCount = 1;
+        }
+        ExecutorService renderers = Executors
+                .newFixedThreadPool(this.workers);
+        ExecutorService writers = Executors.newFixedThreadPool(writerCount);
+        BuildMetrics.Stage rendering = this.stage("render");
+        BuildMetrics.Stage writing = this.stage("write");
+        if (rendering != null) {
+            rendering.begin();
+            writing.begin();
+        }
+        for (int w = 0; w < this.workers; w++) {
+            renderers.execute(() -> render(renderer, count, next, buffers,
+                    queue, failure, rendering));
+        }
+        if (sink.sequential()) {
+            writers.execute(() -> drainInOrder(queue, buffers, bufferCount,
+                    sink, failure, writing));
+        } else {
+            for (int w = 0; w < writerCount; w++) {
+                writers.execute(() -> drain(queue, buffers, sink, failure,
+                        writing));
+            }
+        }
+
+        // Once every page is rendered, tell each writer to stop
+        renderers.shutdown();
+        awaitTermination(renderers, failure);
+        if (rendering != null) {
+            rendering.end();
+        }
+        for (int w = 0; w < writerCount; w++) {
+            putUninterruptibly(queue, DONE);
+        }
+        writers.shutdown();
+        awaitTermination(writers, failure);
+        if (writing != null) {
+            writing.end();
+        }
+
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    /**
+     * Renders and writes pages on the threads of the fork/join pool running
+     * the caller, each thread writing the pages it renders into a buffer of
+     * its own. Nothing blocks, so builds sharing the pool share its threads
+     * and steal each other's pages.
+     *
+     * @param renderer
+     *            The renderer of the pages.
+     * @param count
+     *            The number of pages to render.
+     * @param sink
+     *            The sink receiving the pages; not sequential.
+     */
+    private void writeInPool(PageRenderer renderer, int count, PageSink sink) {
+        BuildMetrics.Stage rendering = this.stage("render");
+        BuildMetrics.Stage writing = this.stage("write");
+        if (rendering != null) {
+            rendering.begin();
+            writing.begin();
+        }
+        try {
+            IntStream.range(0, count).parallel().forEach(position -> {
+                PageBuffer buffer = POOLED_BUFFERS.get();
+                long start = 0;
+                long allocated = 0;
+                if (rendering != null) {
+                    start = System.nanoTime();
+                    allocated = BuildMetrics.allocatedBytes();
+                }
+                buffer.clear();
+                String name = renderer.render(position, buffer);
+                if (rendering != null) {
+                    rendering.record(start, allocated, buffer.length());
+                    start = System.nanoTime();
+                    allocated = BuildMetrics.allocatedBytes();
+                }
+                try {
+                    sink.write(name, buffer);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (writing != null) {
+                    writing.record(start, allocated, buffer.length());
+                }
+            });
+        } finally {
+            if (rendering != null) {
+                rendering.end();
+                writing.end();
+            }
+        }
+    }
+
+    /**
+     * Renders pages until none are left, handing each one to the writers. A
+     * buffer is taken before a page is claimed, so every claimed page can be
+     * rendered without waiting on the writers.
+     *
+     * @param renderer
+     *            The renderer of the pages.
+     * @param count
+     *            The number of pages to render.
+     * @param next
+     *            The position of the next page to render.
+     * @param buffers
+     *            The pool of free page buffers.
+     * @param queue
+     *            The queue of rendered pages.
+     * @param failure
+     *            The first failure of any worker.
+     * @param rendering
+     *            The stage timing each page, or null.
+     */
+    private static void render(PageRenderer renderer, int count,
+            AtomicInteger next, BlockingQueue<PageBuffer> buffers,
+            BlockingQueue<Page> queue,
+            AtomicReference<RuntimeException> failure,
+            BuildMetrics.Stage rendering) {
+        PageBuffer buffer = takeUninterruptibly(buffers);
+        int position = next.getAndIncrement();
+        while (position < count && failure.get() == null) {
+            // A page that fails still goes to the writers, without a name
+            String name = null;
+            long start = 0;
+            long allocated = 0;
+            if (rendering != null) {
+                start = System.nanoTime();
+                allocated = BuildMetrics.allocatedBytes();
+            }
+            try {
+                buffer.clear();
+                name = renderer.render(position, buffer);
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+            }
+            if (rendering != null) {
+                rendering.record(start, allocated, buffer.length());
+            }
+            putUninterruptibly(queue, new Page(name, position, buffer));
+            buffer = takeUninterruptibly(buffers);
+            position = next.getAndIncrement();
+        }
+        putUninterruptibly(buffers, buffer);
+    }
+
+    /**
+     * Writes pages from the queue as they arrive until told to stop,
+     * returning each buffer to the pool. After a failure the remaining pages
+     * are discarded, so the renderers never block forever.
+     *
+     * @param queue
+     *            The queue of rendered pages.
+     * @param buffers
+     *            The pool of free page buffers.
+     * @param sink
+     *            The sink receiving the pages.
+     * @param failure
+     *            The first failure of any worker.
+     * @param writing
+     *            The stage timing each page, or null.
+     */
+    private static void drain(BlockingQueue<Page> queue,
+            BlockingQueue<PageBuffer> buffers, PageSink sink,
+            AtomicReference<RuntimeException> failure,
+            BuildMetrics.Stage writing) {
+        Page page = takeUninterruptibly(queue);
+        while (page != DONE) {
+            write(page, sink, failure, writing);
+            putUninterruptibly(buffers, page.buffer);
+            page = takeUninterruptibly(queue);
+        }
+    }
+
+    /**
+     * Writes pages from the queue in rendering order until told to stop,
+     * returning each buffer to the pool. Pages that arrive early are held
+     * until the pages before them are written; since every page not yet
+     * written holds a buffer, they always fit in a ring of one slot per
+     * buffer. After a failure the held and remaining pages are discarded, so
+     * the renderers never block forever.
+     *
+     * @param queue
+     *            The queue of rendered pages.
+     * @param buffers
+     *            The pool of free page buffers.
+     * @param bufferCount
+     *            The number of buffers in the pool.
+     * @param sink
+     *            The sink receiving the pages.
+     * @param failure
+     *            The first failure of any worker.
+     * @param writing
+     *            The stage timing each page, or null.
+     */
+    private static void drainInOrder(BlockingQueue<Page> queue,
+            BlockingQueue<PageBuffer> buffers, int bufferCount, PageSink sink,
+            AtomicReference<RuntimeException> failure,
+            BuildMetrics.Stage writing) {
+        Page[] held = new Page[bufferCount];
+        int nextSequence = 0;
+        Page page = takeUninterruptibly(queue);
+        while (page != DONE) {
+            held[page.sequence % bufferCount] = page;
+
+            // Write every page that is now next in line
+            Page ready = held[nextSequence % bufferCount];
+            while (ready != null) {
+                held[nextSequence % bufferCount] = null;
+                write(ready, sink, failure, writing);
+                putUninterruptibly(buffers, ready.buffer);
+                nextSequence++;
+                ready = held[nextSequence % bufferCount];
+            }
+
+            // A failed page may never arrive, so let go of the rest
+            if (failure.get() != null) {
+                for (int i = 0; i < bufferCount; i++) {
+                    if (held[i] != null) {
+                        putUninterruptibly(buffers, held[i].buffer);
+                        held[i] = null;
+                    }
+                }
+            }
+            page = takeUninterruptibly(queue);
+        }
+    }
+
+    /**
+     * Writes a page to the sink, unless it failed to render or an earlier
+     * failure stopped the generation.
+     *
+     * @param page
+     *            The page to write.
+     * @param sink
+     *            The sink receiving the page.
+     * @param failure
+     *            The first failure of any worker.
+     * @param writing
+     *            The stage timing each page, or null.
+     */
+    private static void write(Page page, PageSink sink,
+            AtomicReference<RuntimeException> failure,
+            BuildMetrics.Stage writing) {
+        if (page.name != null && failure.get() == null) {
+            long start = 0;
+            long allocated = 0;
+            if (writing != null) {
+                start = System.nanoTime();
+                allocated = BuildMetrics.allocatedBytes();
+            }
+            try {
+                sink.write(page.name, page.buffer);
+            } catch (IOException e) {
+                failure.compareAndSet(null, new UncheckedIOException(e));
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+            }
+            if (writing != null) {
+                writing.record(start, allocated, page.buffer.length());
+            }
+        }
+    }
+
+    /**
+     * Puts an element on a queue, waiting for space if necessary.
+     *
+     * @param <T>
+     *            The type of the elements.
+     * @param queue
+     *            The queue.
+     * @param element
+     *            The element to add.
+     */
+    private static <T> void putUninterruptibly(BlockingQueue<T> queue,
+            T element) {
+        boolean interrupted = false;
+        boolean added = false;
+        while (!added) {
+            try {
+                queue.put(element);
+                added = true;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Takes an element from a queue, waiting for one if necessary.
+     *
+     * @param <T>
+     *            The type of the elements.
+     * @param queue
+     *            The queue.
+     * @return The element.
+     */
+    private static <T> T takeUninterruptibly(BlockingQueue<T> queue) {
+        boolean interrupted = false;
+        T element = null;
+        while (element == null) {
+            try {
+                element = queue.take();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return element;
+    }
+
+    /**
+     * Waits for a pool to finish its tasks.
+     *
+     * @param pool
+     *            The pool, already shut down.
+     * @param failure
+     *            The first failure of any worker.
+     */
+    private static void awaitTermination(ExecutorService pool,
+            AtomicReference<RuntimeException> failure) {
+        boolean terminated = false;
+        while (!terminated) {
+            try {
+                terminated = pool.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                failure.compareAndSet(null,
+                        new IllegalStateException("interrupted", e));
+                Thread.currentThread().interrupt();
+                pool.shutdownNow();
+                terminated = true;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,305 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes every page of a site into a single uncompressed tar archive, in one
+ * sequential stream, instead of one file per page. Each page is written as a
+ * header block followed by its bytes with a single gathering write. Names
+ * longer than the 100 bytes a ustar header holds, or not plain ASCII, get a
+ * pax extended header. Modification times are left at zero, so the same site
+ * always gives the same archive.
+ * <p>
+ * When the archive is closed, a sidecar index is written next to it, named
+ * after the archive with ".idx" appended. After a header line, it holds one
+ * line per page, "&lt;offset&gt; &lt;length&gt; &lt;name&gt;", giving the
+ * position and size of the page bytes in the archive, so a server can send a
+ * page straight out of the archive without extracting it.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public final class TarArchiveSink implements PageSink {
+
+    /**
+     * First line of every sidecar index.
+     */
+    public static final String INDEX_HEADER = "# glossary archive index 1";
+
+    /**
+     * Size of a tar block.
+     */
+    private static final int BLOCK_SIZE = 512;
+
+    /**
+     * Length of the name field of a ustar header.
+     */
+    private static final int NAME_LENGTH = 100;
+
+    /**
+     * Zero bytes used to pad entries to a whole block.
+     */
+    private static final byte[] ZEROS = new byte[BLOCK_SIZE];
+
+    /**
+     * The archive file.
+     */
+    private final Path archive;
+
+    /**
+     * The open archive.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Reused header block.
+     */
+    private final ByteBuffer header = ByteBuffer.allocate(BLOCK_SIZE);
+
+    /**
+     * Name of each page written so far.
+     */
+    private String[] names = new String[16];
+
+    /**
+     * Position of the bytes of each page written so far.
+     */
+    private long[] offsets = new long[16];
+
+    /**
+     * Length of each page written so far.
+     */
+    private int[] lengths = new int[16];
+
+    /**
+     * Number of pages written so far.
+     */
+    private int size = 0;
+
+    /**
+     * Number of bytes written to the archive so far.
+     */
+    private long position = 0;
+
+    /**
+     * Creates the given archive, replacing any existing file.
+     *
+     * @param archive
+     *            The archive file.
+     * @throws IOException
+     *             if the archive cannot be created
+     */
+    public TarArchiveSink(Path archive) throws IOException {
+        this.archive = archive;
+        this.channel = FileChannel.open(archive, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Returns the sidecar index file of the given archive.
+     *
+     * @param archive
+     *            The archive file.
+     * @return The index file.
+     */
+    public static Path indexFile(Path archive) {
+        return archive.resolveSibling(archive.getFileName() + ".idx");
+    }
+
+    @Override
+    public void write(String name, PageBuffer page) throws IOException {
+        // Names that do not fit a ustar header go in a pax header first
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length > NAME_LENGTH
+                || nameBytes.length != name.length()) {
+            byte[] record = paxRecord("path", name);
+            this.writeEntry(this.header("././@PaxHeader", record.length,
+                    (byte) 'x'), ByteBuffer.wrap(record));
+            nameBytes = Arrays.copyOf(nameBytes,
+                    Math.min(nameBytes.length, NAME_LENGTH));
+        }
+        ByteBuffer body = page.asByteBuffer();
+        long offset = this.writeEntry(
+                this.header(nameBytes, page.length(), (byte) '0'), body);
+
+        // Remember where the page went for the sidecar index
+        if (this.size == this.names.length) {
+            this.names = Arrays.copyOf(this.names, 2 * this.size);
+            this.offsets = Arrays.copyOf(this.offsets, 2 * this.size);
+            this.lengths = Arrays.copyOf(this.lengths, 2 * this.size);
+        }
+        this.names[this.size] = name;
+        this.offsets[this.size] = offset;
+        this.lengths[this.size] = page.length();
+        this.size++;
+    }
+
+    @Override
+    public boolean sequential() {
+        return true;
+    }
+
+    /**
+     * Ends the archive with two zero blocks, closes it and writes the sidecar
+     * index.
+     *
+     * @throws IOException
+     *             if the archive or the index cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            ByteBuffer end = ByteBuffer.allocate(2 * BLOCK_SIZE);
+            while (end.hasRemaining()) {
+                this.channel.write(end);
+            }
+        } finally {
+            this.channel.close();
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(
+                indexFile(this.archive), StandardCharsets.UTF_8)) {
+            out.write(INDEX_HEADER);
+            out.newLine();
+            for (int i = 0; i < this.size; i++) {
+                out.write(Long.toString(this.offsets[i]));
+                out.write(' ');
+                out.write(Integer.toString(this.lengths[i]));
+                out.write(' ');
+                out.write(this.names[i]);
+                out.newLine();
+            }
+        }
+    }
+
+    /**
+     * Writes one archive entry: its header, its bytes and the padding up to
+     * the next block, with a single gathering write.
+     *
+     * @param header
+     *            The header block, ready to be read.
+     * @param body
+     *            The bytes of the entry.
+     * @return The position in the archive of the bytes of the entry.
+     * @throws IOException
+     *             if the archive cannot be written
+     */
+    private long writeEntry(ByteBuffer header, ByteBuffer body)
+            throws IOException {
+        int padding = (BLOCK_SIZE - body.remaining() % BLOCK_SIZE)
+                % BLOCK_SIZE;
+        ByteBuffer[] entry = { header, body,
+                ByteBuffer.wrap(ZEROS, 0, padding) };
+        long total = BLOCK_SIZE + body.remaining() + padding;
+        long written = 0;
+        while (written < total) {
+            written += this.channel.write(entry);
+        }
+        long offset = this.position + BLOCK_SIZE;
+        this.position += total;
+        return offset;
+    }
+
+    /**
+     * Fills the header block for an entry with the given name.
+     *
+     * @param name
+     *            The name of the entry, in ASCII.
+     * @param length
+     *            The number of bytes in the entry.
+     * @param type
+     *            The type flag of the entry.
+     * @return The header block, ready to be read.
+     */
+    private ByteBuffer header(String name, int length, byte type) {
+        return this.header(name.getBytes(StandardCharsets.US_ASCII), length,
+                type);
+    }
+
+    /**
+     * Fills the header block for an entry with the given name.
+     *
+     * @param name
+     *            The name of the entry, at most 100 bytes.
+     * @param length
+     *            The number of bytes in the entry.
+     * @param type
+     *            The type flag of the entry.
+     * @return The header block, ready to be read.
+     */
+    private ByteBuffer header(byte[] name, int length, byte type) {
+        byte[] block = this.header.array();
+        Arrays.fill(block, (byte) 0);
+        System.arraycopy(name, 0, block, 0, name.length);
+        octal(block, 100, 8, 0644);
+        octal(block, 108, 8, 0);
+        octal(block, 116, 8, 0);
+        octal(block, 124, 12, length);
+        octal(block, 136, 12, 0);
+        block[156] = type;
+        System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII),
+                0, block, 257, 8);
+
+        // The checksum is computed with its own field filled with spaces
+        Arrays.fill(block, 148, 156, (byte) ' ');
+        int checksum = 0;
+        for (byte b : block) {
+            checksum += b & 0xFF;
+        }
+        octal(block, 148, 7, checksum);
+        this.header.clear();
+        return this.header;
+    }
+
+    /**
+     * Writes a number into a header field as zero-padded octal digits
+     * followed by a NUL.
+     *
+     * @param block
+     *            The header block.
+     * @param offset
+     *            The position of the field.
+     * @param width
+     *            The width of the field, including the NUL.
+     * @param value
+     *            The number.
+     */
+    private static void octal(byte[] block, int offset, int width,
+            long value) {
+        long remaining = value;
+        for (int i = offset + width - 2; i >= offset; i--) {
+            block[i] = (byte) ('0' + (remaining & 7));
+            remaining >>>= 3;
+        }
+        block[offset + width - 1] = 0;
+    }
+
+    /**
+     * Encodes a pax extended header record, "&lt;length&gt;
+     * &lt;key&gt;=&lt;value&gt;\n", where the length counts the whole record
+     * including its own digits.
+     *
+     * @param key
+     *            The key.
+     * @param value
+     *            The value.
+     * @return The encoded record.
+     */
+    private static byte[] paxRecord(String key, String value) {
+        int body = (" " + key + "=" + value + "\n")
+                .getBytes(StandardCharsets.UTF_8).length;
+        int length = body + Integer.toString(body).length();
+        if (Integer.toString(length).length() > Integer.toString(body)
+                .length()) {
+            length++;
+        }
+        return (length + " " + key + "=" + value + "\n")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,433 @@
+import java.text.Collator;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.IntStream;
+
+/**
+ * The order of the terms of a glossary. Each term is given a binary
+ * collation key once, packed eight bytes to a long, with one byte per
+ * character when every term allows it, and terms are sorted on their keys,
+ * either by a parallel comparison sort or, optionally, by an MSD radix sort;
+ * terms with equal keys are ordered by {@link String#compareTo}, so the order
+ * is total. By default the key is the
+ * term folded the way {@link String#CASE_INSENSITIVE_ORDER} compares it, which
+ * gives the same order. A collator can instead follow the rules of a locale
+ * through {@link Collator}, for glossaries in languages where the plain
+ * folded order is wrong. Collators are immutable and can be shared freely
+ * between threads.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public final class TermCollator {
+
+    /**
+     * Terms with their collation keys, as sorted.
+     */
+    private static final class Entry {
+
+        /**
+         * The term.
+         */
+        private final String term;
+
+        /**
+         * The first eight bytes of the key, big-endian, zero-padded; most
+         * comparisons are settled here.
+         */
+        private final long prefix;
+
+        /**
+         * The rest of the key, packed eight bytes to a long, or null if the
+         * key fits in the prefix.
+         */
+        private final long[] rest;
+
+        /**
+         * The number of bytes in the key.
+         */
+        private final int length;
+
+        /**
+         * Creates an entry.
+         *
+         * @param term
+         *            The term.
+         * @param key
+         *            The collation key of the term.
+         */
+        Entry(String term, byte[] key) {
+            this.term = term;
+            this.length = key.length;
+            long[] words = new long[Math.max(1, (key.length + 7) / 8)];
+            for (int i = 0; i < key.length; i++) {
+                words[i >>> 3] |= (key[i] & 0xFFL) << (56 - 8 * (i & 7));
+            }
+            this.prefix = words[0];
+            this.rest = words.length > 1 ? words : null;
+        }
+
+        /**
+         * Returns one byte of the key, plus one, or 0 past its end.
+         *
+         * @param index
+         *            The position of the byte.
+         * @return The digit.
+         */
+        int digit(int index) {
+            if (index >= this.length) {
+                return 0;
+            }
+            long word = this.prefix;
+            if (index >= 8) {
+                word = this.rest[index >>> 3];
+            }
+            return (int) (word >>> (56 - 8 * (index & 7)) & 0xFF) + 1;
+        }
+
+        /**
+         * Compares two entries by key, then by term.
+         *
+         * @param other
+         *            The other entry.
+         * @return Negative, zero or positive as this entry comes first, is
+         *         the same, or comes last.
+         */
+        int compareTo(Entry other) {
+            if (this.prefix != other.prefix) {
+                return Long.compareUnsigned(this.prefix, other.prefix);
+            }
+            if (this.rest != null && other.rest != null) {
+                int words = Math.min(this.rest.length, other.rest.length);
+                for (int i = 1; i < words; i++) {
+                    if (this.rest[i] != other.rest[i]) {
+                        return Long.compareUnsigned(this.rest[i],
+                                other.rest[i]);
+                    }
+                }
+            }
+            if (this.length != other.length) {
+                return Integer.compare(this.length, other.length);
+            }
+            return this.term.compareTo(other.term);
+        }
+
+    }
+
+    /**
+     * Number of entries below which the radix sort switches to insertion
+     * sort.
+     */
+    private static final int RADIX_CUTOFF = 16;
+
+    /**
+     * Case-insensitive order, sorted by comparison.
+     */
+    public static final TermCollator CASE_INSENSITIVE = new TermCollator(
+            null, false);
+
+    /**
+     * The locale of the collator, or null for case-insensitive order.
+     */
+    private final Locale locale;
+
+    /**
+     * Whether terms are sorted by radix sort instead of comparison sort.
+     */
+    private final boolean radix;
+
+    /**
+     * Collator of the locale for each thread, comparing all differences.
+     */
+    private final ThreadLocal<Collator> collators;
+
+    /**
+     * Collator of the locale for each thread, comparing base letters only.
+     */
+    private final ThreadLocal<Collator> initials;
+
+    /**
+     * Creates a collator.
+     *
+     * @param locale
+     *            The locale of the collator, or null for case-insensitive
+     *            order.
+     * @param radix
+     *            Whether terms are sorted by radix sort.
+     */
+    private TermCollator(Locale locale, boolean radix) {
+        this.locale = locale;
+        this.radix = radix;
+        this.collators = ThreadLocal.withInitial(() -> collator(locale,
+                Collator.TERTIARY));
+        this.initials = ThreadLocal.withInitial(() -> collator(locale,
+                Collator.PRIMARY));
+    }
+
+    /**
+     * Returns a collator for the given locale.
+     *
+     * @param locale
+     *            The locale, or null.
+     * @param strength
+     *            The differences the collator tells apart.
+     * @return The collator, or null without a locale.
+     */
+    private static Collator collator(Locale locale, int strength) {
+        Collator collator = null;
+        if (locale != null) {
+            collator = Collator.getInstance(locale);
+            collator.setStrength(strength);
+        }
+        return collator;
+    }
+
+    /**
+     * Returns a collator following the rules of the given locale.
+     *
+     * @param locale
+     *            The locale.
+     * @return The collator.
+     */
+    public static TermCollator forLocale(Locale locale) {
+        return new TermCollator(locale, false);
+    }
+
+    /**
+     * Returns a collator giving the same order as this one, sorting by
+     * radix sort.
+     *
+     * @return The collator.
+     */
+    public TermCollator withRadixSort() {
+        return new TermCollator(this.locale, true);
+    }
+
+    /**
+     * Returns the collator described by a command-line value: "default",
+     * "radix", or a language tag such as "fr" or "sv-SE" for the order of
+     * that locale.
+     *
+     * @param value
+     *            The value.
+     * @return The collator.
+     * @throws IllegalArgumentException
+     *             if the value is not understood
+     */
+    public static TermCollator parse(String value) {
+        TermCollator collator;
+        if (value.equals("default")) {
+            collator = CASE_INSENSITIVE;
+        } else if (value.equals("radix")) {
+            collator = CASE_INSENSITIVE.withRadixSort();
+        } else {
+            Locale locale = Locale.forLanguageTag(value);
+            if (locale.getLanguage().isEmpty()) {
+                throw new IllegalArgumentException(
+                        "Unknown collation: " + value);
+            }
+            collator = forLocale(locale);
+        }
+        return collator;
+    }
+
+    /**
+     * Reports whether this collator gives the default, case-insensitive
+     * order.
+     *
+     * @return Whether there is no locale.
+     */
+    public boolean isCaseInsensitive() {
+        return this.locale == null;
+    }
+
+    /**
+     * Returns the command-line value describing the order of this collator,
+     * as accepted by {@link #parse}: "default" for the case-insensitive
+     * order, however it is sorted, or the language tag of the locale.
+     *
+     * @return The description of the order.
+     */
+    @Override
+    public String toString() {
+        String value = "default";
+        if (this.locale != null) {
+            value = this.locale.toLanguageTag();
+        }
+        return value;
+    }
+
+    /**
+     * Returns the collation key of a term.
+     *
+     * @param term
+     *            The term.
+     * @return The key.
+     */
+    public byte[] key(String term) {
+        return this.key(term, false);
+    }
+
+    /**
+     * Returns the collation key of a term, optionally with one byte per
+     * character when every folded character of every term being sorted fits
+     * in one.
+     *
+     * @param term
+     *            The term.
+     * @param narrow
+     *            Whether to use one byte per character, without a locale.
+     * @return The key.
+     */
+    private byte[] key(String term, boolean narrow) {
+        if (this.locale != null) {
+            return this.collators.get().getCollationKey(term).toByteArray();
+        }
+
+        // Fold each character the way CASE_INSENSITIVE_ORDER compares it
+        int width = narrow ? 1 : 2;
+        byte[] key = new byte[width * term.length()];
+        for (int i = 0; i < term.length(); i++) {
+            char folded = fold(term.charAt(i));
+            if (!narrow) {
+                key[2 * i] = (byte) (folded >>> 8);
+            }
+            key[width * i + width - 1] = (byte) folded;
+        }
+        return key;
+    }
+
+    /**
+     * Folds a character the way {@link String#CASE_INSENSITIVE_ORDER}
+     * compares it.
+     *
+     * @param c
+     *            The character.
+     * @return The folded character.
+     */
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /**
+     * Reports whether every character of the given term folds to a
+     * character below 256.
+     *
+     * @param term
+     *            The term.
+     * @return Whether the term has a narrow key.
+     */
+    private static boolean isNarrow(String term) {
+        for (int i = 0; i < term.length(); i++) {
+            if (fold(term.charAt(i)) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reports whether two terms start with the same letter, ignoring case
+     * and, with a locale, accents, so that terms with the same initial are
+     * next to each other in this order.
+     *
+     * @param first
+     *            The first term.
+     * @param second
+     *            The second term.
+     * @return Whether the terms have the same initial.
+     */
+    public boolean sameInitial(String first, String second) {
+        if (first.isEmpty() || second.isEmpty()) {
+            return first.isEmpty() && second.isEmpty();
+        }
+        char a = first.charAt(0);
+        char b = second.charAt(0);
+        if (this.locale != null) {
+            return this.initials.get().compare(String.valueOf(a),
+                    String.valueOf(b)) == 0;
+        }
+        return fold(a) == fold(b);
+    }
+
+    /**
+     * Sorts the given terms in place. Keys are computed in parallel.
+     *
+     * @param terms
+     *            The terms.
+     */
+    public void sort(String[] terms) {
+        boolean narrow = this.locale == null && Arrays.stream(terms)
+                .parallel().allMatch(TermCollator::isNarrow);
+        Entry[] entries = new Entry[terms.length];
+        IntStream.range(0, terms.length).parallel().forEach(i -> entries[i] =
+                new Entry(terms[i], this.key(terms[i], narrow)));
+        if (this.radix) {
+            radixSort(entries, new Entry[entries.length], 0, entries.length,
+                    0);
+        } else {
+            Arrays.parallelSort(entries, Entry::compareTo);
+        }
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = entries[i].term;
+        }
+    }
+
+    /**
+     * Sorts a range of entries whose keys agree before the given byte, by
+     * MSD radix sort on one byte of the key at a time.
+     *
+     * @param entries
+     *            The entries.
+     * @param aux
+     *            Scratch space as large as the entries.
+     * @param low
+     *            The first entry of the range.
+     * @param high
+     *            The end of the range.
+     * @param digit
+     *            The position of the byte to sort on.
+     */
+    private static void radixSort(Entry[] entries, Entry[] aux, int low,
+            int high, int digit) {
+        if (high - low < RADIX_CUTOFF) {
+            for (int i = low + 1; i < high; i++) {
+                Entry entry = entries[i];
+                int j = i;
+                while (j > low && entries[j - 1].compareTo(entry) > 0) {
+                    entries[j] = entries[j - 1];
+                    j--;
+                }
+                entries[j] = entry;
+            }
+            return;
+        }
+
+        // Distribute the range by the byte, keys that ended first
+        int[] starts = new int[258];
+        for (int i = low; i < high; i++) {
+            starts[entries[i].digit(digit) + 1]++;
+        }
+        for (int d = 0; d < 257; d++) {
+            starts[d + 1] += starts[d];
+        }
+        int[] fill = Arrays.copyOf(starts, 257);
+        for (int i = low; i < high; i++) {
+            int d = entries[i].digit(digit);
+            aux[fill[d]] = entries[i];
+            fill[d]++;
+        }
+        System.arraycopy(aux, 0, entries, low, high - low);
+
+        // Keys that ended are equal, so only the terms order them
+        Arrays.sort(entries, low, low + starts[1],
+                (a, b) -> a.term.compareTo(b.term));
+        for (int d = 1; d < 257; d++) {
+            if (starts[d + 1] - starts[d] > 1) {
+                radixSort(entries, aux, low + starts[d], low + starts[d + 1],
+                        digit + 1);
+            }
+        }
+    }
+
+}
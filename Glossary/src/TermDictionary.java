@@ -0,0 +1,251 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.function.IntFunction;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * Immutable in-memory glossary holding every definition as UTF-8 in one
+ * contiguous byte array, addressed by term ordinal. Terms are kept in a
+ * {@link TermIndex}, so lookup by term or by ordinal takes constant time and
+ * iteration is in sorted order, without a hash entry or string object per
+ * definition. Definitions are decoded when asked for. The dictionary can be
+ * shared freely between threads.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public final class TermDictionary implements GlossarySource, Iterable<String> {
+
+    /**
+     * Largest number of bytes the arena can hold.
+     */
+    private static final int MAX_ARENA = Integer.MAX_VALUE - 8;
+
+    /**
+     * The terms, by ordinal.
+     */
+    private final TermIndex terms;
+
+    /**
+     * The definitions, as UTF-8, in ordinal order.
+     */
+    private final byte[] arena;
+
+    /**
+     * Start in {@link #arena} of each definition, plus the end of the last.
+     */
+    private final int[] starts;
+
+    /**
+     * Creates a dictionary. The arrays become owned by the dictionary.
+     *
+     * @param terms
+     *            The terms, by ordinal.
+     * @param arena
+     *            The definitions, as UTF-8, in ordinal order.
+     * @param starts
+     *            Start of each definition, plus the end of the last.
+     */
+    private TermDictionary(TermIndex terms, byte[] arena, int[] starts) {
+        this.terms = terms;
+        this.arena = arena;
+        this.starts = starts;
+    }
+
+    /**
+     * Returns the number of bytes the given string takes in UTF-8, counting
+     * an unpaired surrogate as the one byte of the '?' it is encoded as.
+     *
+     * @param s
+     *            The string.
+     * @return The length of its UTF-8 encoding.
+     */
+    private static int utf8Length(String s) {
+        int length = s.length();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                continue;
+            } else if (c < 0x800) {
+                length++;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                // Two chars, four bytes
+                length += 2;
+                i++;
+            } else if (!Character.isSurrogate(c)) {
+                length += 2;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Builds a dictionary from the given terms and definitions. Each
+     * definition is asked for twice, once to measure it and once to copy it,
+     * so that the arena is allocated once at its exact size.
+     *
+     * @param terms
+     *            The index of terms in the glossary.
+     * @param definitions
+     *            The definition of each term, by ordinal, the same every
+     *            time it is asked for.
+     * @return The dictionary.
+     * @throws IllegalArgumentException
+     *             if the definitions do not fit in one array, or a
+     *             definition changes between the two times it is asked for
+     */
+    public static TermDictionary build(TermIndex terms,
+            IntFunction<String> definitions) {
+        // Lay out the definitions before copying any of them
+        int[] starts = new int[terms.size() + 1];
+        long length = 0;
+        for (int i = 0; i < terms.size(); i++) {
+            starts[i] = (int) length;
+            length += utf8Length(definitions.apply(i));
+            if (length > MAX_ARENA) {
+                throw new IllegalArgumentException(
+                        "Definitions too large for a dictionary");
+            }
+        }
+        starts[terms.size()] = (int) length;
+
+        byte[] arena = new byte[(int) length];
+        for (int i = 0; i < terms.size(); i++) {
+            byte[] definition = definitions.apply(i)
+                    .getBytes(StandardCharsets.UTF_8);
+            if (definition.length != starts[i + 1] - starts[i]) {
+                throw new IllegalArgumentException(
+                        "Definition changed while building: "
+                                + terms.term(i));
+            }
+            System.arraycopy(definition, 0, arena, starts[i],
+                    definition.length);
+        }
+        return new TermDictionary(terms, arena, starts);
+    }
+
+    /**
+     * Builds a dictionary from the given glossary, which is not modified.
+     *
+     * @param glossary
+     *            The map containing the terms and their definitions.
+     * @return The dictionary.
+     */
+    public static TermDictionary fromMap(Map<String, String> glossary) {
+        TermIndex terms = new TermIndex(glossary);
+        return build(terms, i -> glossary.value(terms.term(i)));
+    }
+
+    /**
+     * Returns the number of terms in the dictionary.
+     *
+     * @return The number of terms.
+     */
+    public int size() {
+        return this.terms.size();
+    }
+
+    @Override
+    public TermIndex terms() {
+        return this.terms;
+    }
+
+    /**
+     * Returns the term with the given ordinal.
+     *
+     * @param ordinal
+     *            The ordinal of the term.
+     * @return The term.
+     */
+    public String term(int ordinal) {
+        return this.terms.term(ordinal);
+    }
+
+    /**
+     * Returns the ordinal of the given term.
+     *
+     * @param term
+     *            The term.
+     * @return The ordinal of the term, or -1 if it is not in the dictionary.
+     */
+    public int ordinal(String term) {
+        return this.terms.ordinal(term);
+    }
+
+    /**
+     * Reports whether the given term is in the dictionary.
+     *
+     * @param term
+     *            The term.
+     * @return Whether the term is in the dictionary.
+     */
+    public boolean hasKey(String term) {
+        return this.terms.contains(term);
+    }
+
+    @Override
+    public String definition(int ordinal) {
+        return new String(this.arena, this.starts[ordinal],
+                this.starts[ordinal + 1] - this.starts[ordinal],
+                StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the definition of the given term, like {@link Map#value}.
+     *
+     * @param term
+     *            The term.
+     * @return The definition.
+     * @throws IllegalArgumentException
+     *             if the term is not in the dictionary
+     */
+    public String value(String term) {
+        int ordinal = this.terms.ordinal(term);
+        if (ordinal < 0) {
+            throw new IllegalArgumentException("Unknown term: " + term);
+        }
+        return this.definition(ordinal);
+    }
+
+    /**
+     * Returns the number of bytes taken by the definitions.
+     *
+     * @return The size of the arena.
+     */
+    public int arenaSize() {
+        return this.arena.length;
+    }
+
+    /**
+     * Iterates over the terms in sorted order.
+     *
+     * @return An iterator over the terms.
+     */
+    @Override
+    public Iterator<String> iterator() {
+        return this.terms.iterator();
+    }
+
+    /**
+     * Copies the dictionary into a new map, for code written against
+     * {@link Map}.
+     *
+     * @return A map containing every term and its definition.
+     */
+    public Map<String, String> toMap() {
+        Map<String, String> glossary = new Map1L<>();
+        for (int i = 0; i < this.size(); i++) {
+            glossary.add(this.term(i), this.definition(i));
+        }
+        return glossary;
+    }
+
+    @Override
+    public void close() {
+        // Nothing to release; the arena is on the heap
+    }
+
+}
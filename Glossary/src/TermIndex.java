@@ -0,0 +1,248 @@
+import java.util.Arrays;
+import java.util.Iterator;
+
+import components.map.Map;
+
+/**
+ * Immutable, read-optimized index of the terms in a glossary. The terms are
+ * kept in the ascending order of a {@link TermCollator}, case-insensitive by
+ * default, so each term is identified by its position (ordinal) in that
+ * order, and an open-addressing hash table of
+ * ordinals gives constant-time lookup by term. Iterating over the index
+ * yields the terms in order. The index is built once per run and can be
+ * shared freely between threads.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public final class TermIndex implements Iterable<String> {
+
+    /**
+     * The terms, in ascending order.
+     */
+    private final String[] terms;
+
+    /**
+     * The order of the terms.
+     */
+    private final TermCollator collator;
+
+    /**
+     * Hash table of ordinals plus one; zero marks an empty slot.
+     */
+    private final int[] slots;
+
+    /**
+     * Mask used to reduce a hash code to a slot position.
+     */
+    private final int mask;
+
+    /**
+     * Linker compiled from this index on first use.
+     */
+    private TermLinker linker;
+
+    /**
+     * Registry of page file names built from this index on first use.
+     */
+    private TermRegistry registry;
+
+    /**
+     * Builds the index from the keys of the given glossary. The glossary is
+     * not modified.
+     *
+     * @param glossary
+     *            The map containing the terms and their definitions.
+     */
+    public TermIndex(Map<String, String> glossary) {
+        this(Glossary.sortedTerms(glossary), true,
+                TermCollator.CASE_INSENSITIVE);
+    }
+
+    /**
+     * Builds the index from the given distinct terms. The array is copied, so
+     * later changes to it do not affect the index.
+     *
+     * @param terms
+     *            The terms to index.
+     */
+    public TermIndex(String[] terms) {
+        this(terms, TermCollator.CASE_INSENSITIVE);
+    }
+
+    /**
+     * Builds the index from the given distinct terms, in the order of the
+     * given collator. The array is copied, so later changes to it do not
+     * affect the index.
+     *
+     * @param terms
+     *            The terms to index.
+     * @param collator
+     *            The order of the terms.
+     */
+    public TermIndex(String[] terms, TermCollator collator) {
+        this(terms.clone(), false, collator);
+    }
+
+    /**
+     * Builds the index over the given terms, which are already in ascending
+     * order, as read back from a snapshot. The array becomes owned by the
+     * index.
+     *
+     * @param terms
+     *            The sorted terms to index.
+     * @return The index.
+     */
+    static TermIndex ofSorted(String[] terms) {
+        return new TermIndex(terms, true, TermCollator.CASE_INSENSITIVE);
+    }
+
+    /**
+     * Builds the index over the given array, which becomes owned by the index.
+     *
+     * @param terms
+     *            The terms to index.
+     * @param sorted
+     *            Whether the terms are already in ascending order.
+     * @param collator
+     *            The order of the terms.
+     */
+    private TermIndex(String[] terms, boolean sorted,
+            TermCollator collator) {
+        if (!sorted) {
+            collator.sort(terms);
+        }
+        this.terms = terms;
+        this.collator = collator;
+
+        // Size the table to a power of two at least twice the number of terms
+        int capacity = Integer.highestOneBit(Math.max(1, terms.length)) << 2;
+        this.slots = new int[capacity];
+        this.mask = capacity - 1;
+
+        // Insert every ordinal using linear probing
+        for (int i = 0; i < terms.length; i++) {
+            int slot = spread(terms[i].hashCode()) & this.mask;
+            while (this.slots[slot] != 0) {
+                slot = (slot + 1) & this.mask;
+            }
+            this.slots[slot] = i + 1;
+        }
+    }
+
+    /**
+     * Mixes the bits of a hash code so that similar terms spread out.
+     *
+     * @param h
+     *            The hash code.
+     * @return The mixed hash code.
+     */
+    private static int spread(int h) {
+        int mixed = h * 0x9E3779B9;
+        return mixed ^ (mixed >>> 16);
+    }
+
+    /**
+     * Returns the number of terms in the index.
+     *
+     * @return The number of terms.
+     */
+    public int size() {
+        return this.terms.length;
+    }
+
+    /**
+     * Returns the term with the given ordinal.
+     *
+     * @param ordinal
+     *            The position of the term in ascending order.
+     * @return The term.
+     */
+    public String term(int ordinal) {
+        return this.terms[ordinal];
+    }
+
+    /**
+     * Returns the ordinal of the given term, or -1 if it is not in the index.
+     *
+     * @param term
+     *            The term to look up.
+     * @return The ordinal of the term, or -1.
+     */
+    public int ordinal(String term) {
+        int slot = spread(term.hashCode()) & this.mask;
+        int entry = this.slots[slot];
+        while (entry != 0) {
+            if (this.terms[entry - 1].equals(term)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & this.mask;
+            entry = this.slots[slot];
+        }
+        return -1;
+    }
+
+    /**
+     * Reports whether the given term is in the index.
+     *
+     * @param term
+     *            The term to look up.
+     * @return Whether the term is in the index.
+     */
+    public boolean contains(String term) {
+        return this.ordinal(term) >= 0;
+    }
+
+    /**
+     * Returns the order of the terms.
+     *
+     * @return The collator.
+     */
+    public TermCollator collator() {
+        return this.collator;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return Arrays.asList(this.terms).iterator();
+    }
+
+    /**
+     * Reports whether the given index holds exactly the same terms, in which
+     * case every term also has the same ordinal in both.
+     *
+     * @param other
+     *            The index to compare with.
+     * @return Whether the indexes hold the same terms.
+     */
+    public boolean hasSameTerms(TermIndex other) {
+        return Arrays.equals(this.terms, other.terms);
+    }
+
+    /**
+     * Returns the linker for the terms in this index, compiling it on first
+     * use.
+     *
+     * @return The linker.
+     */
+    public synchronized TermLinker linker() {
+        if (this.linker == null) {
+            this.linker = new TermLinker(this);
+        }
+        return this.linker;
+    }
+
+    /**
+     * Returns the registry of the page file names of the terms in this index,
+     * building it on first use.
+     *
+     * @return The registry.
+     */
+    public synchronized TermRegistry registry() {
+        if (this.registry == null) {
+            this.registry = new TermRegistry(this);
+        }
+        return this.registry;
+    }
+
+}
@@ -0,0 +1,524 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Links glossary terms inside definition text. Every term of a
+ * {@link TermIndex} is compiled once into an Aho-Corasick automaton, so a
+ * definition is linked in a single left-to-right pass whose cost depends only
+ * on the length of the definition. Terms may contain separators (for example
+ * "hash table"); a match is only linked when it starts and ends on a word
+ * boundary, and at each position the longest such match wins. The linker is
+ * immutable and can be shared freely between threads; each thread reuses its
+ * own scratch arrays, and the UTF-8 markup of the link to each term is
+ * encoded once and shared by every page linking to it, so linking into a
+ * {@link PageBuffer} allocates nothing once the fragments are warm.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public final class TermLinker {
+
+    /**
+     * Receives the terms linked in a definition.
+     */
+    public interface LinkHandler {
+
+        /**
+         * Handles one linked term.
+         *
+         * @param start
+         *            The position in the definition where the term starts.
+         * @param end
+         *            The position in the definition just after the term.
+         * @param ordinal
+         *            The ordinal of the term.
+         */
+        void link(int start, int end, int ordinal);
+
+    }
+
+    /**
+     * The root state of the automaton.
+     */
+    private static final int ROOT = 0;
+
+    /**
+     * Largest total length of the terms, so that every state and edge of the
+     * automaton fits in an array.
+     */
+    private static final long MAX_TOTAL_LENGTH = 1 << 29;
+
+    /**
+     * Marks an empty slot of the edge table built while compiling.
+     */
+    private static final long NO_EDGE = -1L;
+
+    /**
+     * The terms being linked.
+     */
+    private final TermIndex terms;
+
+    /**
+     * The tokenizer deciding where words start and end.
+     */
+    private final Tokenizer tokenizer = Tokenizer.DEFAULT;
+
+    /**
+     * Per-thread match arrays, reused between definitions.
+     */
+    private final ThreadLocal<int[][]> scratch = ThreadLocal
+            .withInitial(() -> new int[2][0]);
+
+    /**
+     * The encoded link to each term, by ordinal, or null until first used.
+     */
+    private final AtomicReferenceArray<byte[]> fragments;
+
+    /**
+     * For each state, the start of its edges in {@code edgeChars} and
+     * {@code edgeTargets}; the edges of state s end at edgeStart[s + 1].
+     */
+    private final int[] edgeStart;
+
+    /**
+     * Edge labels, sorted within each state.
+     */
+    private final char[] edgeChars;
+
+    /**
+     * Edge target states, parallel to {@code edgeChars}.
+     */
+    private final int[] edgeTargets;
+
+    /**
+     * Failure link of each state.
+     */
+    private final int[] fail;
+
+    /**
+     * Nearest state on the failure chain (including the state itself) that
+     * ends a term, or -1 if there is none.
+     */
+    private final int[] output;
+
+    /**
+     * Ordinal of the term ending at each state, or -1 if no term ends there.
+     */
+    private final int[] termAt;
+
+    /**
+     * Depth of each state, i.e. the length of the text it matches.
+     */
+    private final int[] depth;
+
+    /**
+     * Compiles the terms of the given index into a linker.
+     *
+     * @param terms
+     *            The index of terms in the glossary.
+     */
+    public TermLinker(TermIndex terms) {
+        this.terms = terms;
+        this.fragments = new AtomicReferenceArray<>(terms.size());
+
+        // Size the states by the total length of the terms, which bounds them
+        long totalLength = 0;
+        for (int i = 0; i < terms.size(); i++) {
+            totalLength += terms.term(i).length();
+        }
+        if (totalLength > MAX_TOTAL_LENGTH) {
+            throw new IllegalArgumentException("Terms too long to compile: "
+                    + totalLength + " characters");
+        }
+        int[] termOf = new int[(int) totalLength + 1];
+        int[] depthOf = new int[(int) totalLength + 1];
+        termOf[ROOT] = -1;
+
+        // Build the trie in an open-addressed table of edges keyed by
+        // (state, character), doubling it whenever it is half full
+        long[] keys = new long[16];
+        int[] targets = new int[keys.length];
+        Arrays.fill(keys, NO_EDGE);
+        int edges = 0;
+        int states = 1;
+        for (int i = 0; i < terms.size(); i++) {
+            String term = terms.term(i);
+            int state = ROOT;
+            for (int j = 0; j < term.length(); j++) {
+                long key = edgeKey(state, term.charAt(j));
+                int slot = slot(keys, key);
+                if (keys[slot] == NO_EDGE) {
+                    keys[slot] = key;
+                    targets[slot] = states;
+                    termOf[states] = -1;
+                    depthOf[states] = j + 1;
+                    states++;
+                    edges++;
+                    if (2 * edges > keys.length) {
+                        long[] oldKeys = keys;
+                        int[] oldTargets = targets;
+                        keys = new long[2 * oldKeys.length];
+                        targets = new int[keys.length];
+                        Arrays.fill(keys, NO_EDGE);
+                        for (int k = 0; k < oldKeys.length; k++) {
+                            if (oldKeys[k] != NO_EDGE) {
+                                int moved = slot(keys, oldKeys[k]);
+                                keys[moved] = oldKeys[k];
+                                targets[moved] = oldTargets[k];
+                            }
+                        }
+                        slot = slot(keys, key);
+                    }
+                }
+                state = targets[slot];
+            }
+            if (term.length() > 0) {
+                termOf[state] = i;
+            }
+        }
+
+        // Lay the edges out contiguously per state, sorted by character
+        this.edgeStart = new int[states + 1];
+        for (long key : keys) {
+            if (key != NO_EDGE) {
+                this.edgeStart[(int) (key >>> Character.SIZE) + 1]++;
+            }
+        }
+        for (int s = 0; s < states; s++) {
+            this.edgeStart[s + 1] += this.edgeStart[s];
+        }
+        int[] next = Arrays.copyOf(this.edgeStart, states);
+        long[] packed = new long[edges];
+        for (int k = 0; k < keys.length; k++) {
+            if (keys[k] != NO_EDGE) {
+                int from = (int) (keys[k] >>> Character.SIZE);
+                packed[next[from]] = ((keys[k] & Character.MAX_VALUE)
+                        << Integer.SIZE) | targets[k];
+                next[from]++;
+            }
+        }
+        this.edgeChars = new char[edges];
+        this.edgeTargets = new int[edges];
+        for (int s = 0; s < states; s++) {
+            Arrays.sort(packed, this.edgeStart[s], this.edgeStart[s + 1]);
+        }
+        for (int e = 0; e < edges; e++) {
+            this.edgeChars[e] = (char) (packed[e] >>> Integer.SIZE);
+            this.edgeTargets[e] = (int) packed[e];
+        }
+        this.termAt = Arrays.copyOf(termOf, states);
+        this.depth = Arrays.copyOf(depthOf, states);
+
+        // Compute failure and output links breadth-first
+        this.fail = new int[states];
+        this.output = new int[states];
+        this.output[ROOT] = -1;
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        queue[tail] = ROOT;
+        tail++;
+        while (head < tail) {
+            int state = queue[head];
+            head++;
+            int lastEdge = this.edgeStart[state + 1];
+            for (int e = this.edgeStart[state]; e < lastEdge; e++) {
+                int child = this.edgeTargets[e];
+                if (state == ROOT) {
+                    this.fail[child] = ROOT;
+                } else {
+                    this.fail[child] = this.step(this.fail[state],
+                            this.edgeChars[e]);
+                }
+                if (this.termAt[child] >= 0) {
+                    this.output[child] = child;
+                } else {
+                    this.output[child] = this.output[this.fail[child]];
+                }
+                queue[tail] = child;
+                tail++;
+            }
+        }
+    }
+
+    /**
+     * Packs a trie edge into a single key.
+     *
+     * @param state
+     *            The state the edge leaves.
+     * @param c
+     *            The edge label.
+     * @return The key of the edge.
+     */
+    private static long edgeKey(int state, char c) {
+        return ((long) state << Character.SIZE) | c;
+    }
+
+    /**
+     * Returns the slot of the given edge in an open-addressed edge table:
+     * the slot holding it, or the empty slot where it belongs.
+     *
+     * @param keys
+     *            The keys of the table, whose length is a power of two.
+     * @param key
+     *            The key of the edge.
+     * @return The slot.
+     */
+    private static int slot(long[] keys, long key) {
+        int mask = keys.length - 1;
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        while (keys[slot] != NO_EDGE && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the state reached by following the edge labelled {@code c} from
+     * {@code state}, or -1 if there is no such edge.
+     *
+     * @param state
+     *            The current state.
+     * @param c
+     *            The next character.
+     * @return The next state, or -1.
+     */
+    private int edge(int state, char c) {
+        int low = this.edgeStart[state];
+        int high = this.edgeStart[state + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char label = this.edgeChars[mid];
+            if (label < c) {
+                low = mid + 1;
+            } else if (label > c) {
+                high = mid - 1;
+            } else {
+                return this.edgeTargets[mid];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Advances the automaton by one character, following failure links as
+     * needed.
+     *
+     * @param state
+     *            The current state.
+     * @param c
+     *            The next character.
+     * @return The next state.
+     */
+    private int step(int state, char c) {
+        int current = state;
+        int next = this.edge(current, c);
+        while (next < 0 && current != ROOT) {
+            current = this.fail[current];
+            next = this.edge(current, c);
+        }
+        if (next < 0) {
+            next = ROOT;
+        }
+        return next;
+    }
+
+    /**
+     * Returns the term index this linker was compiled from.
+     *
+     * @return The term index.
+     */
+    public TermIndex terms() {
+        return this.terms;
+    }
+
+    /**
+     * Returns the HTML link to the page of a term, encoded as UTF-8. The
+     * fragment is encoded on first use and shared from then on; it must not
+     * be modified.
+     *
+     * @param ordinal
+     *            The ordinal of the term.
+     * @return The encoded link.
+     */
+    public byte[] linkFragment(int ordinal) {
+        byte[] fragment = this.fragments.get(ordinal);
+        if (fragment == null) {
+            fragment = PageBuffer.encode(Glossary.LINK_START
+                    + this.terms.registry().href(ordinal)
+                    + Glossary.LINK_MIDDLE + this.terms.term(ordinal)
+                    + Glossary.LINK_END);
+
+            // Keep the first fragment if another thread raced this one
+            if (!this.fragments.compareAndSet(ordinal, null, fragment)) {
+                fragment = this.fragments.get(ordinal);
+            }
+        }
+        return fragment;
+    }
+
+    /**
+     * Finds the matches in the given definition, using this thread's reusable
+     * match arrays.
+     *
+     * @param definition
+     *            The input definition text.
+     * @return The match lengths at index 0 and the matched terms at index 1,
+     *         both at least as long as the definition.
+     */
+    private int[][] matches(String definition) {
+        int length = definition.length();
+        int[][] matches = this.scratch.get();
+        if (matches[0].length < length) {
+            matches[0] = new int[Math.max(length, 2 * matches[0].length)];
+            matches[1] = new int[matches[0].length];
+        } else {
+            Arrays.fill(matches[0], 0, length, 0);
+        }
+        this.findMatches(definition, matches[0], matches[1]);
+        return matches;
+    }
+
+    /**
+     * Finds the longest term starting at each word boundary of the given
+     * definition, in a single pass over the automaton.
+     *
+     * @param definition
+     *            The input definition text.
+     * @param matchLength
+     *            Receives, for each position, the length of the longest term
+     *            starting there, or 0.
+     * @param matchTerm
+     *            Receives, for each position with a match, the ordinal of the
+     *            matched term.
+     */
+    private void findMatches(String definition, int[] matchLength,
+            int[] matchTerm) {
+        int length = definition.length();
+        int state = ROOT;
+        for (int i = 0; i < length; i++) {
+            state = this.step(state, definition.charAt(i));
+            int end = i + 1;
+            if (end == length || this.tokenizer.startsToken(definition, end)) {
+                int match = this.output[state];
+                while (match >= 0) {
+                    int start = end - this.depth[match];
+                    if (this.tokenizer.startsToken(definition, start)
+                            && this.depth[match] > matchLength[start]) {
+                        matchLength[start] = this.depth[match];
+                        matchTerm[start] = this.termAt[match];
+                    }
+                    match = this.output[this.fail[match]];
+                }
+            }
+        }
+    }
+
+    /**
+     * Reports every term that would be linked in the given definition, from
+     * left to right. The handler must not use this linker itself.
+     *
+     * @param definition
+     *            The input definition text.
+     * @param handler
+     *            The handler receiving the links.
+     */
+    public void forEachLink(String definition, LinkHandler handler) {
+        int length = definition.length();
+        int[][] matches = this.matches(definition);
+        int[] matchLength = matches[0];
+        int[] matchTerm = matches[1];
+
+        int position = 0;
+        while (position < length) {
+            if (matchLength[position] > 0) {
+                handler.link(position, position + matchLength[position],
+                        matchTerm[position]);
+                position += matchLength[position];
+            } else {
+                position++;
+            }
+        }
+    }
+
+    /**
+     * Appends the given definition to {@code formatted}, replacing every
+     * linked term with an HTML link to its page.
+     *
+     * @param definition
+     *            The input definition text.
+     * @param formatted
+     *            The StringBuilder to append the linked text to.
+     */
+    public void link(String definition, StringBuilder formatted) {
+        int length = definition.length();
+        int[][] matches = this.matches(definition);
+        int[] matchLength = matches[0];
+        int[] matchTerm = matches[1];
+
+        // Copy the text, replacing the chosen matches with links
+        TermRegistry registry = this.terms.registry();
+        int position = 0;
+        while (position < length) {
+            if (matchLength[position] > 0) {
+                int ordinal = matchTerm[position];
+                formatted.append(Glossary.LINK_START)
+                        .append(registry.href(ordinal))
+                        .append(Glossary.LINK_MIDDLE)
+                        .append(this.terms.term(ordinal))
+                        .append(Glossary.LINK_END);
+                position += matchLength[position];
+            } else {
+                formatted.append(definition.charAt(position));
+                position++;
+            }
+        }
+    }
+
+    /**
+     * Appends the given definition to {@code page} as UTF-8, replacing every
+     * linked term with an HTML link to its page.
+     *
+     * @param definition
+     *            The input definition text.
+     * @param page
+     *            The PageBuffer to append the linked text to.
+     */
+    public void link(String definition, PageBuffer page) {
+        int length = definition.length();
+        int[][] matches = this.matches(definition);
+        int[] matchLength = matches[0];
+        int[] matchTerm = matches[1];
+
+        // Copy the text between matches in runs, replacing matches with the
+        // shared links
+        int copied = 0;
+        int position = 0;
+        while (position < length) {
+            if (matchLength[position] > 0) {
+                page.appendUtf8(definition, copied, position);
+                page.append(this.linkFragment(matchTerm[position]));
+                position += matchLength[position];
+                copied = position;
+            } else {
+                position++;
+            }
+        }
+        page.appendUtf8(definition, copied, length);
+    }
+
+    /**
+     * Returns the given definition with every linked term replaced by an HTML
+     * link to its page.
+     *
+     * @param definition
+     *            The input definition text.
+     * @return The definition text with references to other terms as HTML links.
+     */
+    public String link(String definition) {
+        StringBuilder formatted = new StringBuilder(definition.length());
+        this.link(definition, formatted);
+        return formatted.toString();
+    }
+
+}
@@ -0,0 +1,202 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+
+/**
+ * The file name of the page of every term in a {@link TermIndex}, assigned
+ * once per index and looked up by ordinal. A file name keeps the ASCII
+ * letters, digits and '-' of its term, and '.' anywhere but first; every
+ * other character is escaped as '_' followed by the two hex digits of each
+ * of its UTF-8 bytes, so spaces, slashes and other characters that would
+ * break a path or a URL never reach one, and distinct terms never escape to
+ * the same name. Names that would clash with the index and search pages or
+ * with a reserved device name have their first character escaped, and very
+ * long names are cut short. Names that still coincide ignoring case, as
+ * they would on a case-insensitive file system, are told apart by a "~2",
+ * "~3" ... suffix, in the order of the terms, so the layout only depends on
+ * the terms. A file name needs no escaping in a URL or in HTML, so it is
+ * also the href of the page. The registry is immutable and can be shared
+ * freely between threads.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public final class TermRegistry {
+
+    /**
+     * Suffix of the file name of every term page.
+     */
+    public static final String SUFFIX = ".html";
+
+    /**
+     * Longest file name, in characters, before its suffixes.
+     */
+    private static final int MAX_NAME_LENGTH = 200;
+
+    /**
+     * The digits of escaped bytes.
+     */
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF"
+            .toCharArray();
+
+    /**
+     * Lower-case names, without suffix, that other files of the site or the
+     * file system already use.
+     */
+    private static final HashSet<String> RESERVED = new HashSet<>(
+            Arrays.asList("index", "search", "con", "prn", "aux", "nul",
+                    "com1", "com2", "com3", "com4", "com5", "com6", "com7",
+                    "com8", "com9", "lpt1", "lpt2", "lpt3", "lpt4", "lpt5",
+                    "lpt6", "lpt7", "lpt8", "lpt9"));
+
+    /**
+     * The file name of the page of each term, by ordinal.
+     */
+    private final String[] fileNames;
+
+    /**
+     * The ordinal of each term, by the lower-case file name of its page.
+     */
+    private final HashMap<String, Integer> ordinals;
+
+    /**
+     * Assigns a file name to the page of every term of the given index.
+     *
+     * @param terms
+     *            The index of terms in the glossary.
+     */
+    public TermRegistry(TermIndex terms) {
+        this.fileNames = new String[terms.size()];
+        this.ordinals = new HashMap<>(2 * terms.size());
+        HashMap<String, Integer> uses = new HashMap<>();
+        for (int i = 0; i < this.fileNames.length; i++) {
+            // Number the names that coincide ignoring case, in order
+            String name = safeName(terms.term(i));
+            int use = uses.merge(name.toLowerCase(Locale.ROOT), 1,
+                    Integer::sum);
+            if (use > 1) {
+                name = name + "~" + use;
+            }
+            this.fileNames[i] = name + SUFFIX;
+            this.ordinals.put(this.fileNames[i].toLowerCase(Locale.ROOT), i);
+        }
+    }
+
+    /**
+     * Returns the escaped name of the page of a term, without the suffix and
+     * before names that coincide ignoring case are told apart. Distinct terms
+     * short enough not to be cut have distinct names.
+     *
+     * @param term
+     *            The term.
+     * @return The escaped name.
+     */
+    public static String safeName(String term) {
+        StringBuilder name = new StringBuilder(term.length() + 8);
+        for (byte b : term.getBytes(StandardCharsets.UTF_8)) {
+            if (name.length() >= MAX_NAME_LENGTH) {
+                break;
+            }
+            if (isSafe(b, name.length() == 0)) {
+                name.append((char) b);
+            } else {
+                escape(b, name);
+            }
+        }
+
+        // Keep clear of the names other files use; device names are
+        // reserved whatever follows a dot
+        String stem = name.toString().toLowerCase(Locale.ROOT);
+        if (stem.indexOf('.') >= 0) {
+            stem = stem.substring(0, stem.indexOf('.'));
+        }
+        if (name.length() == 0) {
+            name.append('_');
+        } else if (RESERVED.contains(stem) || stem.startsWith("index-")) {
+            byte first = (byte) name.charAt(0);
+            name.deleteCharAt(0);
+            StringBuilder escaped = new StringBuilder();
+            escape(first, escaped);
+            name.insert(0, escaped);
+        }
+        return name.toString();
+    }
+
+    /**
+     * Reports whether a byte of a term is kept as is in the name of its page.
+     *
+     * @param b
+     *            The byte.
+     * @param first
+     *            Whether the byte starts the name.
+     * @return Whether the byte is kept.
+     */
+    private static boolean isSafe(byte b, boolean first) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z')
+                || (b >= '0' && b <= '9') || b == '-' || (b == '.' && !first);
+    }
+
+    /**
+     * Appends a byte escaped as '_' and two hex digits.
+     *
+     * @param b
+     *            The byte.
+     * @param name
+     *            The name to append to.
+     */
+    private static void escape(byte b, StringBuilder name) {
+        name.append('_').append(HEX_DIGITS[(b >> 4) & 0xF])
+                .append(HEX_DIGITS[b & 0xF]);
+    }
+
+    /**
+     * Returns the number of terms in the registry.
+     *
+     * @return The number of terms.
+     */
+    public int size() {
+        return this.fileNames.length;
+    }
+
+    /**
+     * Returns the file name of the page of the term with the given ordinal.
+     *
+     * @param ordinal
+     *            The ordinal of the term.
+     * @return The file name, such as "hash_20table.html".
+     */
+    public String fileName(int ordinal) {
+        return this.fileNames[ordinal];
+    }
+
+    /**
+     * Returns the href of the page of the term with the given ordinal, from
+     * any other page of the site.
+     *
+     * @param ordinal
+     *            The ordinal of the term.
+     * @return The href, which is the file name of the page.
+     */
+    public String href(int ordinal) {
+        return this.fileNames[ordinal];
+    }
+
+    /**
+     * Returns the ordinal of the term whose page has the given file name,
+     * ignoring case, or -1 if no term has a page by that name.
+     *
+     * @param fileName
+     *            The file name of the page.
+     * @return The ordinal of the term, or -1.
+     */
+    public int ordinal(String fileName) {
+        Integer ordinal = this.ordinals.get(fileName.toLowerCase(Locale.ROOT));
+        if (ordinal == null) {
+            return -1;
+        }
+        return ordinal;
+    }
+
+}
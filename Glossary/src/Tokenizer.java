@@ -0,0 +1,124 @@
+/**
+ * Splits text into tokens: maximal runs of word characters, and maximal runs
+ * of separator characters. Characters are classified through a precomputed
+ * bit set covering every {@code char} value, and tokens are reported as
+ * {@code [start, end)} offsets into the text, so tokenizing allocates
+ * nothing. A tokenizer is immutable and can be shared freely between threads.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public final class Tokenizer {
+
+    /**
+     * Receives the tokens of a text.
+     */
+    public interface TokenHandler {
+
+        /**
+         * Handles one token.
+         *
+         * @param start
+         *            The position of the first character of the token.
+         * @param end
+         *            The position just after the token.
+         * @param separator
+         *            Whether the token is a run of separators.
+         */
+        void token(int start, int end, boolean separator);
+
+    }
+
+    /**
+     * The characters that separate words in a definition.
+     */
+    public static final String SEPARATORS = ".,/!?();<>{}[]@#$%^&*| ";
+
+    /**
+     * Tokenizer for the separators used in definitions.
+     */
+    public static final Tokenizer DEFAULT = new Tokenizer(SEPARATORS);
+
+    /**
+     * One bit per {@code char} value, set for separators.
+     */
+    private final long[] separatorBits = new long[(Character.MAX_VALUE + 1)
+            / Long.SIZE];
+
+    /**
+     * Creates a tokenizer with the given separator characters.
+     *
+     * @param separators
+     *            The separator characters.
+     */
+    public Tokenizer(CharSequence separators) {
+        for (int i = 0; i < separators.length(); i++) {
+            char c = separators.charAt(i);
+            this.separatorBits[c >>> 6] |= 1L << c;
+        }
+    }
+
+    /**
+     * Reports whether the given character is a separator.
+     *
+     * @param c
+     *            The character.
+     * @return Whether the character is a separator.
+     */
+    public boolean isSeparator(char c) {
+        return (this.separatorBits[c >>> 6] & (1L << c)) != 0;
+    }
+
+    /**
+     * Returns the end of the token starting at the given position, i.e. the
+     * position just after the run of characters of the same kind.
+     *
+     * @param text
+     *            The text.
+     * @param start
+     *            The position of the first character of the token.
+     * @return The position just after the token.
+     */
+    public int tokenEnd(CharSequence text, int start) {
+        boolean separator = this.isSeparator(text.charAt(start));
+        int end = start + 1;
+        while (end < text.length()
+                && this.isSeparator(text.charAt(end)) == separator) {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Reports whether a token starts at the given position.
+     *
+     * @param text
+     *            The text.
+     * @param position
+     *            The position, at most the length of the text.
+     * @return Whether a token starts at the position.
+     */
+    public boolean startsToken(CharSequence text, int position) {
+        return position == 0 || position < text.length()
+                && this.isSeparator(text.charAt(position - 1)) != this
+                        .isSeparator(text.charAt(position));
+    }
+
+    /**
+     * Reports every token of the given text, from left to right.
+     *
+     * @param text
+     *            The text.
+     * @param handler
+     *            The handler receiving the tokens.
+     */
+    public void forEachToken(CharSequence text, TokenHandler handler) {
+        int start = 0;
+        while (start < text.length()) {
+            int end = this.tokenEnd(text, start);
+            handler.token(start, end, this.isSeparator(text.charAt(start)));
+            start = end;
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Program to test the BuildManifest class.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public class BuildManifestTest {
+
+    /**
+     * Folder for manifest files.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    // Test case 1: Missing manifest
+    public void readTest1() throws IOException {
+        File file = new File(this.folder.getRoot(), BuildManifest.FILE_NAME);
+        assertNull(BuildManifest.read(file.toPath()));
+    }
+
+    @Test
+    // Test case 2: Written manifest reads back the same hashes
+    public void readTest2() throws IOException {
+        TermIndex terms = new TermIndex(
+                new String[] { "hash table", "Book", "term" });
+        long[] definitionHashes = { -1L, 0L, 42L };
+        long[] linkHashes = { 7L, Long.MIN_VALUE, 3L };
+        File file = new File(this.folder.getRoot(), BuildManifest.FILE_NAME);
+        new BuildManifest(terms, definitionHashes, linkHashes, "letter")
+                .write(file.toPath());
+
+        BuildManifest manifest = BuildManifest.read(file.toPath());
+        assertEquals("letter", manifest.indexLayout());
+        assertTrue(manifest.hasSameTerms(terms));
+        assertTrue(manifest.matches("Book", -1L, 7L));
+        assertTrue(manifest.matches("hash table", 0L, Long.MIN_VALUE));
+        assertFalse(manifest.matches("term", 42L, 4L));
+        assertFalse(manifest.matches("word", 0L, 0L));
+    }
+
+    @Test
+    // Test case 3: Link hash depends on the linked spans only
+    public void hashTest1() {
+        TermLinker linker = new TermIndex(new String[] { "term" }).linker();
+        long[] first = new long[2];
+        long[] second = new long[2];
+        BuildManifest.hash(linker, "a term here", first);
+        BuildManifest.hash(linker, "a term there", second);
+        assertNotEquals(first[0], second[0]);
+        assertEquals(first[1], second[1]);
+        BuildManifest.hash(linker, "a word here", second);
+        assertNotEquals(first[1], second[1]);
+    }
+
+    @Test
+    // Test case 4: A manifest is only read back in the order it records
+    public void readTest3() throws IOException {
+        TermCollator english = TermCollator.forLocale(Locale.ENGLISH);
+        TermIndex terms = new TermIndex(
+                new String[] { "zeta", "\u00e9clair", "apple", "Epsilon" },
+                english);
+        File file = new File(this.folder.getRoot(), BuildManifest.FILE_NAME);
+        new BuildManifest(terms, new long[4], new long[4], "none")
+                .write(file.toPath());
+
+        BuildManifest manifest = BuildManifest.read(file.toPath(),
+                TermCollator.parse(english.toString()));
+        assertTrue(manifest.hasSameTerms(terms));
+        assertNull(BuildManifest.read(file.toPath()));
+    }
+
+}
@@ -0,0 +1,131 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Program to test the BuildMetrics class.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public class BuildMetricsTest {
+
+    /**
+     * Folder for recordings.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    // Test case 1: Stages are kept once each, in the order first asked for
+    public void stageTest1() {
+        BuildMetrics metrics = new BuildMetrics();
+        BuildMetrics.Stage scan = metrics.stage("scan");
+        metrics.stage("render");
+        assertSame(scan, metrics.stage("scan"));
+        assertEquals(2, metrics.stages().size());
+        assertEquals("render", metrics.stages().get(1).name());
+    }
+
+    @Test
+    // Test case 2: Items, bytes and wall time add up across runs
+    public void stageTest2() throws InterruptedException {
+        BuildMetrics.Stage stage = new BuildMetrics().stage("scan");
+        stage.begin();
+        TimeUnit.MILLISECONDS.sleep(5);
+        stage.add(3, 100);
+        stage.end();
+        long wall = stage.wallNanos();
+        assertTrue(wall >= TimeUnit.MILLISECONDS.toNanos(5));
+
+        stage.begin();
+        stage.add(2, 50);
+        stage.end();
+        assertEquals(5, stage.items());
+        assertEquals(150, stage.bytes());
+        assertTrue(stage.wallNanos() >= wall);
+        assertEquals(0, stage.timedItems());
+    }
+
+    @Test
+    // Test case 3: Percentiles bound the time of timed items
+    public void recordTest1() throws InterruptedException {
+        BuildMetrics.Stage stage = new BuildMetrics().stage("render");
+        for (int i = 0; i < 9; i++) {
+            stage.record(System.nanoTime(), BuildMetrics.allocatedBytes(), 10);
+        }
+        long start = System.nanoTime();
+        TimeUnit.MILLISECONDS.sleep(2);
+        stage.record(start, BuildMetrics.allocatedBytes(), 10);
+
+        assertEquals(10, stage.timedItems());
+        assertEquals(100, stage.bytes());
+        assertTrue(stage.maxLatency() >= TimeUnit.MILLISECONDS.toNanos(2));
+        assertTrue(stage.latency(0.5) < TimeUnit.MILLISECONDS.toNanos(1));
+        assertEquals(stage.maxLatency(), stage.latency(1.0));
+    }
+
+    @Test
+    // Test case 4: The report lists every stage with its measurements
+    public void toJsonTest1() {
+        BuildMetrics metrics = new BuildMetrics();
+        metrics.stage("scan").add(4, 40);
+        metrics.stage("write").record(System.nanoTime(),
+                BuildMetrics.allocatedBytes(), 8);
+        String json = metrics.toJson();
+        assertTrue(json.startsWith("{\n  \"stages\": [\n"));
+        assertTrue(json.contains("{\"name\": \"scan\", \"wallMillis\": 0.000,"
+                + " \"items\": 4, \"bytes\": 40,"));
+        assertTrue(json.contains("\"latencyMicros\": {\"count\": 1,"));
+        assertEquals(1, json.split("latencyMicros").length - 1);
+        assertTrue(json.endsWith("  ]\n}\n"));
+    }
+
+    @Test
+    // Test case 5: Stage runs and timed items are recorded as Flight
+    // Recorder events
+    public void recordingTest1() throws IOException {
+        Path file = this.folder.newFile("build.jfr").toPath();
+        try (Recording recording = new Recording()) {
+            recording.enable("glossary.Stage").withThreshold(Duration.ZERO);
+            recording.enable("glossary.Item").withThreshold(Duration.ZERO);
+            recording.start();
+            BuildMetrics.Stage stage = new BuildMetrics().stage("render");
+            stage.begin();
+            stage.record(System.nanoTime(), BuildMetrics.allocatedBytes(), 7);
+            stage.add(2, 20);
+            stage.end();
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        assertEquals(2, events.size());
+        for (RecordedEvent event : events) {
+            assertEquals("render", event.getString("stage"));
+            if (event.getEventType().getName().equals("glossary.Stage")) {
+                assertEquals(3, event.getLong("items"));
+                assertEquals(27, event.getLong("bytes"));
+            } else {
+                assertEquals("glossary.Item",
+                        event.getEventType().getName());
+                assertEquals(7, event.getLong("bytes"));
+            }
+        }
+    }
+
+}
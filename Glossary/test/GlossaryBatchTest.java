@@ -0,0 +1,112 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Program to test the GlossaryBatch class.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public class GlossaryBatchTest {
+
+    /**
+     * Folder for the manifests and sites.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Writes a manifest with the given lines.
+     *
+     * @param lines
+     *            The lines of the manifest.
+     * @return The manifest file.
+     * @throws IOException
+     *             if the manifest cannot be written
+     */
+    private Path manifest(String... lines) throws IOException {
+        Path manifest = this.folder.newFile().toPath();
+        Files.write(manifest, Arrays.asList(lines), StandardCharsets.UTF_8);
+        return manifest;
+    }
+
+    @Test
+    // Test case 1: Fields split on tabs, else spaces; comments skipped
+    public void readManifestTest1() throws IOException {
+        List<GlossaryBatch.Build> builds = GlossaryBatch.readManifest(
+                this.manifest("# product lines", "", "a.txt\tsite a",
+                        "  b.txt   site-b  "));
+        assertEquals(2, builds.size());
+        assertEquals("a.txt", builds.get(0).input());
+        assertEquals("site a", builds.get(0).output());
+        assertEquals("b.txt", builds.get(1).input());
+        assertEquals("site-b", builds.get(1).output());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    // Test case 2: A line without a folder is rejected
+    public void readManifestTest2() throws IOException {
+        GlossaryBatch.readManifest(this.manifest("a.txt site", "b.txt"));
+    }
+
+    @Test
+    // Test case 3: Every site matches a build of its own; failures are
+    // reported without stopping the others
+    public void runTest1() throws IOException {
+        String[] inputs = { "data/dictTest1.txt", "data/missing.txt",
+                "data/dictTest3.txt", "data/dictTest4.txt" };
+        List<GlossaryBatch.Build> builds = new ArrayList<>();
+        for (int i = 0; i < inputs.length; i++) {
+            builds.add(new GlossaryBatch.Build(inputs[i],
+                    new File(this.folder.getRoot(), "batch" + i).getPath()));
+        }
+        SimpleWriter log = new SimpleWriter1L(
+                this.folder.newFile("batch.log").getPath());
+        int failures;
+        try (GlossaryBatch batch = new GlossaryBatch(3,
+                TermCollator.CASE_INSENSITIVE,
+                output -> new SiteGenerator(output, 2), false)) {
+            failures = batch.run(builds, log);
+        }
+        log.close();
+        assertEquals(1, failures);
+
+        for (int i = 0; i < inputs.length; i++) {
+            if (i != 1) {
+                File expected = this.folder.newFolder("single" + i);
+                try (GlossaryFile glossary = GlossaryFile.open(inputs[i])) {
+                    new SiteGenerator(expected.getPath(), 2).generate(
+                            glossary.terms(), glossary::definition);
+                }
+                File site = new File(this.folder.getRoot(), "batch" + i);
+                String[] pages = expected.list();
+                assertTrue(pages.length > 1);
+                for (String page : pages) {
+                    assertArrayEquals(page,
+                            Files.readAllBytes(new File(expected, page)
+                                    .toPath()),
+                            Files.readAllBytes(new File(site, page).toPath()));
+                }
+                assertEquals(pages.length, site.list().length);
+            }
+        }
+    }
+
+}
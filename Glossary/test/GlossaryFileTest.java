@@ -0,0 +1,216 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import components.map.Map;
+import components.map.Map.Pair;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+
+/**
+ * Program to test the GlossaryFile class.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public class GlossaryFileTest {
+
+    /**
+     * Folder for generated glossary files.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Writes a glossary file with the given contents.
+     *
+     * @param contents
+     *            The contents of the file.
+     * @return The name of the file.
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    private String write(String contents) throws IOException {
+        File file = this.folder.newFile();
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        return file.getPath();
+    }
+
+    /**
+     * Scans a glossary file, in one pass or in chunks of the given size, and
+     * lists the entries found.
+     *
+     * @param fileName
+     *            The name of the glossary file.
+     * @param chunkSize
+     *            The size of a chunk, or 0 to scan in one pass.
+     * @return One line per entry, in the order they were reported.
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private static List<String> scan(String fileName, long chunkSize)
+            throws IOException {
+        List<String> records = new ArrayList<>();
+        GlossaryFile.RecordHandler handler = (term, offset,
+                length) -> records.add(term + " " + offset + " " + length);
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.READ)) {
+            if (chunkSize == 0) {
+                GlossaryFile.scan(channel, handler);
+            } else {
+                GlossaryFile.scanParallel(channel, chunkSize, handler);
+            }
+        }
+        return records;
+    }
+
+    @Test
+    // Test case 1: Same entries as buildDictionary
+    public void openTest1() throws IOException {
+        SimpleReader input = new SimpleReader1L("data/terms.txt");
+        Map<String, String> expected = Glossary.buildDictionary(input);
+        input.close();
+        try (GlossaryFile glossary = GlossaryFile.open("data/terms.txt")) {
+            assertEquals(expected.size(), glossary.terms().size());
+            for (Pair<String, String> pair : expected) {
+                assertEquals(pair.value(), glossary.definition(pair.key()));
+            }
+        }
+    }
+
+    @Test
+    // Test case 2: Empty file
+    public void openTest2() throws IOException {
+        try (GlossaryFile glossary = GlossaryFile.open("data/empty.txt")) {
+            assertEquals(0, glossary.terms().size());
+        }
+    }
+
+    @Test
+    // Test case 3: Windows line breaks, extra blank lines and no final newline
+    public void openTest3() throws IOException {
+        String name = this.write("\r\nbeta\r\nsecond\r\nletter\r\n\r\n\r\n"
+                + "alpha\r\nfirst letter");
+        try (GlossaryFile glossary = GlossaryFile.open(name)) {
+            assertEquals("alpha", glossary.terms().term(0));
+            assertEquals("beta", glossary.terms().term(1));
+            assertEquals("first letter", glossary.definition(0));
+            assertEquals("secondletter", glossary.definition("beta"));
+        }
+    }
+
+    @Test
+    // Test case 4: Multi-byte characters
+    public void openTest4() throws IOException {
+        String name = this.write("caf\u00e9\ncoffee, in French\n\nna\u00efve\nsimple\n");
+        try (GlossaryFile glossary = GlossaryFile.open(name)) {
+            assertEquals("coffee, in French", glossary.definition("caf\u00e9"));
+            assertEquals("simple", glossary.definition("na\u00efve"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    // Test case 5: A term defined twice is rejected
+    public void openTest5() throws IOException {
+        String name = this.write("term\none\n\nterm\ntwo\n");
+        GlossaryFile.open(name).close();
+    }
+
+    @Test
+    // Test case 6: Chunked scans of any size find the same entries
+    public void scanParallelTest1() throws IOException {
+        String[] names = { "data/terms.txt", this.write(
+                "\r\nbeta\r\n\r\nsecond\r\n\r\n\r\nalpha\r\nfirst letter"),
+            this.write("term\n\n\nword\n\nmore\n\n\n\nlast\n"),
+            this.write("one\ndefinition\n\ntwo\n") };
+        for (String name : names) {
+            List<String> expected = scan(name, 0);
+            for (int chunkSize = 1; chunkSize < 40; chunkSize++) {
+                assertEquals(name + " in chunks of " + chunkSize, expected,
+                        scan(name, chunkSize));
+            }
+        }
+    }
+
+    @Test
+    // Test case 7: A large file is scanned in parallel with the same result
+    public void openTest6() throws IOException {
+        StringBuilder text = new StringBuilder();
+        int count = 0;
+        while (text.length() < (9 << 20)) {
+            text.append("term").append(count).append("\nthe definition of ")
+                    .append(count).append("\nover two lines\n\n");
+            count++;
+        }
+        String name = this.write(text.toString());
+        try (GlossaryFile glossary = GlossaryFile.open(name)) {
+            assertEquals(count, glossary.terms().size());
+            assertEquals("the definition of 12345over two lines",
+                    glossary.definition("term12345"));
+        }
+        assertEquals(scan(name, 0), scan(name, 1 << 20));
+    }
+
+    @Test
+    // Test case 8: Chunked scans reject the same duplicate as a single pass
+    public void openTest7() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 300000; i++) {
+            text.append("term").append(i % 200000)
+                    .append("\na definition long enough to fill the file\n\n");
+        }
+        String name = this.write(text.toString());
+        try {
+            GlossaryFile.open(name).close();
+            fail("duplicate accepted");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Duplicate term: term0", e.getMessage());
+        }
+    }
+
+    @Test
+    // Test case 9: A file read into the heap keeps its definitions when it
+    // is rewritten, and reuses an index holding the same terms
+    public void readTest1() throws IOException {
+        String name = this.write("book\na printed work\n\nterm\na word\n");
+        try (GlossaryFile glossary = GlossaryFile.read(name,
+                TermCollator.CASE_INSENSITIVE)) {
+            Files.write(Paths.get(name), new byte[0]);
+            assertEquals(2, glossary.terms().size());
+            assertEquals("a printed work", glossary.definition("book"));
+            assertEquals("a word", glossary.definition("term"));
+
+            Files.write(Paths.get(name),
+                    "term\na word in a book\n\nbook\na work\n"
+                            .getBytes(StandardCharsets.UTF_8));
+            try (GlossaryFile same = GlossaryFile.read(name,
+                    glossary.terms())) {
+                assertSame(glossary.terms(), same.terms());
+                assertEquals("a word in a book", same.definition("term"));
+            }
+            Files.write(Paths.get(name), "book\na work\n\nword\na term\n"
+                    .getBytes(StandardCharsets.UTF_8));
+            try (GlossaryFile other = GlossaryFile.read(name,
+                    glossary.terms())) {
+                assertNotSame(glossary.terms(), other.terms());
+                assertEquals("a term", other.definition("word"));
+            }
+        }
+    }
+
+}
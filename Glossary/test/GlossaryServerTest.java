@@ -0,0 +1,173 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Program to test the GlossaryServer class.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public class GlossaryServerTest {
+
+    /**
+     * Folder for the generated pages.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * The terms served.
+     */
+    private static final String[] NAMES = { "book", "glossary", "term" };
+
+    /**
+     * The definitions served.
+     */
+    private static final String[] DEFINITIONS = { "a printed work",
+            "a book listing terms", "a word in a glossary" };
+
+    /**
+     * Opens a request to the given server.
+     *
+     * @param server
+     *            The server.
+     * @param path
+     *            The path of the page.
+     * @return The connection.
+     * @throws IOException
+     *             if the address is malformed
+     */
+    private static HttpURLConnection request(GlossaryServer server,
+            String path) throws IOException {
+        return (HttpURLConnection) new URL(
+                "http://localhost:" + server.port() + path).openConnection();
+    }
+
+    /**
+     * Reads the body of a response.
+     *
+     * @param connection
+     *            The connection.
+     * @return The body.
+     * @throws IOException
+     *             if the body cannot be read
+     */
+    private static byte[] body(HttpURLConnection connection)
+            throws IOException {
+        try (InputStream in = connection.getInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    @Test
+    // Test case 1: Served pages match the generated ones
+    public void serveTest1() throws IOException {
+        TermIndex terms = new TermIndex(NAMES);
+        File site = this.folder.newFolder("site");
+        new SiteGenerator(site.getPath(), 2, IndexSharding.BY_LETTER, true)
+                .generate(terms, i -> DEFINITIONS[i]);
+        try (GlossaryServer server = new GlossaryServer(terms,
+                i -> DEFINITIONS[i], IndexSharding.BY_LETTER, true, 1 << 20,
+                0, 2)) {
+            server.start();
+            String[] pages = { "index.html", "index-b.html", "book.html",
+                    "glossary.html", "term.html" };
+            for (String page : pages) {
+                HttpURLConnection connection = request(server, "/" + page);
+                assertEquals(page, 200, connection.getResponseCode());
+                assertArrayEquals(page,
+                        Files.readAllBytes(new File(site, page).toPath()),
+                        body(connection));
+            }
+            assertArrayEquals(server.render("index.html"),
+                    body(request(server, "/")));
+        }
+    }
+
+    @Test
+    // Test case 2: A revalidated page is answered without a body
+    public void serveTest2() throws IOException {
+        try (GlossaryServer server = new GlossaryServer(new TermIndex(NAMES),
+                i -> DEFINITIONS[i], IndexSharding.NONE, false, 1 << 20, 0,
+                2)) {
+            server.start();
+            HttpURLConnection first = request(server, "/book.html");
+            body(first);
+            String etag = first.getHeaderField("ETag");
+            assertNotNull(etag);
+
+            HttpURLConnection second = request(server, "/book.html");
+            second.setRequestProperty("If-None-Match", etag);
+            assertEquals(304, second.getResponseCode());
+            assertEquals(1, server.cache().misses());
+            assertEquals(1, server.cache().hits());
+        }
+    }
+
+    @Test
+    // Test case 3: Unknown pages and methods are refused
+    public void serveTest3() throws IOException {
+        try (GlossaryServer server = new GlossaryServer(new TermIndex(NAMES),
+                i -> DEFINITIONS[i], IndexSharding.NONE, false, 1 << 20, 0,
+                2)) {
+            server.start();
+            assertEquals(404,
+                    request(server, "/missing.html").getResponseCode());
+            assertEquals(404, request(server, "/book.txt").getResponseCode());
+            HttpURLConnection post = request(server, "/book.html");
+            post.setRequestMethod("POST");
+            assertEquals(405, post.getResponseCode());
+        }
+    }
+
+    @Test
+    // Test case 4: Pages are only served under their exact names
+    public void serveTest4() throws IOException {
+        try (GlossaryServer server = new GlossaryServer(
+                new TermIndex(new String[] { "Book", "book", "term" }),
+                i -> DEFINITIONS[i], IndexSharding.NONE, false, 1 << 20, 0,
+                2)) {
+            server.start();
+            assertEquals(200, request(server, "/Book.html").getResponseCode());
+            assertEquals(200,
+                    request(server, "/book~2.html").getResponseCode());
+            assertEquals(200, request(server, "/term.html").getResponseCode());
+            assertEquals(404, request(server, "/BOOK.html").getResponseCode());
+            assertEquals(404, request(server, "/Term.html").getResponseCode());
+            assertEquals(404, request(server, "/term.HTML").getResponseCode());
+            assertEquals(3, server.cache().count());
+        }
+    }
+
+    @Test
+    // Test case 5: Lists of entity tags, weak tags and "*" revalidate a page
+    public void matchesTest1() {
+        String etag = "\"1f-abc\"";
+        assertTrue(GlossaryServer.matches(Arrays.asList(etag), etag));
+        assertTrue(GlossaryServer.matches(
+                Arrays.asList("\"other\", W/" + etag), etag));
+        assertTrue(GlossaryServer.matches(
+                Arrays.asList("\"other\"", " " + etag + " "), etag));
+        assertTrue(GlossaryServer.matches(Arrays.asList("*"), etag));
+        assertFalse(GlossaryServer.matches(Arrays.asList("\"other\""),
+                etag));
+        assertFalse(GlossaryServer.matches(Arrays.asList("1f-abc"), etag));
+        assertFalse(GlossaryServer.matches(null, etag));
+    }
+
+}
@@ -0,0 +1,179 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Program to test the GlossarySnapshot class.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public class GlossarySnapshotTest {
+
+    /**
+     * Folder for glossary and snapshot files.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Writes a glossary source file with the given contents.
+     *
+     * @param contents
+     *            The contents of the file.
+     * @return The name of the file.
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    private String source(String contents) throws IOException {
+        File file = this.folder.newFile();
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        return file.getPath();
+    }
+
+    /**
+     * Writes the snapshot of the given glossary source file.
+     *
+     * @param sourceFileName
+     *            The name of the glossary source file.
+     * @return The snapshot file.
+     * @throws IOException
+     *             if a file cannot be read or written
+     */
+    private static Path snapshot(String sourceFileName) throws IOException {
+        Path snapshot = GlossarySnapshot.snapshotFile(sourceFileName);
+        try (GlossaryFile glossary = GlossaryFile.open(sourceFileName)) {
+            GlossarySnapshot.write(snapshot, glossary.terms(),
+                    glossary::definition);
+        }
+        return snapshot;
+    }
+
+    @Test
+    // Test case 1: Same terms and definitions as the source
+    public void openTest1() throws IOException {
+        Path file = this.folder.getRoot().toPath().resolve("terms.snapshot");
+        try (GlossaryFile source = GlossaryFile.open("data/terms.txt")) {
+            GlossarySnapshot.write(file, source.terms(), source::definition);
+            try (GlossarySnapshot snapshot = GlossarySnapshot.open(file)) {
+                assertEquals(source.terms().size(), snapshot.size());
+                for (int i = 0; i < source.terms().size(); i++) {
+                    assertEquals(source.terms().term(i),
+                            snapshot.terms().term(i));
+                    assertEquals(source.definition(i),
+                            snapshot.definition(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    // Test case 2: Terms are found without decoding the glossary
+    public void findTest1() throws IOException {
+        String source = this.source("Book\nupper\n\nbook\nlower\n\n"
+                + "caf\u00e9\naccent\n\nalpha\nfirst\n\nzeta\nlast\n");
+        try (GlossarySnapshot snapshot = GlossarySnapshot
+                .open(snapshot(source))) {
+            assertEquals("upper", snapshot.definition("Book"));
+            assertEquals("lower", snapshot.definition("book"));
+            assertEquals("accent", snapshot.definition("caf\u00e9"));
+            assertEquals(0, snapshot.find("alpha"));
+            assertEquals(4, snapshot.find("zeta"));
+            assertEquals(-1, snapshot.find("BOOK"));
+            assertEquals(-1, snapshot.find("beta"));
+        }
+    }
+
+    @Test
+    // Test case 3: Empty glossary
+    public void openTest2() throws IOException {
+        try (GlossarySnapshot snapshot = GlossarySnapshot
+                .open(snapshot(this.source("")))) {
+            assertEquals(0, snapshot.size());
+            assertEquals(0, snapshot.terms().size());
+            assertEquals(-1, snapshot.find("term"));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    // Test case 4: Files that are not snapshots are rejected
+    public void openTest3() throws IOException {
+        Path file = this.folder.newFile().toPath();
+        Files.write(file,
+                "GLOSNAP1 not really".getBytes(StandardCharsets.UTF_8));
+        GlossarySnapshot.open(file).close();
+    }
+
+    @Test
+    // Test case 5: The snapshot is used only while newer than the source
+    public void openNewestTest1() throws IOException {
+        String source = this.source("term\ndefinition\n");
+        Path snapshot = snapshot(source);
+        Files.setLastModifiedTime(Paths.get(source), FileTime.fromMillis(1000));
+        Files.setLastModifiedTime(snapshot, FileTime.fromMillis(2000));
+        try (GlossarySource glossary = GlossarySnapshot.openNewest(source)) {
+            assertTrue(glossary instanceof GlossarySnapshot);
+            assertEquals("definition", glossary.definition(0));
+        }
+
+        // A newer source, or a damaged snapshot, falls back to the source
+        Files.setLastModifiedTime(Paths.get(source), FileTime.fromMillis(3000));
+        try (GlossarySource glossary = GlossarySnapshot.openNewest(source)) {
+            assertTrue(glossary instanceof GlossaryFile);
+        }
+        Files.write(snapshot, new byte[3]);
+        Files.setLastModifiedTime(snapshot, FileTime.fromMillis(4000));
+        try (GlossarySource glossary = GlossarySnapshot.openNewest(source)) {
+            assertTrue(glossary instanceof GlossaryFile);
+        }
+    }
+
+    @Test
+    // Test case 6: Offsets out of order or outside the file are rejected,
+    // and the source is used instead
+    public void openTest4() throws IOException {
+        String source = this.source("alpha\nfirst\n\nbeta\nsecond\n");
+        Path snapshot = snapshot(source);
+        byte[] valid = Files.readAllBytes(snapshot);
+        int[][] damages = {
+                // Second term offset before the first
+                { 12 + 4, 0 },
+                // Last definition offset past the end of the file
+                { 12 + 4 * 5, 1 << 20 },
+                // Terms ending one byte before the definitions start
+                { 12 + 4 * 2, 36 + 9 - 1 } };
+        for (int[] damage : damages) {
+            byte[] bytes = valid.clone();
+            ByteBuffer.wrap(bytes).putInt(damage[0], damage[1]);
+            Files.write(snapshot, bytes);
+            Files.setLastModifiedTime(Paths.get(source),
+                    FileTime.fromMillis(1000));
+            Files.setLastModifiedTime(snapshot, FileTime.fromMillis(2000));
+            try {
+                GlossarySnapshot.open(snapshot).close();
+                fail("Damaged offset accepted at " + damage[0]);
+            } catch (IOException e) {
+                // Expected
+            }
+            try (GlossarySource glossary = GlossarySnapshot
+                    .openNewest(source)) {
+                assertTrue(glossary instanceof GlossaryFile);
+                assertEquals("second", glossary.definition(1));
+            }
+        }
+    }
+
+}
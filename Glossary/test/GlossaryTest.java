@@ -1,3 +1,4 @@
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -175,6 +176,45 @@ public class GlossaryTest {
         assertEquals(expected, sorted);
     }
 
+    @Test
+    // Test case 4: Mixed case terms keep the compareToIgnoreCase order
+    public void buildSortedQueueTest4() {
+        Map<String, String> map = new Map1L<>();
+        map.add("Zebra", "an animal");
+        map.add("apple", "a fruit");
+        map.add("Banana", "another fruit");
+        map.add("cherry", "a small fruit");
+        Queue<String> sorted = Glossary.buildSortedQueue(map);
+        Queue<String> expected = new Queue1L<>();
+        expected.enqueue("apple");
+        expected.enqueue("Banana");
+        expected.enqueue("cherry");
+        expected.enqueue("Zebra");
+        assertEquals(expected, sorted);
+        assertEquals(4, map.size());
+    }
+
+    /*
+     * sortTerms tests
+     */
+    @Test
+    // Test case 1: Empty array
+    public void sortTermsTest1() {
+        String[] terms = {};
+        Glossary.sortTerms(terms);
+        assertEquals(0, terms.length);
+    }
+
+    @Test
+    // Test case 2: Mixed case terms
+    public void sortTermsTest2() {
+        String[] terms = { "word", "Book", "glossary", "Definition", "term" };
+        Glossary.sortTerms(terms);
+        String[] expected = { "Book", "Definition", "glossary", "term",
+                "word" };
+        assertArrayEquals(expected, terms);
+    }
+
     @Test
     // Test case 1: Empty queue
     public void createIndexHTMLTest1() {
@@ -365,6 +405,33 @@ public class GlossaryTest {
         assertEquals(definition, result);
     }
 
+    @Test
+    // Test case 4: Check if the method links terms found in a term index
+    public void getDefinitionWithReferencesTest4() {
+        String definition = "term1 is related to term2, not term3";
+        TermIndex terms = new TermIndex(new String[] { "term1", "term2" });
+        // Call to the method being tested
+        String result = Glossary.getDefinitionWithReferences(definition, terms);
+        // Expected output
+        String expected = "<a href=\"term1.html\">term1</a> is related to <a "
+                + "href=\"term2.html\">term2</a>, not term3";
+        assertEquals(expected, result);
+    }
+
+    @Test
+    // Test case 5: Check if terms differing only in case link to the pages
+    // the registry gives them
+    public void getDefinitionWithReferencesTest5() {
+        String definition = "Book, book";
+        Set<String> terms = new Set1L<>();
+        terms.add("Book");
+        terms.add("book");
+        String result = Glossary.getDefinitionWithReferences(definition, terms);
+        String expected = "<a href=\"Book.html\">Book</a>, "
+                + "<a href=\"book~2.html\">book</a>";
+        assertEquals(expected, result);
+    }
+
     /*
      * Test cases for createTermHTML method These test cases check if the method
      * generates the correct HTML file for the given term and its definition
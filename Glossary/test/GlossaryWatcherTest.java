@@ -0,0 +1,149 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Program to test the GlossaryWatcher class.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public class GlossaryWatcherTest {
+
+    /**
+     * Folder for the glossary and the generated pages.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Writes a glossary file.
+     *
+     * @param file
+     *            The file.
+     * @param text
+     *            The content of the file.
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    private static void save(File file, String text) throws IOException {
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads a generated page.
+     *
+     * @param page
+     *            The page.
+     * @return The content of the page.
+     * @throws IOException
+     *             if the page cannot be read
+     */
+    private static String read(File page) throws IOException {
+        return new String(Files.readAllBytes(page.toPath()),
+                StandardCharsets.UTF_8);
+    }
+
+    @Test
+    // Test case 1: Rebuilding writes only the pages whose content changed
+    public void rebuildTest1() throws IOException {
+        File source = this.folder.newFile("glossary.txt");
+        File site = this.folder.newFolder("site");
+        save(source, "book\na printed work\n\nterm\na word\n");
+        SimpleWriter log = new SimpleWriter1L(
+                this.folder.newFile("watch.log").getPath());
+        try (GlossaryWatcher watcher = new GlossaryWatcher(source.getPath(),
+                new SiteGenerator(site.getPath(), 2), log)) {
+            assertEquals(2, watcher.rebuild());
+            assertEquals(0, watcher.rebuild());
+
+            save(source, "book\na printed work\n\nterm\na word in a book\n");
+            assertEquals(1, watcher.rebuild());
+            assertTrue(read(new File(site, "term.html"))
+                    .contains("<a href=\"book.html\">book</a>"));
+        }
+        log.close();
+    }
+
+    @Test
+    // Test case 2: Adding a term updates the index and removing it deletes
+    // its page
+    public void rebuildTest2() throws IOException {
+        File source = this.folder.newFile("glossary.txt");
+        File site = this.folder.newFolder("site");
+        save(source, "book\na printed work\n");
+        SimpleWriter log = new SimpleWriter1L(
+                this.folder.newFile("watch.log").getPath());
+        try (GlossaryWatcher watcher = new GlossaryWatcher(source.getPath(),
+                new SiteGenerator(site.getPath(), 2), log)) {
+            watcher.rebuild();
+            save(source, "book\na printed work\n\nterm\na word\n");
+            assertEquals(1, watcher.rebuild());
+            assertTrue(read(new File(site, "index.html"))
+                    .contains("term.html"));
+
+            save(source, "term\na word\n");
+            watcher.rebuild();
+            assertFalse(new File(site, "book.html").exists());
+        }
+        log.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    // Test case 3: A save defining a term twice is rejected
+    public void rebuildTest3() throws IOException {
+        File source = this.folder.newFile("glossary.txt");
+        File site = this.folder.newFolder("site");
+        save(source, "book\na printed work\n\nbook\na bound volume\n");
+        SimpleWriter log = new SimpleWriter1L(
+                this.folder.newFile("watch.log").getPath());
+        try (GlossaryWatcher watcher = new GlossaryWatcher(source.getPath(),
+                new SiteGenerator(site.getPath(), 2), log)) {
+            watcher.rebuild();
+        } finally {
+            log.close();
+        }
+    }
+
+    @Test(timeout = 30000)
+    // Test case 4: Saving the watched file updates the site
+    public void runTest1() throws IOException, InterruptedException {
+        File source = this.folder.newFile("glossary.txt");
+        File site = this.folder.newFolder("site");
+        save(source, "book\na printed work\n");
+        SimpleWriter log = new SimpleWriter1L(
+                this.folder.newFile("watch.log").getPath());
+        GlossaryWatcher watcher = new GlossaryWatcher(source.getPath(),
+                new SiteGenerator(site.getPath(), 2), log);
+        Thread thread = new Thread(watcher::run);
+        thread.start();
+
+        // Wait for the first build, then save a new definition
+        File page = new File(site, "book.html");
+        while (!page.exists()) {
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+        save(source, "book\na bound volume\n");
+        while (!read(page).contains("a bound volume")) {
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+
+        watcher.close();
+        thread.join();
+        log.close();
+    }
+
+}
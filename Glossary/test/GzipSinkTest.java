@@ -0,0 +1,106 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Program to test the GzipSink class.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public class GzipSinkTest {
+
+    /**
+     * Folder for the pages.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Reads a gzip-compressed file.
+     *
+     * @param file
+     *            The file.
+     * @return The decompressed bytes.
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private static byte[] gunzip(Path file) throws IOException {
+        ByteArrayOutputStream inflated = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            byte[] chunk = new byte[4096];
+            int read = in.read(chunk);
+            while (read >= 0) {
+                inflated.write(chunk, 0, read);
+                read = in.read(chunk);
+            }
+        }
+        return inflated.toByteArray();
+    }
+
+    @Test
+    // Test case 1: Every page is written with its compressed copy
+    public void writeTest1() throws IOException {
+        Path site = this.folder.newFolder("site").toPath();
+        PageBuffer page = new PageBuffer();
+        try (GzipSink sink = new GzipSink(new FolderSink(site))) {
+            page.appendUtf8("<html>first</html>");
+            sink.write("a.html", page);
+            page.clear();
+            page.appendUtf8("<html>second</html>");
+            sink.write("b.html", page);
+        }
+        assertEquals("<html>first</html>", new String(
+                Files.readAllBytes(site.resolve("a.html")),
+                StandardCharsets.UTF_8));
+        assertArrayEquals(Files.readAllBytes(site.resolve("a.html")),
+                gunzip(site.resolve("a.html.gz")));
+        assertArrayEquals(Files.readAllBytes(site.resolve("b.html")),
+                gunzip(site.resolve("b.html.gz")));
+    }
+
+    @Test
+    // Test case 2: Pages written from several threads at once
+    public void writeTest2() throws Exception {
+        Path site = this.folder.newFolder("parallel").toPath();
+        try (GzipSink sink = new GzipSink(new FolderSink(site))) {
+            Thread[] threads = new Thread[4];
+            for (int t = 0; t < threads.length; t++) {
+                int first = t * 50;
+                threads[t] = new Thread(() -> {
+                    PageBuffer page = new PageBuffer();
+                    for (int i = first; i < first + 50; i++) {
+                        page.clear();
+                        page.appendUtf8("page " + i);
+                        try {
+                            sink.write(i + ".html", page);
+                        } catch (IOException e) {
+                            throw new AssertionError(e);
+                        }
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+        for (int i = 0; i < 200; i++) {
+            assertEquals("page " + i,
+                    new String(gunzip(site.resolve(i + ".html.gz")),
+                            StandardCharsets.UTF_8));
+        }
+    }
+
+}
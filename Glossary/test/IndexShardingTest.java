@@ -0,0 +1,82 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Program to test the IndexSharding class.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public class IndexShardingTest {
+
+    /**
+     * Terms starting with a few different characters.
+     */
+    private static final TermIndex TERMS = new TermIndex(new String[] {
+            "apple", "Banana", "berry", "Apricot", "cherry", "1st", "bean",
+            "\u00e9clair" });
+
+    /**
+     * Returns the names of the given shards, separated by spaces.
+     *
+     * @param shards
+     *            The shards.
+     * @return The names of the shards.
+     */
+    private static String names(IndexSharding.Shard[] shards) {
+        StringBuilder names = new StringBuilder();
+        for (IndexSharding.Shard shard : shards) {
+            if (names.length() > 0) {
+                names.append(' ');
+            }
+            names.append(shard.name());
+        }
+        return names.toString();
+    }
+
+    @Test
+    // Test case 1: One shard per leading character, ignoring case
+    public void splitTest1() {
+        IndexSharding.Shard[] shards = IndexSharding.BY_LETTER.split(TERMS);
+        assertEquals("index-1.html index-a.html index-b.html index-c.html "
+                + "index-u00e9.html", names(shards));
+        assertEquals("B", shards[2].label());
+        assertEquals(3, shards[2].end() - shards[2].start());
+        assertEquals(TERMS.size(), shards[4].end());
+    }
+
+    @Test
+    // Test case 2: Fixed number of terms per shard
+    public void splitTest2() {
+        IndexSharding.Shard[] shards = IndexSharding.byPageSize(3)
+                .split(TERMS);
+        assertEquals("index-1.html index-2.html index-3.html", names(shards));
+        assertEquals("1st - Apricot", shards[0].label());
+        assertEquals(6, shards[2].start());
+        assertEquals(8, shards[2].end());
+    }
+
+    @Test
+    // Test case 3: No shards without sharding or without terms
+    public void splitTest3() {
+        assertEquals(0, IndexSharding.NONE.split(TERMS).length);
+        assertEquals(0, IndexSharding.BY_LETTER
+                .split(new TermIndex(new String[0])).length);
+    }
+
+    @Test
+    // Test case 4: Descriptions parse back to the same sharding
+    public void parseTest1() {
+        assertEquals("single", IndexSharding.parse("single").toString());
+        assertEquals("letter", IndexSharding.parse("letter").toString());
+        assertEquals("250", IndexSharding.parse("250").toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    // Test case 5: Unknown description
+    public void parseTest2() {
+        IndexSharding.parse("alphabet");
+    }
+
+}
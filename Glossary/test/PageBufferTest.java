@@ -0,0 +1,115 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+/**
+ * Program to test the PageBuffer class.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public class PageBufferTest {
+
+    @Test
+    // Test case 1: Encoding matches String.getBytes
+    public void appendUtf8Test1() {
+        String text = "ascii \u00e9\u00df \u20ac\u4e2d \ud83d\ude00 end";
+        PageBuffer buffer = new PageBuffer();
+        buffer.appendUtf8(text);
+        assertArrayEquals(text.getBytes(StandardCharsets.UTF_8),
+                buffer.toByteArray());
+        assertEquals(text, buffer.toString());
+    }
+
+    @Test
+    // Test case 2: Unpaired surrogates become '?'
+    public void appendUtf8Test2() {
+        String text = "a\ud83db\ude00";
+        PageBuffer buffer = new PageBuffer();
+        buffer.appendUtf8(text);
+        assertArrayEquals(text.getBytes(StandardCharsets.UTF_8),
+                buffer.toByteArray());
+    }
+
+    @Test
+    // Test case 3: Fragments and ranges, growing past the initial capacity
+    public void appendTest1() {
+        PageBuffer buffer = new PageBuffer();
+        StringBuilder expected = new StringBuilder();
+        byte[] fragment = PageBuffer.encode("<li>");
+        for (int i = 0; i < 2000; i++) {
+            buffer.append(fragment).appendUtf8("xterm" + i + "y", 1, 5);
+            expected.append("<li>term");
+        }
+        assertEquals(expected.toString(), buffer.toString());
+        assertEquals(expected.length(), buffer.length());
+        buffer.clear();
+        assertEquals(0, buffer.length());
+    }
+
+    @Test
+    // Test case 4: The whole page is written to a channel
+    public void writeToTest1() throws IOException {
+        PageBuffer buffer = new PageBuffer();
+        buffer.appendUtf8("<html>\u00e9</html>");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        buffer.writeTo(Channels.newChannel(out));
+        assertArrayEquals(buffer.toByteArray(), out.toByteArray());
+    }
+
+    @Test
+    // Test case 5: Rendered pages match the StringBuilder rendering
+    public void renderTest1() {
+        TermIndex terms = new TermIndex(
+                new String[] { "caf\u00e9", "hash table", "table" });
+        String definition = "a hash table in a caf\u00e9, not a table\u2122";
+        StringBuilder expected = new StringBuilder();
+        Glossary.renderTermHTML("caf\u00e9", definition, terms, expected);
+        PageBuffer page = new PageBuffer();
+        Glossary.renderTermHTML("caf\u00e9", definition, terms, page);
+        assertEquals(expected.toString(), page.toString());
+
+        expected.setLength(0);
+        Glossary.renderIndexHTML(terms, expected);
+        page.clear();
+        Glossary.renderIndexHTML(terms, page);
+        assertEquals(expected.toString(), page.toString());
+    }
+
+    @Test
+    // Test case 6: Compressed pages read back with GZIPInputStream
+    public void appendGzipTest1() throws IOException {
+        PageBuffer page = new PageBuffer();
+        for (int i = 0; i < 2000; i++) {
+            page.appendUtf8("<li>term" + i + " caf\u00e9</li>\n");
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        PageBuffer compressed = new PageBuffer().appendGzip(page, deflater);
+        PageBuffer again = new PageBuffer().appendGzip(page, deflater);
+        deflater.end();
+
+        ByteArrayOutputStream inflated = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(
+                new ByteArrayInputStream(compressed.toByteArray()))) {
+            byte[] chunk = new byte[4096];
+            int read = in.read(chunk);
+            while (read >= 0) {
+                inflated.write(chunk, 0, read);
+                read = in.read(chunk);
+            }
+        }
+        assertArrayEquals(page.toByteArray(), inflated.toByteArray());
+        assertArrayEquals(compressed.toByteArray(), again.toByteArray());
+    }
+
+}
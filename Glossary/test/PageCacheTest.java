@@ -0,0 +1,82 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * Program to test the PageCache class.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public class PageCacheTest {
+
+    /**
+     * Renders a page whose content is its own name.
+     *
+     * @param name
+     *            The name of the page.
+     * @return The bytes of the page.
+     */
+    private static byte[] echo(String name) {
+        return name.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    // Test case 1: A cached page is returned without rendering it again
+    public void getTest1() {
+        PageCache cache = new PageCache(100);
+        PageCache.Page first = cache.get("a.html", PageCacheTest::echo);
+        PageCache.Page second = cache.get("a.html", name -> {
+            throw new AssertionError("rendered twice");
+        });
+        assertSame(first, second);
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    // Test case 2: The least recently used pages are evicted first
+    public void getTest2() {
+        PageCache cache = new PageCache(18);
+        cache.get("a.html", PageCacheTest::echo);
+        cache.get("b.html", PageCacheTest::echo);
+        cache.get("a.html", PageCacheTest::echo);
+        cache.get("c.html", PageCacheTest::echo);
+        assertEquals(3, cache.count());
+        cache.get("d.html", PageCacheTest::echo);
+        assertEquals(3, cache.count());
+        assertEquals(18, cache.size());
+
+        // b was used least recently, so it is rendered again
+        long misses = cache.misses();
+        cache.get("a.html", PageCacheTest::echo);
+        cache.get("b.html", PageCacheTest::echo);
+        assertEquals(misses + 1, cache.misses());
+    }
+
+    @Test
+    // Test case 3: Missing and oversized pages are not kept
+    public void getTest3() {
+        PageCache cache = new PageCache(8);
+        assertNull(cache.get("missing.html", name -> null));
+        assertEquals(9,
+                cache.get("long.html", PageCacheTest::echo).bytes().length);
+        assertEquals(0, cache.count());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    // Test case 4: Entity tags depend on the content of the page
+    public void etagTest1() {
+        PageCache.Page a = new PageCache.Page(echo("a"));
+        assertEquals(a.etag(), new PageCache.Page(echo("a")).etag());
+        assertNotEquals(a.etag(), new PageCache.Page(echo("b")).etag());
+        assertEquals('"', a.etag().charAt(0));
+    }
+
+}
@@ -0,0 +1,104 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Program to test the ReferenceGraph class.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public class ReferenceGraphTest {
+
+    /**
+     * Terms of the test glossary, in sorted order.
+     */
+    private static final String[] TERMS = { "book", "glossary", "term",
+            "word" };
+
+    /**
+     * Definitions of the test glossary, by ordinal.
+     */
+    private static final String[] DEFINITIONS = { "a book of words",
+            "a list of term and term definitions, like a book",
+            "a word or words in a glossary", "a unit of language" };
+
+    /**
+     * Returns the referrers of a term.
+     *
+     * @param graph
+     *            The graph.
+     * @param ordinal
+     *            The ordinal of the term.
+     * @return The ordinals of the referring terms.
+     */
+    private static int[] referrers(ReferenceGraph graph, int ordinal) {
+        int[] referrers = new int[graph.referrerCount(ordinal)];
+        for (int i = 0; i < referrers.length; i++) {
+            referrers[i] = graph.referrer(ordinal, i);
+        }
+        return referrers;
+    }
+
+    /**
+     * Returns the references of a term.
+     *
+     * @param graph
+     *            The graph.
+     * @param ordinal
+     *            The ordinal of the term.
+     * @return The ordinals of the terms referred to.
+     */
+    private static int[] references(ReferenceGraph graph, int ordinal) {
+        int[] references = new int[graph.referenceCount(ordinal)];
+        for (int i = 0; i < references.length; i++) {
+            references[i] = graph.reference(ordinal, i);
+        }
+        return references;
+    }
+
+    @Test
+    // Test case 1: References are distinct, sorted and never to the term
+    public void buildTest1() {
+        ReferenceGraph graph = ReferenceGraph.build(new TermIndex(TERMS),
+                i -> DEFINITIONS[i]);
+        assertArrayEquals(new int[0], references(graph, 0));
+        assertArrayEquals(new int[] { 0, 2 }, references(graph, 1));
+        assertArrayEquals(new int[] { 1, 3 }, references(graph, 2));
+        assertArrayEquals(new int[0], references(graph, 3));
+        assertEquals(4, graph.edgeCount());
+    }
+
+    @Test
+    // Test case 2: Referrers are the reverse of the references
+    public void buildTest2() {
+        ReferenceGraph graph = ReferenceGraph.build(new TermIndex(TERMS),
+                i -> DEFINITIONS[i]);
+        assertArrayEquals(new int[] { 1 }, referrers(graph, 0));
+        assertArrayEquals(new int[] { 2 }, referrers(graph, 1));
+        assertArrayEquals(new int[] { 1 }, referrers(graph, 2));
+        assertArrayEquals(new int[] { 2 }, referrers(graph, 3));
+        assertEquals(1, graph.maxReferrerCount());
+    }
+
+    @Test
+    // Test case 3: Orphans are the terms nothing refers to
+    public void orphansTest1() {
+        String[] definitions = { "a printed work", "a list of terms",
+                "a word in a glossary", "a unit of language" };
+        ReferenceGraph graph = ReferenceGraph.build(new TermIndex(TERMS),
+                i -> definitions[i]);
+        assertArrayEquals(new int[] { 0, 2 }, graph.orphans());
+    }
+
+    @Test
+    // Test case 4: Empty glossary
+    public void orphansTest2() {
+        ReferenceGraph graph = ReferenceGraph
+                .build(new TermIndex(new String[0]), i -> "");
+        assertEquals(0, graph.orphans().length);
+        assertEquals(0, graph.maxReferrerCount());
+    }
+
+}
@@ -0,0 +1,133 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Program to test the SearchIndex class.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public class SearchIndexTest {
+
+    /**
+     * A sink keeping the files written to it in memory.
+     */
+    private static final class MemorySink implements PageSink {
+
+        /**
+         * The text of each file written, by name.
+         */
+        private final HashMap<String, String> files = new HashMap<>();
+
+        @Override
+        public void write(String name, PageBuffer page) {
+            this.files.put(name, page.toString());
+        }
+
+        @Override
+        public boolean sequential() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+            // Nothing to release
+        }
+
+    }
+
+    /**
+     * Builds and writes the search index of the given glossary.
+     *
+     * @param names
+     *            The terms.
+     * @param definitions
+     *            The definition of each term, in the same order.
+     * @param sink
+     *            The sink receiving the files.
+     * @return The names of the files written.
+     * @throws IOException
+     *             if a file cannot be written
+     */
+    private static List<String> write(String[] names, String[] definitions,
+            MemorySink sink) throws IOException {
+        TermIndex terms = new TermIndex(names);
+        SearchIndex index = new SearchIndex(terms);
+        for (int i = 0; i < names.length; i++) {
+            index.add(terms.ordinal(names[i]), definitions[i]);
+        }
+        return index.write(sink);
+    }
+
+    @Test
+    // Test case 1: Terms are listed in lower-case order, ties by case, with
+    // the file names of their pages
+    public void writeTest1() throws IOException {
+        MemorySink sink = new MemorySink();
+        List<String> names = write(new String[] { "beta", "alpha", "Alpha" },
+                new String[] { "b", "a", "A" }, sink);
+        assertEquals("{\"terms\":[\"Alpha\",\"alpha\",\"beta\"],"
+                + "\"pages\":[\"Alpha.html\",\"alpha~2.html\","
+                + "\"beta.html\"]}", sink.files.get("search-terms-0.json"));
+        assertTrue(sink.files.get(SearchIndex.TABLE_NAME)
+                .startsWith("{\"terms\":3,\"termsPerShard\":1024,"
+                        + "\"termFirsts\":[\"alpha\"],"));
+        assertTrue(names.contains(SearchIndex.PAGE_NAME));
+        assertEquals(sink.files.size(), names.size());
+    }
+
+    @Test
+    // Test case 2: Words are split like the linker does, postings as gaps
+    public void writeTest2() throws IOException {
+        MemorySink sink = new MemorySink();
+        write(new String[] { "hash", "table", "open" },
+                new String[] { "A hash (of keys).", "Hash table, a TABLE",
+                        "open hashes" },
+                sink);
+        assertEquals("{\"words\":[\"a\",\"hash\",\"hashes\",\"keys\",\"of\","
+                + "\"open\",\"table\"],\"postings\":[[0,2],[0,2],[1],[0],[0],"
+                + "[1],[2]]}", sink.files.get("search-words-0.json"));
+    }
+
+    @Test
+    // Test case 3: Large indexes are split into shards of bounded size
+    public void writeTest3() throws IOException {
+        String[] names = new String[4500];
+        String[] definitions = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "term" + i;
+            definitions[i] = "common word" + i;
+        }
+        MemorySink sink = new MemorySink();
+        write(names, definitions, sink);
+        assertTrue(sink.files.containsKey("search-terms-4.json"));
+        assertFalse(sink.files.containsKey("search-terms-5.json"));
+
+        // The common word fills a shard on its own
+        assertTrue(sink.files.get("search-words-0.json")
+                .startsWith("{\"words\":[\"common\"],\"postings\":[[0,1,1,"));
+        assertTrue(sink.files.get("search-words-1.json")
+                .startsWith("{\"words\":[\"word0\",\"word1\","));
+        assertTrue(sink.files.get(SearchIndex.TABLE_NAME)
+                .contains("\"wordFirsts\":[\"common\",\"word0\","));
+    }
+
+    @Test
+    // Test case 4: Quotes and backslashes are escaped
+    public void writeTest4() throws IOException {
+        MemorySink sink = new MemorySink();
+        write(new String[] { "a\"b", "c\\d" }, new String[] { "x", "y" },
+                sink);
+        assertEquals("{\"terms\":[\"a\\\"b\",\"c\\\\d\"],"
+                + "\"pages\":[\"a_22b.html\",\"c_5Cd.html\"]}",
+                sink.files.get("search-terms-0.json"));
+    }
+
+}
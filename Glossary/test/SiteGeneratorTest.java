@@ -0,0 +1,520 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import components.map.Map;
+import components.queue.Queue;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Program to test the SiteGenerator class.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public class SiteGeneratorTest {
+
+    /**
+     * Folder for the generated pages.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Reads a glossary from the given file.
+     *
+     * @param fileName
+     *            The name of the glossary file.
+     * @return The glossary.
+     */
+    private static Map<String, String> read(String fileName) {
+        SimpleReader input = new SimpleReader1L(fileName);
+        Map<String, String> glossary = Glossary.buildDictionary(input);
+        input.close();
+        return glossary;
+    }
+
+    /**
+     * Reads a generated page.
+     *
+     * @param site
+     *            The folder of the site.
+     * @param name
+     *            The file name of the page.
+     * @return The text of the page.
+     * @throws IOException
+     *             if the page cannot be read
+     */
+    private static String page(File site, String name) throws IOException {
+        return new String(Files.readAllBytes(new File(site, name).toPath()),
+                StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks that every page generated with the given number of workers
+     * matches the page written through a SimpleWriter.
+     *
+     * @param workers
+     *            The number of workers.
+     * @throws IOException
+     *             if a page cannot be read
+     */
+    private void checkPages(int workers) throws IOException {
+        Map<String, String> glossary = read("data/dictTest3.txt");
+        TermIndex terms = new TermIndex(glossary);
+        File site = this.folder.newFolder("site" + workers);
+        File expected = this.folder.newFolder("expected" + workers);
+        new SiteGenerator(site.getPath(), workers).generate(glossary, terms);
+
+        Queue<String> sorted = Glossary.buildSortedQueue(glossary);
+        SimpleWriter indexOut = new SimpleWriter1L(
+                expected.getPath() + "/index.html");
+        Glossary.createIndexHTML(sorted, indexOut);
+        indexOut.close();
+        for (String term : terms) {
+            SimpleWriter termOut = new SimpleWriter1L(
+                    expected.getPath() + "/" + term + ".html");
+            Glossary.createTermHTML(term, glossary, terms, termOut);
+            termOut.close();
+        }
+
+        assertEquals(terms.size() + 1, site.list().length);
+        for (String name : expected.list()) {
+            assertArrayEquals(name,
+                    Files.readAllBytes(new File(expected, name).toPath()),
+                    Files.readAllBytes(new File(site, name).toPath()));
+        }
+    }
+
+    @Test
+    // Test case 1: A single worker
+    public void generateTest1() throws IOException {
+        this.checkPages(1);
+    }
+
+    @Test
+    // Test case 2: Several workers produce the same pages
+    public void generateTest2() throws IOException {
+        this.checkPages(4);
+    }
+
+    @Test
+    // Test case 3: Empty glossary still gets an index
+    public void generateTest3() throws IOException {
+        Map<String, String> glossary = read("data/empty.txt");
+        File site = this.folder.newFolder("empty");
+        new SiteGenerator(site.getPath(), 2).generate(glossary,
+                new TermIndex(glossary));
+        assertArrayEquals(new String[] { "index.html" }, site.list());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    // Test case 4: At least one worker is required
+    public void generateTest4() {
+        new SiteGenerator(this.folder.getRoot().getPath(), 0);
+    }
+
+    @Test
+    // Test case 5: Updates only rewrite the pages that changed
+    public void updateTest1() throws IOException {
+        File site = this.folder.newFolder("incremental");
+        SiteGenerator generator = new SiteGenerator(site.getPath(), 2);
+        String[] names = { "book", "glossary", "term" };
+        String[] definitions = { "a printed work", "a list of terms",
+                "a word in a glossary" };
+        TermIndex terms = new TermIndex(names);
+        assertEquals(3, generator.update(terms, i -> definitions[i]));
+        assertEquals(0, generator.update(terms, i -> definitions[i]));
+
+        // Changing one definition rewrites only its page
+        definitions[0] = "a printed or written work";
+        assertEquals(1, generator.update(terms, i -> definitions[i]));
+        assertEquals(0, generator.update(terms, i -> definitions[i]));
+
+        // Adding a term rewrites its page and the pages that now link to it
+        String[] moreNames = { "book", "glossary", "term", "word" };
+        String[] moreDefinitions = { definitions[0], definitions[1],
+                definitions[2], "a string of characters" };
+        TermIndex moreTerms = new TermIndex(moreNames);
+        assertEquals(2,
+                generator.update(moreTerms, i -> moreDefinitions[i]));
+
+        // Removing a term deletes its page
+        assertEquals(1, generator.update(terms, i -> definitions[i]));
+        assertFalse(new File(site, "word.html").exists());
+        assertTrue(new File(site, "term.html").exists());
+    }
+
+    /**
+     * Generates the archived site of the test glossary with the given
+     * number of workers.
+     *
+     * @param workers
+     *            The number of workers.
+     * @return The archive file.
+     * @throws IOException
+     *             if the archive cannot be written
+     */
+    private Path archive(int workers) throws IOException {
+        Map<String, String> glossary = read("data/dictTest3.txt");
+        File site = this.folder.newFolder("archived" + workers);
+        Path archive = site.toPath().resolve("site.tar");
+        TermIndex terms = new TermIndex(glossary);
+        try (TarArchiveSink sink = new TarArchiveSink(archive)) {
+            new SiteGenerator(site.getPath(), workers).generate(terms,
+                    i -> glossary.value(terms.term(i)), sink);
+        }
+        return archive;
+    }
+
+    @Test
+    // Test case 6: The archive holds the same pages as the folder
+    public void generateArchiveTest1() throws IOException {
+        Map<String, String> glossary = read("data/dictTest3.txt");
+        TermIndex terms = new TermIndex(glossary);
+        File site = this.folder.newFolder("folder");
+        new SiteGenerator(site.getPath(), 2).generate(glossary, terms);
+
+        Path archive = this.archive(3);
+        byte[] bytes = Files.readAllBytes(archive);
+        List<String> index = Files.readAllLines(
+                TarArchiveSink.indexFile(archive), StandardCharsets.UTF_8);
+        assertEquals(terms.size() + 2, index.size());
+        assertTrue(index.get(1).endsWith(" index.html"));
+        for (String line : index.subList(1, index.size())) {
+            String[] fields = line.split(" ", 3);
+            int offset = Integer.parseInt(fields[0]);
+            int length = Integer.parseInt(fields[1]);
+            assertArrayEquals(fields[2],
+                    Files.readAllBytes(new File(site, fields[2]).toPath()),
+                    Arrays.copyOfRange(bytes, offset, offset + length));
+        }
+    }
+
+    @Test
+    // Test case 7: The archive does not depend on the number of workers
+    public void generateArchiveTest2() throws IOException {
+        assertArrayEquals(Files.readAllBytes(this.archive(1)),
+                Files.readAllBytes(this.archive(4)));
+    }
+
+    @Test
+    // Test case 8: A sharded index lists every term once
+    public void generateShardedTest1() throws IOException {
+        Map<String, String> glossary = read("data/dictTest3.txt");
+        TermIndex terms = new TermIndex(glossary);
+        File site = this.folder.newFolder("sharded");
+        new SiteGenerator(site.getPath(), 3, IndexSharding.byPageSize(2))
+                .generate(glossary, terms);
+        IndexSharding.Shard[] shards = IndexSharding.byPageSize(2)
+                .split(terms);
+        assertEquals(terms.size() + 1 + shards.length, site.list().length);
+        String navigation = new String(
+                Files.readAllBytes(new File(site, "index.html").toPath()),
+                StandardCharsets.UTF_8);
+        int listed = 0;
+        for (IndexSharding.Shard shard : shards) {
+            assertTrue(navigation.contains("href=\"" + shard.name() + "\""));
+            String page = new String(
+                    Files.readAllBytes(new File(site, shard.name()).toPath()),
+                    StandardCharsets.UTF_8);
+            for (int i = shard.start(); i < shard.end(); i++) {
+                assertTrue(page.contains(
+                        "<a href=\"" + terms.term(i) + ".html\">"));
+                listed++;
+            }
+        }
+        assertEquals(terms.size(), listed);
+    }
+
+    @Test
+    // Test case 9: Updates only rewrite the shards that changed
+    public void updateShardedTest1() throws IOException {
+        File site = this.folder.newFolder("incremental-sharded");
+        SiteGenerator generator = new SiteGenerator(site.getPath(), 2,
+                IndexSharding.BY_LETTER);
+        String[] names = { "book", "glossary", "term" };
+        String[] definitions = { "a printed work", "a list of terms",
+                "a word in a glossary" };
+        generator.update(new TermIndex(names), i -> definitions[i]);
+        File bookShard = new File(site, "index-b.html");
+        File glossaryShard = new File(site, "index-g.html");
+        Files.write(bookShard.toPath(), "kept".getBytes("UTF-8"));
+        Files.write(glossaryShard.toPath(), "kept".getBytes("UTF-8"));
+
+        // Adding a term under g leaves the b shard alone
+        String[] moreNames = { "book", "glossary", "grammar", "term" };
+        String[] moreDefinitions = { definitions[0], definitions[1],
+                "rules of a language", definitions[2] };
+        generator.update(new TermIndex(moreNames), i -> moreDefinitions[i]);
+        assertEquals("kept", new String(Files.readAllBytes(bookShard.toPath()),
+                "UTF-8"));
+        assertTrue(new String(Files.readAllBytes(glossaryShard.toPath()),
+                "UTF-8").contains("grammar.html"));
+
+        // Removing the only term under t deletes its shard
+        String[] fewerNames = { "book", "glossary", "grammar" };
+        generator.update(new TermIndex(fewerNames), i -> moreDefinitions[i]);
+        assertFalse(new File(site, "index-t.html").exists());
+
+        // Going back to a single index removes the shards
+        new SiteGenerator(site.getPath(), 2).update(
+                new TermIndex(fewerNames), i -> moreDefinitions[i]);
+        assertFalse(bookShard.exists());
+    }
+
+    @Test
+    // Test case 10: Term pages list the terms referring to them
+    public void generateReferencedByTest1() throws IOException {
+        Map<String, String> glossary = read("data/dictTest3.txt");
+        TermIndex terms = new TermIndex(glossary);
+        ReferenceGraph graph = ReferenceGraph.build(terms,
+                i -> glossary.value(terms.term(i)));
+        File site = this.folder.newFolder("referenced");
+        File expected = this.folder.newFolder("referenced-expected");
+        new SiteGenerator(site.getPath(), 3, IndexSharding.NONE, true)
+                .generate(glossary, terms);
+        for (String term : terms) {
+            SimpleWriter termOut = new SimpleWriter1L(
+                    expected.getPath() + "/" + term + ".html");
+            Glossary.createTermHTML(term, glossary, terms, graph, termOut);
+            termOut.close();
+            assertArrayEquals(term,
+                    Files.readAllBytes(
+                            new File(expected, term + ".html").toPath()),
+                    Files.readAllBytes(
+                            new File(site, term + ".html").toPath()));
+        }
+    }
+
+    @Test
+    // Test case 11: A page is rewritten when its referrers change
+    public void updateReferencedByTest1() throws IOException {
+        File site = this.folder.newFolder("incremental-referenced");
+        SiteGenerator generator = new SiteGenerator(site.getPath(), 2,
+                IndexSharding.NONE, true);
+        String[] names = { "book", "glossary", "term" };
+        String[] definitions = { "a printed work", "a list of terms",
+                "a word in a glossary" };
+        TermIndex terms = new TermIndex(names);
+        assertEquals(3, generator.update(terms, i -> definitions[i]));
+
+        // The book page now lists the glossary as a referrer
+        definitions[1] = "a book listing terms";
+        assertEquals(2, generator.update(terms, i -> definitions[i]));
+        assertTrue(new String(
+                Files.readAllBytes(new File(site, "book.html").toPath()),
+                StandardCharsets.UTF_8).contains("Referenced by: "));
+    }
+
+    @Test
+    // Test case 12: Measured stages count every page rendered and written
+    public void generateMetricsTest1() throws IOException {
+        File site = this.folder.newFolder("measured");
+        BuildMetrics metrics = new BuildMetrics();
+        String[] names = { "book", "glossary", "term" };
+        String[] definitions = { "a printed work", "a book listing terms",
+                "a word in a glossary" };
+        new SiteGenerator(site.getPath(), 2, IndexSharding.BY_LETTER, true,
+                metrics).generate(new TermIndex(names), i -> definitions[i]);
+
+        // The index, three shards and three term pages
+        long bytes = 0;
+        for (File page : site.listFiles()) {
+            bytes += page.length();
+        }
+        assertEquals(7, metrics.stage("render").timedItems());
+        assertEquals(7, metrics.stage("write").items());
+        assertEquals(bytes, metrics.stage("write").bytes());
+        assertEquals(3, metrics.stage("graph").items());
+    }
+
+    @Test
+    // Test case 13: Updates rewrite the search index and drop old shards
+    public void updateSearchTest1() throws IOException {
+        File site = this.folder.newFolder("searched");
+        String[] names = new String[1500];
+        String[] definitions = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "term" + i;
+            definitions[i] = "a definition";
+        }
+        SiteGenerator generator = new SiteGenerator(site.getPath(), 2,
+                IndexSharding.NONE, false, null, true);
+        generator.update(new TermIndex(names), i -> definitions[i]);
+        assertTrue(new File(site, SearchIndex.PAGE_NAME).exists());
+        assertTrue(new File(site, "search-terms-1.json").exists());
+
+        // Fewer terms need fewer shards
+        String[] fewer = Arrays.copyOf(names, 10);
+        generator.update(new TermIndex(fewer), i -> definitions[i]);
+        assertTrue(new File(site, "search-terms-0.json").exists());
+        assertFalse(new File(site, "search-terms-1.json").exists());
+        assertTrue(new String(
+                Files.readAllBytes(
+                        new File(site, SearchIndex.TABLE_NAME).toPath()),
+                StandardCharsets.UTF_8).startsWith("{\"terms\":10,"));
+    }
+
+    @Test
+    // Test case 14: Compressed copies follow their pages through updates
+    public void updateGzipTest1() throws IOException {
+        File site = this.folder.newFolder("compressed");
+        String[] names = { "book", "glossary", "term" };
+        String[] definitions = { "a printed work", "a book listing terms",
+                "a word in a glossary" };
+        SiteGenerator generator = new SiteGenerator(site.getPath(), 2,
+                IndexSharding.NONE, false, null, false, true);
+        assertEquals(3,
+                generator.update(new TermIndex(names), i -> definitions[i]));
+        assertTrue(new File(site, "index.html.gz").exists());
+        assertTrue(new File(site, "book.html.gz").exists());
+
+        // A missing copy is written again, and removed terms lose theirs
+        assertTrue(new File(site, "term.html.gz").delete());
+        String[] fewer = { "book", "term" };
+        String[] fewerDefinitions = { "a printed work",
+                "a word in a glossary" };
+        assertEquals(1, generator.update(new TermIndex(fewer),
+                i -> fewerDefinitions[i]));
+        assertTrue(new File(site, "term.html.gz").exists());
+        assertFalse(new File(site, "glossary.html.gz").exists());
+        assertFalse(new File(site, "glossary.html").exists());
+    }
+
+    @Test
+    // Test case 15: Pages generated on a fork/join pool are the same
+    public void generateInPoolTest1() throws Exception {
+        Map<String, String> glossary = read("data/dictTest3.txt");
+        TermIndex terms = new TermIndex(glossary);
+        File site = this.folder.newFolder("pool");
+        File expected = this.folder.newFolder("threads");
+        new SiteGenerator(expected.getPath(), 2).generate(glossary, terms);
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            pool.submit(() -> new SiteGenerator(site.getPath(), 2)
+                    .generate(glossary, terms)).get();
+        } finally {
+            pool.shutdown();
+        }
+        for (String page : expected.list()) {
+            assertArrayEquals(page,
+                    Files.readAllBytes(new File(expected, page).toPath()),
+                    Files.readAllBytes(new File(site, page).toPath()));
+        }
+        assertEquals(expected.list().length, site.list().length);
+    }
+
+    @Test
+    // Test case 16: Pages get safe file names, and follow their terms when
+    // the names move
+    public void updateFileNamesTest1() throws IOException {
+        File site = this.folder.newFolder("names");
+        SiteGenerator generator = new SiteGenerator(site.getPath(), 2);
+        String[] names = { "a/b", "Book", "book", "index" };
+        String[] definitions = { "see book", "a title", "a printed work",
+                "a list" };
+        TermIndex terms = new TermIndex(names);
+        assertEquals(4, generator.update(terms, i -> definitions[i]));
+        assertTrue(new File(site, "Book.html").exists());
+        assertTrue(new File(site, "_69ndex.html").exists());
+        assertTrue(page(site, "a_2Fb.html")
+                .contains("see <a href=\"book~2.html\">book</a>"));
+
+        // Without the capitalized term, "book" takes the plain name
+        String[] fewer = { "a/b", "book", "index" };
+        String[] fewerDefinitions = { "see book", "a printed work",
+                "a list" };
+        TermIndex fewerTerms = new TermIndex(fewer);
+        assertEquals(2,
+                generator.update(fewerTerms, i -> fewerDefinitions[i]));
+        assertFalse(new File(site, "book~2.html").exists());
+        assertTrue(page(site, "a_2Fb.html")
+                .contains("see <a href=\"book.html\">book</a>"));
+        assertTrue(page(site, "book.html")
+                .contains("a printed work"));
+    }
+
+    @Test
+    // Test case 17: An unchanged rebuild in the order of a locale rewrites
+    // nothing, not even the index
+    public void updateCollationTest1() throws IOException {
+        File site = this.folder.newFolder("collated");
+        String[] names = { "zeta", "\u00e9clair", "apple", "Epsilon",
+                "Apple" };
+        TermIndex terms = new TermIndex(names,
+                TermCollator.forLocale(Locale.ENGLISH));
+        String[] definitions = new String[terms.size()];
+        for (int i = 0; i < definitions.length; i++) {
+            definitions[i] = "about " + terms.term((i + 1) % terms.size());
+        }
+        assertEquals(5, new SiteGenerator(site.getPath(), 2,
+                IndexSharding.NONE, false, null, true, false).update(terms,
+                        i -> definitions[i]));
+
+        // A new generator reads the manifest back in the same order
+        File index = new File(site, "index.html");
+        File table = new File(site, SearchIndex.TABLE_NAME);
+        assertTrue(index.setLastModified(1000000000000L));
+        assertTrue(table.setLastModified(1000000000000L));
+        assertEquals(0, new SiteGenerator(site.getPath(), 2,
+                IndexSharding.NONE, false, null, true, false).update(terms,
+                        i -> definitions[i]));
+        assertEquals(1000000000000L, index.lastModified());
+        assertEquals(1000000000000L, table.lastModified());
+        assertTrue(new File(site, "Apple~2.html").exists()
+                || new File(site, "apple~2.html").exists());
+    }
+
+    @Test
+    // Test case 18: Repeated updates of the same terms keep the reference
+    // graph until a definition changes
+    public void updateWarmTest1() throws IOException {
+        File site = this.folder.newFolder("warm");
+        BuildMetrics metrics = new BuildMetrics();
+        SiteGenerator generator = new SiteGenerator(site.getPath(), 2,
+                IndexSharding.NONE, true, metrics);
+        String[] names = { "book", "glossary", "term" };
+        String[] definitions = { "a printed work", "a list of terms",
+                "a word" };
+        TermIndex terms = new TermIndex(names);
+        assertEquals(3, generator.update(terms, i -> definitions[i]));
+        assertEquals(3, metrics.stage("graph").items());
+
+        // Nothing changed, so nothing is linked or rendered again
+        assertEquals(0, generator.update(terms, i -> definitions[i]));
+        assertEquals(3, metrics.stage("graph").items());
+
+        // The changed definition gets its link and the book its referrer
+        definitions[2] = "a word in a book";
+        assertEquals(2, generator.update(new TermIndex(names),
+                i -> definitions[i]));
+        assertEquals(6, metrics.stage("graph").items());
+        assertTrue(new String(
+                Files.readAllBytes(new File(site, "term.html").toPath()),
+                StandardCharsets.UTF_8)
+                        .contains("<a href=\"book.html\">book</a>"));
+        assertTrue(new String(
+                Files.readAllBytes(new File(site, "book.html").toPath()),
+                StandardCharsets.UTF_8).contains("Referenced by: "));
+    }
+
+}
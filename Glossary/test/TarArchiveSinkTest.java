@@ -0,0 +1,131 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Program to test the TarArchiveSink class.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public class TarArchiveSinkTest {
+
+    /**
+     * Folder for the archives.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Returns a page holding the given text.
+     *
+     * @param text
+     *            The text of the page.
+     * @return The page.
+     */
+    private static PageBuffer page(String text) {
+        PageBuffer page = new PageBuffer();
+        page.appendUtf8(text);
+        return page;
+    }
+
+    /**
+     * Returns the value of an octal header field.
+     *
+     * @param archive
+     *            The archive bytes.
+     * @param offset
+     *            The position of the field.
+     * @param width
+     *            The width of the field.
+     * @return The value of the field.
+     */
+    private static long octal(byte[] archive, int offset, int width) {
+        String digits = new String(archive, offset, width,
+                StandardCharsets.US_ASCII).trim();
+        int nul = digits.indexOf('\u0000');
+        if (nul >= 0) {
+            digits = digits.substring(0, nul);
+        }
+        return Long.parseLong(digits, 8);
+    }
+
+    @Test
+    // Test case 1: Headers, padding and end blocks
+    public void writeTest1() throws IOException {
+        Path archive = this.folder.getRoot().toPath().resolve("site.tar");
+        try (TarArchiveSink sink = new TarArchiveSink(archive)) {
+            sink.write("index.html", page("<html>index</html>"));
+            sink.write("term.html", page("<html>\u00e9</html>"));
+        }
+        byte[] bytes = Files.readAllBytes(archive);
+        assertEquals(4 * 512 + 2 * 512, bytes.length);
+        assertEquals("index.html",
+                new String(bytes, 0, 10, StandardCharsets.US_ASCII));
+        assertEquals(0, bytes[10]);
+        assertEquals(18, octal(bytes, 124, 12));
+        assertEquals("ustar",
+                new String(bytes, 257, 5, StandardCharsets.US_ASCII));
+
+        // The checksum counts the checksum field as spaces
+        long sum = 0;
+        for (int i = 0; i < 512; i++) {
+            if (i >= 148 && i < 156) {
+                sum += ' ';
+            } else {
+                sum += bytes[i] & 0xFF;
+            }
+        }
+        assertEquals(sum, octal(bytes, 148, 8));
+        assertEquals(15, octal(bytes, 1024 + 124, 12));
+    }
+
+    @Test
+    // Test case 2: The sidecar index locates every page
+    public void writeTest2() throws IOException {
+        Path archive = this.folder.getRoot().toPath().resolve("site.tar");
+        StringBuilder longName = new StringBuilder();
+        for (int i = 0; i < 30; i++) {
+            longName.append("long");
+        }
+        longName.append(".html");
+        String[] names = { "index.html", "caf\u00e9.html",
+                longName.toString(), "a term.html" };
+        try (TarArchiveSink sink = new TarArchiveSink(archive)) {
+            for (String name : names) {
+                sink.write(name, page("<p>" + name + "</p>"));
+            }
+        }
+        byte[] bytes = Files.readAllBytes(archive);
+        List<String> index = Files.readAllLines(
+                TarArchiveSink.indexFile(archive), StandardCharsets.UTF_8);
+        assertEquals(TarArchiveSink.INDEX_HEADER, index.get(0));
+        assertEquals(names.length + 1, index.size());
+        for (int i = 0; i < names.length; i++) {
+            String[] fields = index.get(i + 1).split(" ", 3);
+            int offset = Integer.parseInt(fields[0]);
+            int length = Integer.parseInt(fields[1]);
+            assertEquals(names[i], fields[2]);
+            assertEquals(0, offset % 512);
+            assertArrayEquals(
+                    ("<p>" + names[i] + "</p>")
+                            .getBytes(StandardCharsets.UTF_8),
+                    Arrays.copyOfRange(bytes, offset, offset + length));
+        }
+
+        // The non-ASCII and the long name both need a pax header
+        assertEquals('x', bytes[2 * 512 + 156]);
+        assertEquals(5 * 512, Integer.parseInt(index.get(2).split(" ")[0]));
+    }
+
+}
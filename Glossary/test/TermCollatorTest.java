@@ -0,0 +1,122 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Program to test the TermCollator class.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public class TermCollatorTest {
+
+    /**
+     * Returns distinct random terms over a small alphabet, so that many
+     * share prefixes or differ only in case.
+     *
+     * @param count
+     *            The number of terms.
+     * @param seed
+     *            The seed of the random generator.
+     * @return The terms.
+     */
+    private static String[] randomTerms(int count, long seed) {
+        String alphabet = "aAbB zZ\u00e9\u00c9\u00df-";
+        Random random = new Random(seed);
+        Set<String> terms = new LinkedHashSet<>();
+        while (terms.size() < count) {
+            StringBuilder term = new StringBuilder();
+            int length = random.nextInt(12);
+            for (int i = 0; i < length; i++) {
+                term.append(alphabet.charAt(random.nextInt(alphabet
+                        .length())));
+            }
+            terms.add(term.toString());
+        }
+        return terms.toArray(new String[0]);
+    }
+
+    @Test
+    // Test case 1: The default order is that of compareToIgnoreCase, with
+    // ties broken by compareTo
+    public void sortTest1() {
+        String[] terms = randomTerms(3000, 1);
+        TermCollator.CASE_INSENSITIVE.sort(terms);
+        for (int i = 1; i < terms.length; i++) {
+            int comparison = terms[i - 1].compareToIgnoreCase(terms[i]);
+            assertTrue(terms[i - 1] + " / " + terms[i], comparison < 0
+                    || comparison == 0 && terms[i - 1].compareTo(terms[i]) < 0);
+        }
+    }
+
+    @Test
+    // Test case 2: Radix sort gives the same order as comparison sort
+    public void sortTest2() {
+        for (long seed = 0; seed < 5; seed++) {
+            String[] expected = randomTerms(2000, seed);
+            String[] actual = expected.clone();
+            TermCollator.CASE_INSENSITIVE.sort(expected);
+            TermCollator.CASE_INSENSITIVE.withRadixSort().sort(actual);
+            assertArrayEquals(expected, actual);
+        }
+        String[] german = { "Bach", "\u00c4pfel", "apfel", "Zebra" };
+        String[] expected = german.clone();
+        TermCollator.forLocale(Locale.GERMAN).sort(expected);
+        TermCollator.forLocale(Locale.GERMAN).withRadixSort().sort(german);
+        assertArrayEquals(expected, german);
+    }
+
+    @Test
+    // Test case 3: A locale places accented letters with their base letter
+    public void sortTest3() {
+        String[] terms = { "Bach", "\u00c4pfel", "Apfel", "Zebra" };
+        TermCollator.CASE_INSENSITIVE.sort(terms);
+        assertEquals("\u00c4pfel", terms[3]);
+        TermCollator.forLocale(Locale.GERMAN).sort(terms);
+        assertArrayEquals(
+                new String[] { "Apfel", "\u00c4pfel", "Bach", "Zebra" },
+                terms);
+    }
+
+    @Test
+    // Test case 4: Letter shards follow the initials of the locale
+    public void sameInitialTest1() {
+        TermCollator german = TermCollator.forLocale(Locale.GERMAN);
+        assertTrue(german.sameInitial("Apfel", "\u00e4pfel"));
+        assertFalse(TermCollator.CASE_INSENSITIVE.sameInitial("Apfel",
+                "\u00e4pfel"));
+        assertTrue(TermCollator.CASE_INSENSITIVE.sameInitial("apfel",
+                "Apfel"));
+
+        TermIndex terms = new TermIndex(
+                new String[] { "Bach", "\u00c4rger", "Apfel", "Anker" },
+                german);
+        IndexSharding.Shard[] shards = IndexSharding.BY_LETTER.split(terms);
+        assertEquals(2, shards.length);
+        assertEquals("index-a.html", shards[0].name());
+        assertEquals(3, shards[0].end());
+    }
+
+    @Test
+    // Test case 5: Command-line values
+    public void parseTest1() {
+        assertTrue(TermCollator.parse("default").isCaseInsensitive());
+        assertTrue(TermCollator.parse("radix").isCaseInsensitive());
+        assertFalse(TermCollator.parse("sv-SE").isCaseInsensitive());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    // Test case 6: Unknown values are rejected
+    public void parseTest2() {
+        TermCollator.parse("not a language");
+    }
+
+}
@@ -0,0 +1,152 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import components.map.Map;
+import components.map.Map.Pair;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Program to test the TermDictionary class.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public class TermDictionaryTest {
+
+    /**
+     * Folder for the rendered pages.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Reads a glossary from the given file.
+     *
+     * @param fileName
+     *            The name of the glossary file.
+     * @return The glossary.
+     */
+    private static Map<String, String> read(String fileName) {
+        SimpleReader input = new SimpleReader1L(fileName);
+        Map<String, String> glossary = Glossary.buildDictionary(input);
+        input.close();
+        return glossary;
+    }
+
+    @Test
+    // Test case 1: Same entries as the map it was built from
+    public void fromMapTest1() {
+        Map<String, String> glossary = read("data/terms.txt");
+        TermDictionary dictionary = TermDictionary.fromMap(glossary);
+        assertEquals(glossary.size(), dictionary.size());
+        for (Pair<String, String> pair : glossary) {
+            assertTrue(dictionary.hasKey(pair.key()));
+            assertEquals(pair.value(), dictionary.value(pair.key()));
+            int ordinal = dictionary.ordinal(pair.key());
+            assertEquals(pair.key(), dictionary.term(ordinal));
+            assertEquals(pair.value(), dictionary.definition(ordinal));
+        }
+        assertFalse(dictionary.hasKey("missing"));
+        assertEquals(-1, dictionary.ordinal("missing"));
+    }
+
+    @Test
+    // Test case 2: Non-ASCII and empty definitions, sorted iteration
+    public void buildTest1() {
+        String[] terms = { "Alpha", "caf\u00e9", "zeta" };
+        String[] definitions = { "\u00e9t\u00e9 \ud83d\ude00", "x", "" };
+        TermDictionary dictionary = TermDictionary
+                .build(new TermIndex(terms), i -> definitions[i]);
+        assertEquals("", dictionary.value("zeta"));
+        assertEquals("\u00e9t\u00e9 \ud83d\ude00", dictionary.value("Alpha"));
+        Iterator<String> it = dictionary.iterator();
+        assertEquals("Alpha", it.next());
+        assertEquals("caf\u00e9", it.next());
+        assertEquals("zeta", it.next());
+        assertFalse(it.hasNext());
+        assertEquals(11, dictionary.arenaSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    // Test case 3: Unknown terms have no value
+    public void valueTest1() {
+        TermDictionary.fromMap(read("data/terms.txt")).value("missing");
+    }
+
+    @Test
+    // Test case 4: The map copy holds every entry
+    public void toMapTest1() {
+        Map<String, String> glossary = read("data/terms.txt");
+        Map<String, String> copy = TermDictionary.fromMap(glossary).toMap();
+        assertEquals(glossary.size(), copy.size());
+        for (Pair<String, String> pair : glossary) {
+            assertEquals(pair.value(), copy.value(pair.key()));
+        }
+    }
+
+    @Test
+    // Test case 5: Term pages match those rendered from the map
+    public void createTermHTMLTest1() {
+        Map<String, String> glossary = read("data/terms.txt");
+        TermDictionary dictionary = TermDictionary.fromMap(glossary);
+        String mapPage = this.folder.getRoot().getPath() + "/map.html";
+        String arenaPage = this.folder.getRoot().getPath() + "/arena.html";
+        for (String term : dictionary) {
+            SimpleWriter fromMap = new SimpleWriter1L(mapPage);
+            Glossary.createTermHTML(term, glossary, dictionary.terms(),
+                    fromMap);
+            fromMap.close();
+            SimpleWriter fromDictionary = new SimpleWriter1L(arenaPage);
+            Glossary.createTermHTML(term, dictionary, fromDictionary);
+            fromDictionary.close();
+            assertEquals(readAll(mapPage), readAll(arenaPage));
+        }
+    }
+
+    @Test
+    // Test case 6: The arena is exactly as long as the encoded definitions
+    public void buildTest2() {
+        String[] terms = { "a", "b", "c", "d" };
+        String[] definitions = { "\u00ff\u07ff\u0800\uffff",
+                "\ud83d\ude00\ud83d", "\ude00x", "plain" };
+        TermDictionary dictionary = TermDictionary
+                .build(new TermIndex(terms), i -> definitions[i]);
+        int length = 0;
+        for (int i = 0; i < definitions.length; i++) {
+            byte[] bytes = definitions[i].getBytes(StandardCharsets.UTF_8);
+            length += bytes.length;
+            assertEquals(new String(bytes, StandardCharsets.UTF_8),
+                    dictionary.value(terms[i]));
+        }
+        assertEquals(length, dictionary.arenaSize());
+    }
+
+    /**
+     * Reads the whole of the given file.
+     *
+     * @param fileName
+     *            The name of the file.
+     * @return The contents of the file, one line per line.
+     */
+    private static String readAll(String fileName) {
+        SimpleReader input = new SimpleReader1L(fileName);
+        StringBuilder contents = new StringBuilder();
+        while (!input.atEOS()) {
+            contents.append(input.nextLine()).append('\n');
+        }
+        input.close();
+        return contents.toString();
+    }
+
+}
@@ -0,0 +1,60 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+
+/**
+ * Program to test the TermIndex class.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public class TermIndexTest {
+
+    @Test
+    // Test case 1: Empty index
+    public void termIndexTest1() {
+        TermIndex index = new TermIndex(new String[0]);
+        assertEquals(0, index.size());
+        assertFalse(index.contains("term"));
+        assertEquals(-1, index.ordinal(""));
+    }
+
+    @Test
+    // Test case 2: Ordinals follow the case-insensitive order
+    public void termIndexTest2() {
+        String[] terms = { "word", "Book", "glossary" };
+        TermIndex index = new TermIndex(terms);
+        assertEquals(3, index.size());
+        assertEquals("Book", index.term(0));
+        assertEquals("glossary", index.term(1));
+        assertEquals("word", index.term(2));
+        assertEquals(1, index.ordinal("glossary"));
+        assertFalse(index.contains("book"));
+        // The index must not depend on the caller's array
+        terms[0] = "changed";
+        assertTrue(index.contains("word"));
+    }
+
+    @Test
+    // Test case 3: Index built from a glossary map
+    public void termIndexTest3() {
+        SimpleReader input = new SimpleReader1L("data/dictTest3.txt");
+        Map<String, String> glossary = Glossary.buildDictionary(input);
+        input.close();
+        TermIndex index = new TermIndex(glossary);
+        assertEquals(glossary.size(), index.size());
+        assertEquals("book", index.term(0));
+        assertEquals("word", index.term(index.size() - 1));
+        for (int i = 0; i < index.size(); i++) {
+            assertEquals(i, index.ordinal(index.term(i)));
+        }
+        assertEquals(10, glossary.size());
+    }
+
+}
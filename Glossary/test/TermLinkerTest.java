@@ -0,0 +1,108 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * Program to test the TermLinker class.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public class TermLinkerTest {
+
+    @Test
+    // Test case 1: Single-word terms are linked like the tokenizer did
+    public void linkTest1() {
+        TermLinker linker = new TermLinker(
+                new TermIndex(new String[] { "term1", "term2" }));
+        String result = linker.link("term1 is related to term2.");
+        String expected = "<a href=\"term1.html\">term1</a> is related to <a "
+                + "href=\"term2.html\">term2</a>.";
+        assertEquals(expected, result);
+    }
+
+    @Test
+    // Test case 2: Terms inside longer words are not linked
+    public void linkTest2() {
+        TermLinker linker = new TermLinker(
+                new TermIndex(new String[] { "term", "a" }));
+        String definition = "terminal state of an automaton";
+        assertEquals(definition, linker.link(definition));
+    }
+
+    @Test
+    // Test case 3: Multi-word terms are linked, longest match first
+    public void linkTest3() {
+        TermLinker linker = new TermLinker(new TermIndex(
+                new String[] { "hash", "hash table", "table", "open hash" }));
+        String result = linker.link("a hash table, a hash, open hashing");
+        String expected = "a <a href=\"hash_20table.html\">hash table</a>, a "
+                + "<a href=\"hash.html\">hash</a>, open hashing";
+        assertEquals(expected, result);
+    }
+
+    @Test
+    // Test case 4: Overlapping terms found through failure links
+    public void linkTest4() {
+        TermLinker linker = new TermLinker(
+                new TermIndex(new String[] { "binary search tree", "search",
+                        "tree", "binary heap" }));
+        String result = linker.link("binary search (tree)");
+        String expected = "binary <a href=\"_73earch.html\">search</a> "
+                + "(<a href=\"tree.html\">tree</a>)";
+        assertEquals(expected, result);
+    }
+
+    @Test
+    // Test case 5: Empty definition and empty index
+    public void linkTest5() {
+        TermLinker linker = new TermLinker(new TermIndex(new String[0]));
+        assertEquals("", linker.link(""));
+        assertEquals("no terms here", linker.link("no terms here"));
+    }
+
+    @Test
+    // Test case 6: The link to a term is encoded once and shared
+    public void linkFragmentTest1() {
+        TermLinker linker = new TermLinker(
+                new TermIndex(new String[] { "caf\u00e9", "tea" }));
+        byte[] fragment = linker.linkFragment(0);
+        assertEquals("<a href=\"caf_C3_A9.html\">caf\u00e9</a>",
+                new String(fragment, StandardCharsets.UTF_8));
+        assertSame(fragment, linker.linkFragment(0));
+    }
+
+    @Test
+    // Test case 7: Linking into a page buffer gives the same text
+    public void linkTest6() {
+        TermLinker linker = new TermLinker(new TermIndex(
+                new String[] { "hash", "hash table", "caf\u00e9" }));
+        String definition = "a hash table, a caf\u00e9 hash, \u00fcber hash";
+        PageBuffer page = new PageBuffer();
+        linker.link(definition, page);
+        linker.link(definition, page);
+        String linked = linker.link(definition);
+        assertEquals(linked + linked, page.toString());
+    }
+
+    @Test
+    // Test case 8: Many terms sharing prefixes are all linked
+    public void linkTest7() {
+        String[] names = new String[3000];
+        StringBuilder definition = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "w" + i;
+            definition.append(names[i]).append(' ');
+            expected.append("<a href=\"").append(names[i])
+                    .append(".html\">").append(names[i]).append("</a> ");
+        }
+        TermLinker linker = new TermLinker(new TermIndex(names));
+        assertEquals(expected.toString(),
+                linker.link(definition.toString()));
+    }
+
+}
@@ -0,0 +1,97 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Test;
+
+/**
+ * Program to test the TermRegistry class.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public class TermRegistryTest {
+
+    /**
+     * Returns the file name the registry of the given terms gives a term.
+     *
+     * @param term
+     *            The term.
+     * @param terms
+     *            The terms of the glossary, including {@code term}.
+     * @return The file name of the page of the term.
+     */
+    private static String fileName(String term, String... terms) {
+        TermIndex index = new TermIndex(terms);
+        return index.registry().fileName(index.ordinal(term));
+    }
+
+    @Test
+    // Test case 1: Plain terms keep their names
+    public void fileNameTest1() {
+        assertEquals("alpha.html", fileName("alpha", "alpha", "beta"));
+        assertEquals("e.g..html", fileName("e.g.", "e.g."));
+        assertEquals("self-test.html", fileName("self-test", "self-test"));
+    }
+
+    @Test
+    // Test case 2: Characters unsafe in a path or URL are escaped
+    public void fileNameTest2() {
+        assertEquals("hash_20table.html", fileName("hash table",
+                "hash table"));
+        assertEquals("a_2Fb.html", fileName("a/b", "a/b"));
+        assertEquals("under_5Fscore.html", fileName("under_score",
+                "under_score"));
+        assertEquals("_2E..html", fileName("..", ".."));
+        assertEquals("caf_C3_A9.html", fileName("caf\u00e9", "caf\u00e9"));
+        assertEquals("_.html", fileName("", ""));
+    }
+
+    @Test
+    // Test case 3: Names of other pages and devices are avoided
+    public void fileNameTest3() {
+        assertEquals("_69ndex.html", fileName("index", "index"));
+        assertEquals("_49ndex-2.html", fileName("Index-2", "Index-2"));
+        assertEquals("_73earch.html", fileName("search", "search"));
+        assertEquals("_43ON.txt.html", fileName("CON.txt", "CON.txt"));
+        assertEquals("console.html", fileName("console", "console"));
+    }
+
+    @Test
+    // Test case 4: Names differing only in case are numbered in order
+    public void fileNameTest4() {
+        String[] terms = { "alpha", "Alpha", "ALPHA", "beta" };
+        assertEquals("ALPHA.html", fileName("ALPHA", terms));
+        assertEquals("Alpha~2.html", fileName("Alpha", terms));
+        assertEquals("alpha~3.html", fileName("alpha", terms));
+        assertEquals("beta.html", fileName("beta", terms));
+    }
+
+    @Test
+    // Test case 5: Long names are cut short and kept apart
+    public void fileNameTest5() {
+        StringBuilder term = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            term.append('a');
+        }
+        String first = term.toString();
+        String second = first + "b";
+        String firstName = fileName(first, first, second);
+        String secondName = fileName(second, first, second);
+        assertEquals(205, firstName.length());
+        assertNotEquals(firstName, secondName);
+    }
+
+    @Test
+    // Test case 6: Terms are found by the file names of their pages
+    public void ordinalTest1() {
+        TermIndex terms = new TermIndex(
+                new String[] { "a/b", "Book", "book" });
+        TermRegistry registry = terms.registry();
+        assertEquals(terms.ordinal("a/b"), registry.ordinal("a_2Fb.html"));
+        assertEquals(terms.ordinal("book"), registry.ordinal("book~2.html"));
+        assertEquals(terms.ordinal("Book"), registry.ordinal("BOOK.HTML"));
+        assertEquals(-1, registry.ordinal("a/b.html"));
+        assertEquals(registry.fileName(0), registry.href(0));
+    }
+
+}
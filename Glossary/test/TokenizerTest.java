@@ -0,0 +1,75 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Program to test the Tokenizer class.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public class TokenizerTest {
+
+    @Test
+    // Test case 1: Classification of characters
+    public void isSeparatorTest1() {
+        Tokenizer tokenizer = new Tokenizer(".,!?");
+        assertTrue(tokenizer.isSeparator(','));
+        assertTrue(tokenizer.isSeparator('?'));
+        assertFalse(tokenizer.isSeparator(' '));
+        assertFalse(tokenizer.isSeparator('a'));
+        assertFalse(tokenizer.isSeparator('\u00e9'));
+        assertFalse(tokenizer.isSeparator(Character.MAX_VALUE));
+    }
+
+    @Test
+    // Test case 2: Token ends match getNextWordOrSeparator
+    public void tokenEndTest1() {
+        String text = "hello, world!";
+        Tokenizer tokenizer = new Tokenizer(".,!?");
+        assertEquals(5, tokenizer.tokenEnd(text, 0));
+        assertEquals(6, tokenizer.tokenEnd(text, 5));
+        assertEquals(12, tokenizer.tokenEnd(text, 6));
+        assertEquals(13, tokenizer.tokenEnd(text, 12));
+    }
+
+    @Test
+    // Test case 3: Token starts
+    public void startsTokenTest1() {
+        String text = "a (b)";
+        Tokenizer tokenizer = Tokenizer.DEFAULT;
+        assertTrue(tokenizer.startsToken(text, 0));
+        assertTrue(tokenizer.startsToken(text, 1));
+        assertFalse(tokenizer.startsToken(text, 2));
+        assertTrue(tokenizer.startsToken(text, 3));
+        assertTrue(tokenizer.startsToken(text, 4));
+        assertFalse(tokenizer.startsToken(text, 5));
+    }
+
+    @Test
+    // Test case 4: Every token is reported in order
+    public void forEachTokenTest1() {
+        String text = "term1 is (related) to term2.";
+        StringBuilder tokens = new StringBuilder();
+        Tokenizer.DEFAULT.forEachToken(text, (start, end, separator) -> {
+            tokens.append(separator ? "[" : "<")
+                    .append(text, start, end)
+                    .append(separator ? "]" : ">");
+        });
+        assertEquals("<term1>[ ]<is>[ (]<related>[) ]<to>[ ]<term2>[.]",
+                tokens.toString());
+    }
+
+    @Test
+    // Test case 5: Empty text has no tokens
+    public void forEachTokenTest2() {
+        int[] count = { 0 };
+        Tokenizer.DEFAULT.forEachToken("", (start, end, separator) -> {
+            count[0]++;
+        });
+        assertEquals(0, count[0]);
+    }
+
+}
@@ -0,0 +1,197 @@
+import java.io.IOException;
+import java.nio.file.Path;
+
+import components.map.Map;
+import components.map.Map.Pair;
+import components.set.Set;
+import components.set.Set1L;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+
+import glossary.bench.GlossaryWorkload;
+
+/**
+ * Default-package implementation of {@link GlossaryWorkload}, calling the
+ * Glossary classes directly. Operations on single definitions or terms cycle
+ * through all the terms of the glossary, one per call.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public final class GlossaryWorkloads implements GlossaryWorkload {
+
+    /**
+     * The glossary source file.
+     */
+    private String glossaryFile;
+
+    /**
+     * An empty folder for generated pages.
+     */
+    private String outputFolder;
+
+    /**
+     * The parsed glossary.
+     */
+    private Map<String, String> glossary;
+
+    /**
+     * The shared term index.
+     */
+    private TermIndex terms;
+
+    /**
+     * The terms, as the set used by the original linker.
+     */
+    private Set<String> termSet;
+
+    /**
+     * The separators, as the set used by the original tokenizer.
+     */
+    private Set<Character> separators;
+
+    /**
+     * The definitions, by ordinal.
+     */
+    private String[] definitions;
+
+    /**
+     * Buffer reused by every rendered page.
+     */
+    private final PageBuffer page = new PageBuffer();
+
+    /**
+     * The ordinal of the term used by the next call.
+     */
+    private int next;
+
+    @Override
+    public void setUp(Path glossaryFile, Path outputFolder) throws IOException {
+        this.glossaryFile = glossaryFile.toString();
+        this.outputFolder = outputFolder.toString();
+        this.glossary = this.buildDictionary();
+        this.terms = new TermIndex(this.glossary);
+        this.terms.linker();
+        this.termSet = new Set1L<>();
+        this.definitions = new String[this.terms.size()];
+        for (int i = 0; i < this.terms.size(); i++) {
+            this.termSet.add(this.terms.term(i));
+            this.definitions[i] = this.glossary.value(this.terms.term(i));
+        }
+        this.separators = new Set1L<>();
+        Glossary.createUniqueChars(Tokenizer.SEPARATORS, this.separators);
+    }
+
+    /**
+     * Returns the ordinal of the term used by this call, cycling through all
+     * the terms.
+     *
+     * @return The ordinal.
+     */
+    private int nextOrdinal() {
+        int ordinal = this.next;
+        this.next++;
+        if (this.next == this.definitions.length) {
+            this.next = 0;
+        }
+        return ordinal;
+    }
+
+    @Override
+    public Map<String, String> buildDictionary() {
+        SimpleReader input = new SimpleReader1L(this.glossaryFile);
+        Map<String, String> result = Glossary.buildDictionary(input);
+        input.close();
+        return result;
+    }
+
+    @Override
+    public int scanGlossaryFile() throws IOException {
+        try (GlossaryFile file = GlossaryFile.open(this.glossaryFile)) {
+            return file.terms().size();
+        }
+    }
+
+    @Override
+    public Object buildSortedQueue() {
+        return Glossary.buildSortedQueue(this.glossary);
+    }
+
+    @Override
+    public Object extractLowestPair() {
+        Pair<String, String> lowest = Glossary.extractLowestPair(this.glossary);
+        this.glossary.add(lowest.key(), lowest.value());
+        return lowest;
+    }
+
+    @Override
+    public Object buildTermIndex() {
+        return new TermIndex(this.glossary);
+    }
+
+    @Override
+    public Object buildTermDictionary() {
+        return TermDictionary.build(this.terms, i -> this.definitions[i]);
+    }
+
+    @Override
+    public Object buildReferenceGraph() {
+        return ReferenceGraph.build(this.terms, i -> this.definitions[i]);
+    }
+
+    @Override
+    public int getNextWordOrSeparator() {
+        String definition = this.definitions[this.nextOrdinal()];
+        int count = 0;
+        int position = 0;
+        while (position < definition.length()) {
+            position += Glossary.getNextWordOrSeparator(definition, position,
+                    this.separators).length();
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public int tokenize() {
+        String definition = this.definitions[this.nextOrdinal()];
+        Tokenizer tokenizer = Tokenizer.DEFAULT;
+        int count = 0;
+        int position = 0;
+        while (position < definition.length()) {
+            position = tokenizer.tokenEnd(definition, position);
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public Object getDefinitionWithReferencesSet() {
+        return Glossary.getDefinitionWithReferences(
+                this.definitions[this.nextOrdinal()], this.termSet);
+    }
+
+    @Override
+    public Object getDefinitionWithReferences() {
+        return Glossary.getDefinitionWithReferences(
+                this.definitions[this.nextOrdinal()], this.terms);
+    }
+
+    @Override
+    public int createTermHTML() {
+        int ordinal = this.nextOrdinal();
+        this.page.clear();
+        Glossary.renderTermHTML(this.terms.term(ordinal),
+                this.definitions[ordinal], this.terms, this.page);
+        return this.page.length();
+    }
+
+    @Override
+    public void generateSite(int workers) throws IOException {
+        try (GlossaryFile file = GlossaryFile.open(this.glossaryFile)) {
+            new SiteGenerator(this.outputFolder, workers)
+                    .generate(file.terms(), file::definition);
+        }
+    }
+
+}
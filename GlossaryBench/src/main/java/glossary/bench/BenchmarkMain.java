@@ -0,0 +1,45 @@
+package glossary.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler always enabled, so allocation
+ * rates are reported next to the timings. Accepts the usual JMH command-line
+ * options, e.g. {@code -p termCount=1000000} or a benchmark name pattern.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public final class BenchmarkMain {
+
+    /**
+     * No argument constructor--private to prevent instantiation.
+     */
+    private BenchmarkMain() {
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments, as for JMH
+     * @throws CommandLineOptionException
+     *             if the arguments are not valid JMH options
+     * @throws RunnerException
+     *             if a benchmark fails
+     */
+    public static void main(String[] args)
+            throws CommandLineOptionException, RunnerException {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class).build();
+        new Runner(options).run();
+    }
+
+}
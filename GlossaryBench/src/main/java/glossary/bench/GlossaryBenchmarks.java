@@ -0,0 +1,175 @@
+package glossary.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the individual Glossary stages. Whole-glossary stages
+ * (parsing, sorting, indexing) are measured per glossary; per-definition and
+ * per-page stages are measured per call, cycling through every term.
+ *
+ * @author Adewale Adenle
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GlossaryBenchmarks {
+
+    /**
+     * Parses the glossary with buildDictionary.
+     *
+     * @param state
+     *            The glossary.
+     * @return The parsed glossary.
+     */
+    @Benchmark
+    public Object buildDictionary(GlossaryState state) {
+        return state.workload().buildDictionary();
+    }
+
+    /**
+     * Scans the glossary with GlossaryFile.
+     *
+     * @param state
+     *            The glossary.
+     * @return The number of terms.
+     * @throws IOException
+     *             if the glossary cannot be read
+     */
+    @Benchmark
+    public int scanGlossaryFile(GlossaryState state) throws IOException {
+        return state.workload().scanGlossaryFile();
+    }
+
+    /**
+     * Sorts the terms with buildSortedQueue.
+     *
+     * @param state
+     *            The glossary.
+     * @return The sorted queue.
+     */
+    @Benchmark
+    public Object buildSortedQueue(GlossaryState state) {
+        return state.workload().buildSortedQueue();
+    }
+
+    /**
+     * Extracts the lowest pair with extractLowestPair.
+     *
+     * @param state
+     *            The glossary.
+     * @return The extracted pair.
+     */
+    @Benchmark
+    public Object extractLowestPair(GlossaryState state) {
+        return state.workload().extractLowestPair();
+    }
+
+    /**
+     * Builds the shared term index.
+     *
+     * @param state
+     *            The glossary.
+     * @return The term index.
+     */
+    @Benchmark
+    public Object buildTermIndex(GlossaryState state) {
+        return state.workload().buildTermIndex();
+    }
+
+    /**
+     * Builds the byte-arena term dictionary.
+     *
+     * @param state
+     *            The glossary.
+     * @return The term dictionary.
+     */
+    @Benchmark
+    public Object buildTermDictionary(GlossaryState state) {
+        return state.workload().buildTermDictionary();
+    }
+
+    /**
+     * Builds the reference graph of the whole glossary.
+     *
+     * @param state
+     *            The glossary.
+     * @return The reference graph.
+     */
+    @Benchmark
+    public Object buildReferenceGraph(GlossaryState state) {
+        return state.workload().buildReferenceGraph();
+    }
+
+    /**
+     * Tokenizes one definition with getNextWordOrSeparator.
+     *
+     * @param state
+     *            The glossary.
+     * @return The number of tokens.
+     */
+    @Benchmark
+    public int getNextWordOrSeparator(GlossaryState state) {
+        return state.workload().getNextWordOrSeparator();
+    }
+
+    /**
+     * Tokenizes one definition with the shared Tokenizer.
+     *
+     * @param state
+     *            The glossary.
+     * @return The number of tokens.
+     */
+    @Benchmark
+    public int tokenize(GlossaryState state) {
+        return state.workload().tokenize();
+    }
+
+    /**
+     * Links one definition with the original Set-based linker.
+     *
+     * @param state
+     *            The glossary.
+     * @return The linked definition.
+     */
+    @Benchmark
+    public Object getDefinitionWithReferencesSet(GlossaryState state) {
+        return state.workload().getDefinitionWithReferencesSet();
+    }
+
+    /**
+     * Links one definition with the shared term index.
+     *
+     * @param state
+     *            The glossary.
+     * @return The linked definition.
+     */
+    @Benchmark
+    public Object getDefinitionWithReferences(GlossaryState state) {
+        return state.workload().getDefinitionWithReferences();
+    }
+
+    /**
+     * Renders one term page.
+     *
+     * @param state
+     *            The glossary.
+     * @return The length of the page.
+     */
+    @Benchmark
+    public int createTermHTML(GlossaryState state) {
+        return state.workload().createTermHTML();
+    }
+
+}
@@ -0,0 +1,138 @@
+package glossary.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * A synthetic glossary written to a temporary folder, with a workload set up
+ * over it. The size and shape of the glossary are JMH parameters.
+ *
+ * @author Adewale Adenle
+ *
+ */
+@State(Scope.Benchmark)
+public class GlossaryState {
+
+    /**
+     * Number of terms in the glossary.
+     */
+    @Param({ "1000", "10000", "100000", "1000000" })
+    public int termCount;
+
+    /**
+     * Number of words in each definition.
+     */
+    @Param({ "20" })
+    public int definitionWords;
+
+    /**
+     * Fraction of definition words that refer to other terms.
+     */
+    @Param({ "0.1" })
+    public double referenceDensity;
+
+    /**
+     * Seed of the glossary generator.
+     */
+    @Param({ "42" })
+    public long seed;
+
+    /**
+     * The temporary folder.
+     */
+    private Path folder;
+
+    /**
+     * The workload over the glossary.
+     */
+    private GlossaryWorkload workload;
+
+    /**
+     * Writes the glossary and sets up the workload.
+     *
+     * @throws IOException
+     *             if the glossary cannot be written
+     */
+    @Setup
+    public void setUp() throws IOException {
+        this.folder = Files.createTempDirectory("glossary-bench");
+        this.workload = prepare(this.folder, this.termCount,
+                this.definitionWords, this.referenceDensity, this.seed);
+    }
+
+    /**
+     * Deletes the temporary folder.
+     *
+     * @throws IOException
+     *             if the folder cannot be deleted
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        delete(this.folder);
+    }
+
+    /**
+     * Writes a synthetic glossary into the given folder and sets up a
+     * workload over it, with an empty "site" subfolder for output.
+     *
+     * @param folder
+     *            The folder.
+     * @param termCount
+     *            The number of terms.
+     * @param definitionWords
+     *            The number of words in each definition.
+     * @param referenceDensity
+     *            The fraction of definition words that refer to other terms.
+     * @param seed
+     *            The seed of the glossary generator.
+     * @return The workload.
+     * @throws IOException
+     *             if the glossary cannot be written
+     */
+    static GlossaryWorkload prepare(Path folder, int termCount,
+            int definitionWords, double referenceDensity, long seed)
+            throws IOException {
+        Path file = folder.resolve("glossary.txt");
+        SyntheticGlossary.write(file, termCount, definitionWords,
+                referenceDensity, seed);
+        Path site = Files.createDirectory(folder.resolve("site"));
+        GlossaryWorkload workload = GlossaryWorkload.load();
+        workload.setUp(file, site);
+        return workload;
+    }
+
+    /**
+     * Deletes the given folder and everything in it.
+     *
+     * @param folder
+     *            The folder.
+     * @throws IOException
+     *             if the folder cannot be listed
+     */
+    static void delete(Path folder) throws IOException {
+        try (Stream<Path> files = Files.walk(folder)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> {
+                path.toFile().delete();
+            });
+        }
+    }
+
+    /**
+     * Returns the workload over the glossary.
+     *
+     * @return The workload.
+     */
+    public GlossaryWorkload workload() {
+        return this.workload;
+    }
+
+}
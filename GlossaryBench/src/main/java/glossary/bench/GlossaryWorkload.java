@@ -0,0 +1,151 @@
+package glossary.bench;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * The Glossary operations measured by the benchmarks. The generator classes
+ * live in the default package, which JMH benchmarks cannot refer to, so the
+ * benchmarks drive them through this interface; the implementation is loaded
+ * by name with {@link #load()}. Every operation returns a value derived from
+ * its result so the benchmarks can hand it to a blackhole.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public interface GlossaryWorkload {
+
+    /**
+     * Name of the default-package class implementing this interface.
+     */
+    String IMPLEMENTATION = "GlossaryWorkloads";
+
+    /**
+     * Loads the default-package implementation.
+     *
+     * @return A new, not yet set up, workload.
+     */
+    static GlossaryWorkload load() {
+        try {
+            return (GlossaryWorkload) Class.forName(IMPLEMENTATION)
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(
+                    "Cannot load " + IMPLEMENTATION, e);
+        }
+    }
+
+    /**
+     * Reads the glossary file and prepares the inputs of every operation.
+     *
+     * @param glossaryFile
+     *            The glossary source file.
+     * @param outputFolder
+     *            An empty folder for generated pages.
+     * @throws IOException
+     *             if the glossary file cannot be read
+     */
+    void setUp(Path glossaryFile, Path outputFolder) throws IOException;
+
+    /**
+     * Parses the glossary file with {@code Glossary.buildDictionary}.
+     *
+     * @return The parsed glossary.
+     */
+    Object buildDictionary();
+
+    /**
+     * Scans the glossary file with {@code GlossaryFile.open}.
+     *
+     * @return The number of terms scanned.
+     * @throws IOException
+     *             if the glossary file cannot be read
+     */
+    int scanGlossaryFile() throws IOException;
+
+    /**
+     * Sorts the terms with {@code Glossary.buildSortedQueue}.
+     *
+     * @return The sorted queue.
+     */
+    Object buildSortedQueue();
+
+    /**
+     * Extracts the lowest pair with {@code Glossary.extractLowestPair}, then
+     * puts it back so the glossary is unchanged.
+     *
+     * @return The extracted pair.
+     */
+    Object extractLowestPair();
+
+    /**
+     * Builds the shared term index.
+     *
+     * @return The term index.
+     */
+    Object buildTermIndex();
+
+    /**
+     * Builds the byte-arena term dictionary of the whole glossary.
+     *
+     * @return The term dictionary.
+     */
+    Object buildTermDictionary();
+
+    /**
+     * Builds the reference graph of the whole glossary.
+     *
+     * @return The reference graph.
+     */
+    Object buildReferenceGraph();
+
+    /**
+     * Splits the next definition into words and separators with
+     * {@code Glossary.getNextWordOrSeparator}.
+     *
+     * @return The number of words and separators.
+     */
+    int getNextWordOrSeparator();
+
+    /**
+     * Splits the next definition into words and separators with the shared
+     * {@code Tokenizer}.
+     *
+     * @return The number of words and separators.
+     */
+    int tokenize();
+
+    /**
+     * Links the next definition with the original
+     * {@code Glossary.getDefinitionWithReferences} over a {@code Set}.
+     *
+     * @return The linked definition.
+     */
+    Object getDefinitionWithReferencesSet();
+
+    /**
+     * Links the next definition with the shared term index.
+     *
+     * @return The linked definition.
+     */
+    Object getDefinitionWithReferences();
+
+    /**
+     * Renders the page of the next term into a reused {@code PageBuffer}, as
+     * the site generator does.
+     *
+     * @return The length of the page.
+     */
+    int createTermHTML();
+
+    /**
+     * Generates the whole site from the glossary file.
+     *
+     * @param workers
+     *            The number of workers.
+     * @throws IOException
+     *             if the glossary file cannot be read
+     */
+    void generateSite(int workers) throws IOException;
+
+}
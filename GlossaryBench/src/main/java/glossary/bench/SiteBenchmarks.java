@@ -0,0 +1,115 @@
+package glossary.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end benchmark: scanning the glossary file and writing the whole
+ * site. Every page is written to disk, so the default sizes are kept small;
+ * larger glossaries can be selected with {@code -p termCount=...}.
+ *
+ * @author Adewale Adenle
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class SiteBenchmarks {
+
+    /**
+     * A glossary sized for end-to-end runs.
+     */
+    @State(Scope.Benchmark)
+    public static class SiteState {
+
+        /**
+         * Number of terms in the glossary.
+         */
+        @Param({ "1000", "10000" })
+        public int termCount;
+
+        /**
+         * Number of words in each definition.
+         */
+        @Param({ "20" })
+        public int definitionWords;
+
+        /**
+         * Fraction of definition words that refer to other terms.
+         */
+        @Param({ "0.1" })
+        public double referenceDensity;
+
+        /**
+         * Number of rendering and writing threads.
+         */
+        @Param({ "1", "4" })
+        public int workers;
+
+        /**
+         * The temporary folder.
+         */
+        private Path folder;
+
+        /**
+         * The workload over the glossary.
+         */
+        private GlossaryWorkload workload;
+
+        /**
+         * Writes the glossary and sets up the workload.
+         *
+         * @throws IOException
+         *             if the glossary cannot be written
+         */
+        @Setup
+        public void setUp() throws IOException {
+            this.folder = Files.createTempDirectory("glossary-bench");
+            this.workload = GlossaryState.prepare(this.folder, this.termCount,
+                    this.definitionWords, this.referenceDensity, 42);
+        }
+
+        /**
+         * Deletes the temporary folder.
+         *
+         * @throws IOException
+         *             if the folder cannot be deleted
+         */
+        @TearDown
+        public void tearDown() throws IOException {
+            GlossaryState.delete(this.folder);
+        }
+
+    }
+
+    /**
+     * Generates the whole site.
+     *
+     * @param state
+     *            The glossary.
+     * @throws IOException
+     *             if the glossary cannot be read
+     */
+    @Benchmark
+    public void generateSite(SiteState state) throws IOException {
+        state.workload.generateSite(state.workers);
+    }
+
+}
@@ -0,0 +1,101 @@
+package glossary.bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Generates synthetic glossary source files for the benchmarks. Terms are
+ * distinct lowercase words; each definition is a sequence of filler words and
+ * separators in which a given fraction of the words are references to other
+ * terms. A fixed seed makes every file reproducible.
+ *
+ * @author Adewale Adenle
+ *
+ */
+public final class SyntheticGlossary {
+
+    /**
+     * Filler words; none of them can collide with a generated term, since
+     * generated terms all start with 'q'.
+     */
+    private static final String[] FILLER = { "a", "the", "of", "set", "list",
+            "used", "with", "which", "in", "value", "that", "one", "each",
+            "by", "string", "for", "is", "an", "data", "when" };
+
+    /**
+     * Separators placed between words.
+     */
+    private static final String[] SEPARATORS = { " ", " ", " ", " ", ", ",
+            " (", ") ", "; ", ". " };
+
+    /**
+     * No argument constructor--private to prevent instantiation.
+     */
+    private SyntheticGlossary() {
+    }
+
+    /**
+     * Returns the name of the term with the given number.
+     *
+     * @param number
+     *            The number of the term.
+     * @return The term.
+     */
+    public static String term(int number) {
+        // Bijective base 26, so every number gives a distinct word
+        StringBuilder term = new StringBuilder("q");
+        int remaining = number + 1;
+        while (remaining > 0) {
+            remaining--;
+            term.append((char) ('a' + remaining % 26));
+            remaining /= 26;
+        }
+        return term.toString();
+    }
+
+    /**
+     * Writes a synthetic glossary file.
+     *
+     * @param file
+     *            The file to write.
+     * @param termCount
+     *            The number of terms.
+     * @param definitionWords
+     *            The number of words in each definition.
+     * @param referenceDensity
+     *            The fraction of definition words that are references to
+     *            other terms, between 0 and 1.
+     * @param seed
+     *            The seed of the random generator.
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    public static void write(Path file, int termCount, int definitionWords,
+            double referenceDensity, long seed) throws IOException {
+        Random random = new Random(seed);
+        try (BufferedWriter out = Files.newBufferedWriter(file,
+                StandardCharsets.UTF_8)) {
+            for (int i = 0; i < termCount; i++) {
+                out.write(term(i));
+                out.write('\n');
+                for (int w = 0; w < definitionWords; w++) {
+                    if (w > 0) {
+                        out.write(SEPARATORS[random
+                                .nextInt(SEPARATORS.length)]);
+                    }
+                    if (random.nextDouble() < referenceDensity) {
+                        out.write(term(random.nextInt(termCount)));
+                    } else {
+                        out.write(FILLER[random.nextInt(FILLER.length)]);
+                    }
+                }
+                out.write("\n\n");
+            }
+        }
+    }
+
+}